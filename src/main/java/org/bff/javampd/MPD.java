@@ -9,18 +9,20 @@
  */
 package org.bff.javampd;
 
+import org.bff.javampd.exception.MPDCommandListException;
 import org.bff.javampd.exception.MPDConnectionException;
 import org.bff.javampd.exception.MPDException;
 import org.bff.javampd.exception.MPDResponseException;
 import org.bff.javampd.exception.MPDTimeoutException;
 import org.bff.javampd.monitor.MPDEventRelayer;
-import org.bff.javampd.objects.MPDAlbum;
-import org.bff.javampd.objects.MPDArtist;
 import org.bff.javampd.objects.MPDSong;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,7 +37,11 @@ public class MPD {
 
     private int port;
     private InetAddress serverAddress;
-    private Socket socket;
+    private String password;
+    private int timeout;
+    private int poolSize;
+    private MPDEventLoop eventLoop;
+    private volatile MPDTransport transport;
     private String lastError;
     private static Properties prop;
     private MPDPlayer mpdPlayer;
@@ -43,25 +49,25 @@ public class MPD {
     private MPDDatabase mpdDatabase;
     private MPDEventRelayer mpdEventRelayer;
     private MPDAdmin mpdAdmin;
+    private MPDAsync mpdAsync;
+    private final ThreadLocal<Pipeline> pipeline = new ThreadLocal<Pipeline>();
+    private final Object statusLock = new Object();
+    private MPDStatus status;
+    private long statusTime;
+    private long statusGeneration;
+    private CompletableFuture<MPDStatus> statusRequest;
+    private volatile int statusTtl = DEFAULT_STATUS_TTL;
     private String version;
-    private static final int TRIES = 3;
     /**
      * The location of the mpd properties file.
      */
     private static final String PROPFILE = "/org/bff/javampd/mpd.properties";
     //property file keys
-    private static final String MPDPROPSERVERENCODING = "MPD_SERVER_ENCODING";
     private static final String MPDPROPCLEARERROR = "MPD_CMD_CLEAR_ERROR";
-    private static final String MPDPROPCLOSE = "MPD_CMD_CLOSE";
     private static final String MPDPROPKILL = "MPD_CMD_KILL";
     private static final String MPDPROPSTATUS = "MPD_CMD_STATUS";
     private static final String MPDPROPSTATS = "MPD_CMD_STATISTICS";
-    private static final String MPDPROPSTARTBULK = "MPD_CMD_START_BULK";
-    private static final String MPDPROPENDBULK = "MPD_CMD_END_BULK";
-    private static final String MPDPROPPASSWORD = "MPD_CMD_PASSWORD";
     private static final String MPDPROPPING = "MPD_CMD_PING";
-    private static final String MPDPROPRESPONSEERR = "MPD_CMD_RESPONSE_ERR";
-    private static final String MPDPROPRESPONSEOK = "MPD_CMD_RESPONSE_OK";
     /**
      * the MPD prefix for the filename
      */
@@ -130,21 +136,20 @@ public class MPD {
      * Default MPD port
      */
     private static final int MPD_DEFAULT_PORT = 6600;
-
-    private enum Response {
-
-        OK(MPDPROPRESPONSEOK),
-        ERR(MPDPROPRESPONSEERR);
-        private final String prop;
-
-        Response(String prop) {
-            this.prop = prop;
-        }
-
-        public String getProp() {
-            return (prop);
-        }
-    }
+    /**
+     * Default time a status snapshot is reused in milliseconds
+     */
+    private static final int DEFAULT_STATUS_TTL = 100;
+    /**
+     * Commands that never change the player, playlist or mixer state, so
+     * they keep the status snapshot.
+     */
+    private static final Set<String> READ_ONLY_COMMANDS = new HashSet<String>(Arrays.asList(
+            "albumart", "binarylimit", "commands", "currentsong", "find", "idle",
+            "list", "listall", "listallinfo", "listplaylist", "listplaylistinfo",
+            "listplaylists", "lsinfo", "noidle", "notcommands", "outputs", "ping",
+            "playlistid", "playlistinfo", "plchanges", "plchangesposid",
+            "readpicture", "search", "stats", "status"));
 
     /**
      * Enumeration of the available information from MPD server statistics.
@@ -249,6 +254,11 @@ public class MPD {
          * the time of the current playing/paused song
          */
         TIME("time"),
+        /**
+         * the elapsed time of the current playing/paused song in seconds with
+         * millisecond resolution
+         */
+        ELAPSED("elapsed"),
         /**
          * instantaneous bitrate in kbps
          */
@@ -264,7 +274,7 @@ public class MPD {
         /**
          * job id
          */
-        UPDATINGSDB("updatings_db"),
+        UPDATINGSDB("updating_db"),
         /**
          * if there is an error, returns message here
          */
@@ -414,14 +424,73 @@ public class MPD {
      *                                                          unknown to dns
      */
     public MPD(String server, int port, String password, int timeout) throws UnknownHostException, MPDConnectionException {
+        this(server, port, password, timeout, 1);
+    }
+
+    /**
+     * Creates a new instance of MPD backed by a pool of up to
+     * <code>poolSize</code> connections. Every connection performs its own
+     * greeting and password handshake and is leased for a single command, so
+     * independent callers, for instance a long database listing and player
+     * control, run in parallel instead of waiting on each other. A pool size
+     * of 1 behaves like a single connection.
+     * <p>
+     * @param server   the MPD server
+     * @param port     the port MPD is listening on
+     * @param password the password to authenticate with, null for none
+     * @param timeout  the amount of time in milliseconds to wait for each MPD
+     *                 connection
+     * @param poolSize the maximum number of connections to open
+     * <p>
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     * @throws java.net.UnknownHostException                    If the host name
+     *                                                          used for the
+     *                                                          server is
+     *                                                          unknown to dns
+     */
+    public MPD(String server, int port, String password, int timeout, int poolSize) throws UnknownHostException, MPDConnectionException {
+        this(server, port, password, timeout, poolSize, null);
+    }
+
+    /**
+     * Creates a new instance of MPD whose connection is driven by the
+     * non-blocking I/O threads of the given {@link MPDEventLoop}. Commands of
+     * all threads are queued on a single connection, so many MPD servers can
+     * be handled by a few threads. The event loop may be shared by any number
+     * of MPD instances and is not shut down by {@link #close()}.
+     * <p>
+     * @param server    the MPD server
+     * @param port      the port MPD is listening on
+     * @param password  the password to authenticate with, null for none
+     * @param timeout   the amount of time in milliseconds to wait for the
+     *                  connection
+     * @param eventLoop the event loop driving the connection
+     * <p>
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     * @throws java.net.UnknownHostException                    If the host name
+     *                                                          used for the
+     *                                                          server is
+     *                                                          unknown to dns
+     */
+    public MPD(String server, int port, String password, int timeout, MPDEventLoop eventLoop) throws UnknownHostException, MPDConnectionException {
+        this(server, port, password, timeout, 1, eventLoop);
+    }
+
+    private MPD(String server, int port, String password, int timeout, int poolSize, MPDEventLoop eventLoop) throws UnknownHostException, MPDConnectionException {
         try {
             this.serverAddress = InetAddress.getByName(server);
             this.port = port;
+            this.password = password;
+            this.timeout = timeout;
+            this.poolSize = poolSize;
+            this.eventLoop = eventLoop;
             this.version = connect(timeout);
-
-            if (password != null) {
-                authenticate(password);
-            }
         } catch (UnknownHostException ex) {
             throw ex;
         } catch (MPDTimeoutException mte) {
@@ -460,7 +529,7 @@ public class MPD {
      *                                                          the server
      */
     public void close() throws MPDConnectionException, MPDResponseException {
-        sendMPDCommand(new MPDCommand(prop.getProperty(MPDPROPCLOSE)));
+        transport.close();
     }
 
     /**
@@ -478,7 +547,7 @@ public class MPD {
      *                                                          the server
      */
     public long getPlaytime() throws MPDConnectionException, MPDResponseException {
-        return (Long.parseLong(getServerStat(StatList.PLAYTIME)));
+        return (getMPDStats().getPlaytime());
     }
 
     /**
@@ -496,7 +565,7 @@ public class MPD {
      *                                                          the server
      */
     public long getUptime() throws MPDConnectionException, MPDResponseException {
-        return (Long.parseLong(getServerStat(StatList.UPTIME)));
+        return (getMPDStats().getUptime());
     }
 
     /**
@@ -564,6 +633,21 @@ public class MPD {
         return (mpdAdmin);
     }
 
+    /**
+     * Returns the asynchronous facade of this connection. Its methods return
+     * <code>CompletableFuture</code>s instead of blocking the calling thread.
+     * Multiple calls to this method will return the same {@link MPDAsync}
+     * class.
+     * <p>
+     * @return the asynchronous facade
+     */
+    public synchronized MPDAsync async() {
+        if (mpdAsync == null) {
+            mpdAsync = new MPDAsync(this);
+        }
+        return (mpdAsync);
+    }
+
     /**
      * Returns a {@link MPDEventRelayer} using this class as the connection.
      * Multiple calls to this method will return the same
@@ -578,6 +662,38 @@ public class MPD {
         return (mpdEventRelayer);
     }
 
+    /**
+     * Opens a dedicated connection for waiting on changes with
+     * <code>idle</code>.  The connection is not shared with the other calls of
+     * this instance and must be closed with {@link MPDIdle#close()}.
+     * <p>
+     * @return the idle connection
+     * <p>
+     * @throws org.bff.javampd.exception.MPDConnectionException if no connection
+     *                                                          could be
+     *                                                          established
+     */
+    public MPDIdle openIdle() throws MPDConnectionException {
+        MPDConnection connection = new MPDConnection(serverAddress, port, timeout, prop);
+        boolean opened = false;
+        try {
+            connection.connect();
+            if (password != null) {
+                connection.authenticate(password);
+            }
+            opened = true;
+            return (new MPDIdle(connection, prop));
+        } catch (MPDConnectionException ce) {
+            throw ce;
+        } catch (Exception e) {
+            throw new MPDConnectionException(e);
+        } finally {
+            if (!opened) {
+                connection.close();
+            }
+        }
+    }
+
     /**
      * Determines if there is a connection to the MPD server.
      * <p>
@@ -609,7 +725,299 @@ public class MPD {
      */
     public Map<String, String> getStatus() throws MPDConnectionException, MPDResponseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPSTATUS));
-        List<String> respList = new ArrayList<String>(sendMPDCommand(command));
+        return (parseStatus(sendMPDCommand(command)));
+    }
+
+    /**
+     * Returns a snapshot of the status of the MPD server.  A snapshot younger
+     * than the {@link #setStatusTtl(int) status TTL} is reused and callers
+     * asking at the same time share one <code>status</code> request, so
+     * reading several values costs a single round trip.  Any other command
+     * sent through this instance discards the snapshot.
+     * <p>
+     * @return the status
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    public MPDStatus getMPDStatus() throws MPDConnectionException, MPDResponseException {
+        return (getMPDStatus(statusTtl, true));
+    }
+
+    /**
+     * Returns a snapshot of the status of the MPD server which is at most
+     * <code>maxAge</code> milliseconds old.  With a <code>maxAge</code> of 0
+     * the server is always asked, even if another caller is already waiting
+     * for a reply, which suits monitors told that the status just changed.
+     * <p>
+     * @param maxAge the maximum age of the snapshot in milliseconds
+     * <p>
+     * @return the status
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    public MPDStatus getMPDStatus(int maxAge) throws MPDConnectionException, MPDResponseException {
+        return (getMPDStatus(maxAge, maxAge > 0));
+    }
+
+    private MPDStatus getMPDStatus(int maxAge, boolean share) throws MPDConnectionException, MPDResponseException {
+        CompletableFuture<MPDStatus> request;
+        boolean shared;
+        long generation;
+        synchronized (statusLock) {
+            if (status != null && System.nanoTime() - statusTime < maxAge * 1000000L) {
+                return (status);
+            }
+            shared = share && statusRequest != null;
+            if (!shared) {
+                statusRequest = new CompletableFuture<MPDStatus>();
+            }
+            request = statusRequest;
+            generation = statusGeneration;
+        }
+        if (shared) {
+            return (awaitStatus(request));
+        }
+
+        try {
+            MPDStatus.Parser parser = new MPDStatus.Parser();
+            transport.sendCommand(new MPDCommand(prop.getProperty(MPDPROPSTATUS)), parser);
+            MPDStatus result = parser.build();
+            statusRead(request, generation, result, null);
+            return (result);
+        } catch (MPDResponseException | MPDConnectionException | RuntimeException e) {
+            if (e instanceof MPDResponseException) {
+                this.lastError = e.getMessage();
+            }
+            statusRead(request, generation, null, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the status like {@link #getMPDStatus()} without waiting for
+     * the server: the snapshot if it is recent enough, else the request
+     * already on its way or a new one.  Inside {@link #pipelined(Runnable)}
+     * the status is requested as part of the pipeline.
+     * <p>
+     * @return the future status
+     */
+    CompletableFuture<MPDStatus> getMPDStatusAsync() {
+        if (pipeline.get() != null) {
+            return (sendMPDCommandAsync(new MPDCommand(prop.getProperty(MPDPROPSTATUS))).thenApply(MPDStatus::parse));
+        }
+
+        final CompletableFuture<MPDStatus> request;
+        final long generation;
+        synchronized (statusLock) {
+            if (status != null && System.nanoTime() - statusTime < statusTtl * 1000000L) {
+                return (CompletableFuture.completedFuture(status));
+            }
+            if (statusRequest != null) {
+                return (statusRequest.thenApply(result -> result));
+            }
+            statusRequest = new CompletableFuture<MPDStatus>();
+            request = statusRequest;
+            generation = statusGeneration;
+        }
+
+        final MPDStatus.Parser parser = new MPDStatus.Parser();
+        recordError(transport.submit(new MPDCommand(prop.getProperty(MPDPROPSTATUS)), parser))
+                .whenComplete((done, error) -> statusRead(request, generation, error == null ? parser.build() : null, error));
+        return (request.thenApply(result -> result));
+    }
+
+    /**
+     * Keeps the status read unless a command was sent since the request was
+     * made, and completes the request.
+     */
+    private void statusRead(CompletableFuture<MPDStatus> request, long generation, MPDStatus result, Throwable error) {
+        synchronized (statusLock) {
+            if (error == null && statusGeneration == generation) {
+                status = result;
+                statusTime = System.nanoTime();
+            }
+            if (statusRequest == request) {
+                statusRequest = null;
+            }
+        }
+        if (error == null) {
+            request.complete(result);
+        } else {
+            request.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Returns the statistics of the MPD server.
+     * <p>
+     * @return the statistics
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    public MPDStats getMPDStats() throws MPDConnectionException, MPDResponseException {
+        MPDStats.Parser parser = new MPDStats.Parser();
+        try {
+            transport.sendCommand(new MPDCommand(prop.getProperty(MPDPROPSTATS)), parser);
+        } catch (MPDResponseException re) {
+            this.lastError = re.getMessage();
+            throw re;
+        }
+        return (parser.build());
+    }
+
+    /**
+     * Requests the statistics of the MPD server without waiting for the
+     * response.
+     * <p>
+     * @return the future statistics
+     */
+    CompletableFuture<MPDStats> getMPDStatsAsync() {
+        final MPDStats.Parser parser = new MPDStats.Parser();
+        return (recordError(transport.submit(new MPDCommand(prop.getProperty(MPDPROPSTATS)), parser))
+                .thenApply(done -> parser.build()));
+    }
+
+    private static MPDStatus awaitStatus(CompletableFuture<MPDStatus> request) throws MPDConnectionException, MPDResponseException {
+        try {
+            return (request.get());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted while waiting for status", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof MPDResponseException) {
+                throw (MPDResponseException) cause;
+            } else if (cause instanceof MPDConnectionException) {
+                throw (MPDConnectionException) cause;
+            }
+            throw new MPDConnectionException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Discards the status snapshot unless the command only reads.  A status
+     * read while the command is on its way may still show the old state, so
+     * the snapshot is discarded again once the command completed.
+     * <p>
+     * @param command the command about to be sent
+     * <p>
+     * @return true if the command may change the status
+     */
+    private boolean invalidateStatus(MPDCommand command) {
+        if (READ_ONLY_COMMANDS.contains(command.getCommand())) {
+            return (false);
+        }
+        invalidateStatus();
+        return (true);
+    }
+
+    /**
+     * Discards the status snapshot unless all of the commands only read.
+     * <p>
+     * @param commands the commands about to be sent
+     * <p>
+     * @return true if any of the commands may change the status
+     */
+    private boolean invalidateStatus(List<MPDCommand> commands) {
+        for (MPDCommand command : commands) {
+            if (invalidateStatus(command)) {
+                return (true);
+            }
+        }
+        return (false);
+    }
+
+    /**
+     * Returns a future completed like <code>future</code> after discarding
+     * the status snapshot, so callers continuing on it see the new status.
+     * <p>
+     * @param future   the future response of the command
+     * @param mutating true if the command may change the status
+     * <p>
+     * @return the future to hand to the caller
+     */
+    private <T> CompletableFuture<T> invalidateStatusAfter(CompletableFuture<T> future, boolean mutating) {
+        if (!mutating) {
+            return (future);
+        }
+
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        future.whenComplete((response, error) -> {
+            invalidateStatus();
+            if (error == null) {
+                result.complete(response);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return (result);
+    }
+
+    /**
+     * Discards the status snapshot after a command that may have changed the
+     * status.
+     */
+    private void invalidateStatus() {
+        synchronized (statusLock) {
+            ++statusGeneration;
+            status = null;
+            statusRequest = null;
+        }
+    }
+
+    /**
+     * Sets how long {@link #getMPDStatus()} reuses a status snapshot.  A TTL
+     * of 0 still lets concurrent callers share a request.
+     * <p>
+     * @param ttl the time to reuse a snapshot in milliseconds
+     */
+    public void setStatusTtl(int ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Status TTL must not be negative: " + ttl);
+        }
+        this.statusTtl = ttl;
+    }
+
+    /**
+     * Returns how long {@link #getMPDStatus()} reuses a status snapshot, 100
+     * milliseconds by default.
+     * <p>
+     * @return the time to reuse a snapshot in milliseconds
+     */
+    public int getStatusTtl() {
+        return (statusTtl);
+    }
+
+    /**
+     * Converts the response of the <code>status</code> command into a map of
+     * status keys to values.
+     * <p>
+     * @param respList the response from the MPD server
+     * <p>
+     * @return the status information
+     */
+    static Map<String, String> parseStatus(List<String> respList) {
         Map<String, String> result = new HashMap<String, String>();
 
         for (String entry : respList) {
@@ -629,8 +1037,9 @@ public class MPD {
 
     /**
      * Sends a {@link MPDCommand} and its parameters to the MPD server returning
-     * the response as a <CODE>Collection</CODE> of <CODE>Strings</CODE>. Note
-     * to check the response you may call {@link MPD#isResponseOK(String)} )}.
+     * the response as a <CODE>Collection</CODE> of <CODE>Strings</CODE>. The
+     * command is sent on a connection leased from the pool, or queued on the
+     * non-blocking connection if this instance uses a {@link MPDEventLoop}.
      * <p>
      * @param command the command to send
      * <p>
@@ -645,87 +1054,264 @@ public class MPD {
      *                                                          the command to
      *                                                          the server
      */
-    protected synchronized List<String> sendMPDCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException {
-        byte[] bytesToSend;
-        List<String> responseList = new ArrayList<String>();
-        OutputStream outStream = null;
-        BufferedReader in;
+    protected List<String> sendMPDCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException {
+        boolean mutating = invalidateStatus(command);
+        try {
+            return (transport.sendCommand(command));
+        } catch (MPDResponseException re) {
+            this.lastError = re.getMessage();
+            throw re;
+        } finally {
+            if (mutating) {
+                invalidateStatus();
+            }
+        }
+    }
 
-        if (!socket.isConnected()) {
-            try {
-                connect();
-            } catch (Exception e) {
-                throw new MPDConnectionException("Connection to server lost: " + e.getMessage(), e);
+    /**
+     * Sends a {@link MPDCommand} and passes each response line to
+     * <code>lineHandler</code> as soon as it is read, without collecting the
+     * response first. The memory used stays bounded no matter how large the
+     * response is. The handler is called on the I/O thread if this instance
+     * uses a {@link MPDEventLoop} and must not block there.
+     * <p>
+     * @param command     the command to send
+     * @param lineHandler receives the response lines
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    protected void sendMPDCommand(MPDCommand command, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        boolean mutating = invalidateStatus(command);
+        try {
+            transport.sendCommand(command, lineHandler);
+        } catch (MPDResponseException re) {
+            this.lastError = re.getMessage();
+            throw re;
+        } finally {
+            if (mutating) {
+                invalidateStatus();
             }
         }
+    }
 
-        int count = 0;
+    /**
+     * Sends a {@link MPDCommand} and passes each {@link MPDSong} of the
+     * response to <code>songHandler</code> as soon as it is complete. Only the
+     * song being read is held in memory.
+     * <p>
+     * @param command     the command to send
+     * @param songHandler receives the songs
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    protected void sendMPDSongCommand(MPDCommand command, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDResponseException {
+        MPDSongParser parser = new MPDSongParser(songHandler);
+        sendMPDCommand(command, parser);
+        parser.finish();
+    }
 
-        Exception excReturn = null;
-        while (count < TRIES) {
-            try {
-                bytesToSend = convertCommand(command.getCommand(), command.getParams()).getBytes(prop.getProperty(MPDPROPSERVERENCODING));
+    /**
+     * Sends a {@link MPDCommand} without waiting for the response. The
+     * returned future fails with a {@link MPDResponseException} if the server
+     * answers with an error and with a {@link MPDConnectionException} if the
+     * command could not be sent.
+     * <p>
+     * @param command the command to send
+     * <p>
+     * @return the future response as a <CODE>List</CODE> of
+     *         <CODE>Strings</CODE>
+     */
+    protected CompletableFuture<List<String>> sendMPDCommandAsync(MPDCommand command) {
+        boolean mutating = invalidateStatus(command);
+        Pipeline pipeline = this.pipeline.get();
+        if (pipeline != null) {
+            //completed once the pipeline was sent and the status discarded
+            return (pipeline.add(command));
+        }
+        return (invalidateStatusAfter(recordError(transport.submit(command)), mutating));
+    }
 
-                outStream = socket.getOutputStream();
-                outStream.write(bytesToSend);
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream(), prop.getProperty(MPDPROPSERVERENCODING)));
+    /**
+     * Sends a {@link MPDCommand} without waiting for the response and passes
+     * each {@link MPDSong} of the response to <code>songHandler</code> as
+     * soon as it is complete. The returned future completes after the last
+     * song was handled.  Inside {@link #pipelined(Runnable)} the command keeps
+     * its place in the pipeline and the songs are handled once its response
+     * was read.
+     * <p>
+     * @param command     the command to send
+     * @param songHandler receives the songs
+     * <p>
+     * @return the future completed after the last song
+     */
+    protected CompletableFuture<Void> sendMPDSongCommandAsync(MPDCommand command, Consumer<MPDSong> songHandler) {
+        boolean mutating = invalidateStatus(command);
+        final MPDSongParser parser = new MPDSongParser(songHandler);
+        Pipeline pipeline = this.pipeline.get();
+        if (pipeline != null) {
+            return (pipeline.add(command, parser).thenRun(parser::finish));
+        }
+        return (invalidateStatusAfter(recordError(transport.submit(command, parser)), mutating).thenRun(parser::finish));
+    }
 
-                String inLine;
+    /**
+     * Sends the {@link MPDCommand}s back to back on one connection without
+     * waiting for the responses in between, so independent commands cost a
+     * single round trip to the server.  The responses are matched to the
+     * commands in order.  Unlike {@link #sendMPDCommands(List)} an error only
+     * fails the future of the rejected command.
+     * <p>
+     * @param commands the commands to send
+     * <p>
+     * @return the future responses, one for each command in the same order
+     */
+    protected List<CompletableFuture<List<String>>> sendMPDCommandsPipelined(List<MPDCommand> commands) {
+        boolean mutating = invalidateStatus(commands);
+        List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>(commands.size());
+        for (CompletableFuture<List<String>> future : transport.pipeline(commands)) {
+            futures.add(invalidateStatusAfter(recordError(future), mutating));
+        }
+        return (futures);
+    }
 
-                while ((inLine = in.readLine()) != null) {
-                    if (isResponseOK(inLine)) {
-                        //end of command is ok so break
-                        break;
-                    }
+    /**
+     * Sends the {@link MPDCommand}s back to back on one connection and passes
+     * the response lines of all of them to <code>lineHandler</code> in order
+     * as soon as they are read. After the first error the remaining responses
+     * are not passed on.
+     * <p>
+     * @param commands    the commands to send
+     * @param lineHandler receives the response lines of all commands
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the commands to
+     *                                                          the server
+     */
+    protected void sendMPDCommandsPipelined(List<MPDCommand> commands, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        boolean mutating = invalidateStatus(commands);
+        try {
+            transport.pipeline(commands, lineHandler);
+        } catch (MPDResponseException re) {
+            this.lastError = re.getMessage();
+            throw re;
+        } finally {
+            if (mutating) {
+                invalidateStatus();
+            }
+        }
+    }
 
-                    if (isResponseError(inLine)) {
-                        throw new MPDResponseException(getLastError(), command.getCommand());
-                    }
+    /**
+     * Runs <code>calls</code> and sends all commands they pass to
+     * {@link #sendMPDCommandAsync(MPDCommand)} on this thread as one pipeline
+     * once they return.  Nested calls join the outer pipeline.  If
+     * <code>calls</code> throws nothing is sent and the collected futures are
+     * cancelled.
+     * <p>
+     * @param calls the calls whose commands to pipeline
+     */
+    void pipelined(Runnable calls) {
+        if (pipeline.get() != null) {
+            calls.run();
+            return;
+        }
 
-                    responseList.add(inLine);
-                }
-                count = TRIES + 1;
-                return (responseList);
-            } catch (Exception e) {
-                System.out.println("Got Error from:" + command.getCommand());
-                for (String str : command.getParams()) {
-                    System.out.println("\tparam:" + str);
-                }
-                e.printStackTrace();
-
-                if (e instanceof SocketException) {
-                    try {
-                        connect();
-                    } catch (Exception ex) {
-                        Logger.getLogger(MPD.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                    responseList = new ArrayList<String>();
-                    ++count;
-                    excReturn = e;
-                    System.out.println("Retrying command " + count);
-                } else {
-                    throw new MPDResponseException(e);
-                }
-            } finally {
-                try {
-                    outStream.flush();
-                } catch (IOException ex) {
-                    Logger.getLogger(MPD.class.getName()).log(Level.SEVERE, null, ex);
-                }
+        Pipeline collected = new Pipeline();
+        pipeline.set(collected);
+        try {
+            calls.run();
+        } catch (RuntimeException e) {
+            collected.cancel();
+            throw e;
+        } finally {
+            pipeline.remove();
+        }
+        if (!collected.commands.isEmpty()) {
+            collected.send(sendMPDCommandsPipelined(collected.commands));
+        }
+    }
+
+    private <T> CompletableFuture<T> recordError(CompletableFuture<T> future) {
+        future.whenComplete((response, error) -> {
+            if (error instanceof MPDResponseException) {
+                this.lastError = error.getMessage();
+            }
+        });
+        return (future);
+    }
+
+    /**
+     * The commands collected by {@link #pipelined(Runnable)}.
+     */
+    private static class Pipeline {
+
+        private final List<MPDCommand> commands = new ArrayList<MPDCommand>();
+        private final List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>();
+
+        CompletableFuture<List<String>> add(MPDCommand command) {
+            CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+            commands.add(command);
+            futures.add(future);
+            return (future);
+        }
+
+        /**
+         * Adds a command whose response lines are passed to
+         * <code>lineHandler</code> once its response was read, keeping its
+         * place among the other commands of the pipeline.
+         */
+        CompletableFuture<Void> add(MPDCommand command, final Consumer<String> lineHandler) {
+            return (add(command).thenAccept(lines -> lines.forEach(lineHandler)));
+        }
+
+        void cancel() {
+            for (CompletableFuture<List<String>> future : futures) {
+                future.cancel(false);
             }
         }
 
-        throw new MPDConnectionException(excReturn);
+        void send(List<CompletableFuture<List<String>>> responses) {
+            for (int i = 0; i < responses.size(); i++) {
+                final CompletableFuture<List<String>> future = futures.get(i);
+                responses.get(i).whenComplete((response, error) -> {
+                    if (error == null) {
+                        future.complete(response);
+                    } else {
+                        future.completeExceptionally(error);
+                    }
+                });
+            }
+        }
     }
 
     /**
      * Sends a list of {@link MPDCommand}s all at once to the MPD server and
      * returns true if all commands were sent successfully. If any of the
-     * commands received as error in the response false will be returned.
+     * commands received an error a {@link MPDCommandListException} is thrown.
+     * Use {@link #sendMPDCommandList(List)} to get the responses.
      * <p>
      * @param commandList the list of {@link MPDCommand}s
      * <p>
-     * @return true if successful, false otherwise
+     * @return true if successful
      * <p>
      * @throws org.bff.javampd.exception.MPDResponseException if the MPD
      *                                                          response
@@ -736,57 +1322,43 @@ public class MPD {
      *                                                          the command to
      *                                                          the server
      */
-    protected synchronized boolean sendMPDCommands(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException {
-        boolean isOk = true;
-        StringBuffer sb;
-
-        sb = new StringBuffer(convertCommand(prop.getProperty(MPDPROPSTARTBULK), new ArrayList<String>()));
-
-        for (MPDCommand command : commandList) {
-            sb.append(convertCommand(command.getCommand(), command.getParams()));
-        }
-
-        sb.append(convertCommand(prop.getProperty(MPDPROPENDBULK), new ArrayList<String>()));
-
-        byte[] bytesToSend;
-
-        OutputStream outStream;
-        BufferedReader in;
-
-        if (!socket.isConnected()) {
-            try {
-                connect();
-            } catch (Exception e) {
-                throw new MPDConnectionException("Connection to server lost: " + e.getMessage(), e);
-            }
-        }
+    protected boolean sendMPDCommands(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException {
+        sendMPDCommandList(commandList);
+        return (true);
+    }
 
+    /**
+     * Sends a list of {@link MPDCommand}s wrapped in a command list in one
+     * round trip and returns the response of each command. MPD stops at the
+     * first failing command; the {@link MPDCommandListException} thrown then
+     * names the command, its index in the list and the responses of the
+     * commands before it.
+     * <p>
+     * @param commandList the list of {@link MPDCommand}s
+     * <p>
+     * @return the response lines of each command, in the order of the list
+     * <p>
+     * @throws org.bff.javampd.exception.MPDResponseException if the MPD
+     *                                                          response
+     *                                                          generates an
+     *                                                          error
+     * @throws org.bff.javampd.exception.MPDConnectionException if there is a
+     *                                                          problem sending
+     *                                                          the command to
+     *                                                          the server
+     */
+    protected List<List<String>> sendMPDCommandList(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException {
+        boolean mutating = invalidateStatus(commandList);
         try {
-            bytesToSend = sb.toString().getBytes(prop.getProperty(MPDPROPSERVERENCODING));
-            outStream = socket.getOutputStream();
-            outStream.write(bytesToSend);
-
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-            String inLine;
-            while ((inLine = in.readLine()) != null) {
-                if (!inLine.startsWith("list_OK")) {
-                    isOk = false;
-                }
-                if (isResponseOK(inLine)) {
-                    //end of command is ok so break
-                    break;
-                }
-
-                if (isResponseError(inLine)) {
-                    throw new MPDResponseException(getLastError());
-                }
+            return (transport.sendCommands(commandList));
+        } catch (MPDResponseException re) {
+            this.lastError = re.getMessage();
+            throw re;
+        } finally {
+            if (mutating) {
+                invalidateStatus();
             }
-        } catch (Exception e) {
-            throw new MPDConnectionException(e.getMessage(), e);
         }
-
-        return (isOk);
     }
 
     /**
@@ -798,9 +1370,22 @@ public class MPD {
         return (prop);
     }
 
-    private void authenticate(String password) throws MPDConnectionException, MPDResponseException {
-        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPPASSWORD), password);
-        sendMPDCommand(command);
+    /**
+     * Returns a string identifying the server this instance is connected to.
+     * <p>
+     * @return the address and port of the server
+     */
+    String getServerId() {
+        return (serverAddress.getHostAddress() + ":" + port);
+    }
+
+    /**
+     * Returns the number of connections commands can be sent on in parallel.
+     * <p>
+     * @return the size of the connection pool, 1 with a {@link MPDEventLoop}
+     */
+    int getPoolSize() {
+        return (eventLoop != null ? 1 : Math.max(1, poolSize));
     }
 
     /**
@@ -867,83 +1452,18 @@ public class MPD {
      */
     protected List<MPDSong> convertResponseToSong(List<String> list) {
         List<MPDSong> songList = new ArrayList<MPDSong>();
-        Iterator<String> iter = list.iterator();
-        String line = null;
-
-        while (iter.hasNext()) {
-            if (line == null || (!line.startsWith(SONGPREFIXFILE))) {
-                line = iter.next();
-            }
-
-            if (line.startsWith(SONGPREFIXFILE)) {
-                MPDSong song = new MPDSong();
-                song.setFile(line.substring(SONGPREFIXFILE.length()).trim());
-                while (!(line = iter.next()).startsWith(SONGPREFIXFILE)) {
-                    if (line.startsWith(SONGPREFIXALBUM)) {
-                        song.setAlbum(new MPDAlbum(line.substring(SONGPREFIXALBUM.length()).trim()));
-                    } else if (line.startsWith(SONGPREFIXARTIST)) {
-                        song.setArtist(new MPDArtist(line.substring(SONGPREFIXARTIST.length()).trim()));
-                    } else if (line.startsWith(SONGPREFIXTIME)) {
-                        song.setLength(Integer.parseInt(line.substring(SONGPREFIXTIME.length()).trim()));
-                    } else if (line.startsWith(SONGPREFIXTITLE)) {
-                        song.setTitle(line.substring(SONGPREFIXTITLE.length()).trim());
-                    } else if (line.startsWith(SONGPREFIXDATE)) {
-                        song.setYear(line.substring(SONGPREFIXDATE.length()).trim());
-                    } else if (line.startsWith(SONGPREFIXGENRE)) {
-                        song.setGenre(line.substring(SONGPREFIXGENRE.length()).trim());
-                    } else if (line.startsWith(SONGPREFIXCOMMENT)) {
-                        song.setComment(line.substring(SONGPREFIXCOMMENT.length()).trim());
-                    } else if (line.startsWith(SONGPREFIXTRACK)) {
-                        try {
-                            song.setTrack(Integer.parseInt(line.substring(SONGPREFIXTRACK.length()).trim().split("/")[0]));
-                        } catch (NumberFormatException nfe) {
-                            song.setTrack(0);
-                        }
-                    } else if (line.startsWith(SONGPREFIXPOS)) {
-                        song.setPosition(Integer.parseInt(line.substring(SONGPREFIXPOS.length()).trim()));
-                    } else if (line.startsWith(SONGPREFIXID)) {
-                        song.setId(Integer.parseInt(line.substring(SONGPREFIXID.length()).trim()));
-                    } else if (line.startsWith(SONGPREFIXDISC)) {
-                        song.setDiscNumber(line.substring(SONGPREFIXDISC.length()).trim());
-                    } else if (line.startsWith(SONGPREFIXNAME)) {
-                        song.setName(line.substring(SONGPREFIXNAME.length()).trim());
-                    }
-                    if (!iter.hasNext()) {
-                        break;
-                    }
-                }
-                songList.add(song);
-            }
+        MPDSongParser parser = new MPDSongParser(songList::add);
+        for (String line : list) {
+            parser.accept(line);
         }
+        parser.finish();
         return (songList);
     }
 
-    private boolean isResponseOK(final String line) {
-        try {
-            if (line.startsWith(prop.getProperty(MPDPROPRESPONSEOK))) {
-                return (true);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return (false);
-    }
-
-    private boolean isResponseError(final String line) {
-        try {
-            if (line.startsWith(prop.getProperty(MPDPROPRESPONSEERR))) {
-                this.lastError = line.substring(prop.getProperty(MPDPROPRESPONSEERR).length()).trim();
-                return (true);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return (false);
-    }
-
     /**
-     * If MPD is already connected no attempt will be made to connect and the
-     * version is returned.
+     * Opens a new pool of connections to the server replacing any existing
+     * one. The first connection is opened and authenticated immediately so
+     * connection problems and a wrong password are reported here.
      * <p/>
      * A timeout of 0 means an infinite wait.
      * <p>
@@ -959,40 +1479,20 @@ public class MPD {
      *                                                          issues
      */
     protected synchronized String connect(int timeout) throws IOException, MPDConnectionException {
-        BufferedReader in;
-
-        this.socket = new Socket();
-        SocketAddress sockaddr = new InetSocketAddress(serverAddress, port);
-        try {
-            this.socket.connect(sockaddr, timeout);
-        } catch (SocketTimeoutException ste) {
-            throw new MPDTimeoutException(ste);
+        if (transport != null) {
+            transport.close();
         }
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        String line = in.readLine();
-        if (isResponseOK(line)) {
-            return (stripResponse(Response.OK, line).trim());
+        if (eventLoop != null) {
+            transport = new MPDNioConnection(eventLoop, serverAddress, port, password, timeout, prop);
         } else {
-            throw new MPDConnectionException("Response from server: " + stripResponse(Response.ERR, line));
+            transport = new MPDConnectionPool(serverAddress, port, password, timeout, poolSize, prop);
         }
-    }
 
-    /**
-     * Attempts to connect to MPD with an infinite timeout value. If MPD is
-     * already connected no attempt will be made to connect and the version is
-     * returned.
-     * <p>
-     * @return return the version of MPD
-     * <p>
-     * @throws java.io.IOException                              if there is a
-     *                                                          socked io
-     *                                                          problem
-     * @throws org.bff.javampd.exception.MPDConnectionException if there are
-     *                                                          connection
-     *                                                          issues
-     */
-    private synchronized String connect() throws IOException, MPDConnectionException {
-        return connect(0);
+        try {
+            return (transport.connect());
+        } catch (MPDResponseException re) {
+            throw new MPDConnectionException(re.getMessage(), re);
+        }
     }
 
     private boolean ping() {
@@ -1004,26 +1504,6 @@ public class MPD {
         return (true);
     }
 
-    private String convertCommand(String command, List<String> params) {
-        StringBuilder sb = new StringBuilder(command);
-        if (params != null) {
-            for (String param : params) {
-                if (param != null) {
-                    sb.append(param.contains(" ") ? " \"" : " ");
-                    sb.append(param);
-                    sb.append(param.contains(" ") ? "\"" : "");
-                }
-            }
-            sb.append("\n");
-        }
-
-        return (sb.toString());
-    }
-
-    private String stripResponse(Response response, String line) {
-        return (line.substring(prop.getProperty(response.getProp()).length()));
-    }
-
     private static void loadMpdPropValues() {
         prop = new Properties();
 
@@ -1044,7 +1524,7 @@ public class MPD {
     }
 
     /**
-     * Returns the last error generated by <code>isResponseOK</code>.
+     * Returns the last error message returned by the server.
      * <p>
      * @return the error message
      */
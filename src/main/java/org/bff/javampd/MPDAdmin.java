@@ -107,7 +107,14 @@ public class MPDAdmin {
         return mpd.sendMPDCommand(command).isEmpty();
     }
 
-    private Collection<MPDOutput> parseOutputs(Collection<String> response) {
+    /**
+     * Converts the response of the <code>outputs</code> command into
+     * {@link MPDOutput}s.
+     *
+     * @param response the response from the MPD server
+     * @return a {@link Collection} of {@link MPDOutput}
+     */
+    static Collection<MPDOutput> parseOutputs(Collection<String> response) {
         List<MPDOutput> outputs = new ArrayList<MPDOutput>();
         Iterator<String> iter = response.iterator();
         String line = null;
@@ -237,7 +244,7 @@ public class MPDAdmin {
      */
     public int getDaemonUpTime() throws MPDConnectionException, MPDAdminException {
         try {
-            return (Integer.parseInt(mpd.getServerStat(MPD.StatList.UPTIME)));
+            return ((int) mpd.getMPDStats().getUptime());
         } catch (MPDResponseException re) {
             throw new MPDAdminException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
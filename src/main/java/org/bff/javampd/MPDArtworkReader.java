@@ -0,0 +1,129 @@
+/*
+ * MPDArtworkReader.java
+ */
+package org.bff.javampd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MPDArtworkReader copies the chunks of <code>albumart</code> and
+ * <code>readpicture</code> responses to an <code>OutputStream</code> as they
+ * are read and keeps track of the total size announced by the server.  The
+ * chunks must be passed in order of their offset.
+ * <p>
+ * Each chunk is checked against the offset it was requested at.  Once a chunk
+ * does not continue where the artwork written so far ends, it and the
+ * remaining chunks of the pipeline are dropped and the reader reports itself
+ * {@link #isMisaligned() misaligned}, so the caller can request the rest
+ * again instead of writing a corrupt image.
+ */
+class MPDArtworkReader implements MPDBinaryHandler {
+
+    private static final byte[] SIZE = "size:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BINARY = "binary:".getBytes(StandardCharsets.US_ASCII);
+    private final OutputStream out;
+    private long size = -1;
+    private long received;
+    private long[] offsets;
+    private int chunkIndex;
+    private boolean misaligned;
+
+    /**
+     * Creates a reader writing the artwork to <code>out</code>.
+     *
+     * @param out receives the bytes of the artwork
+     */
+    MPDArtworkReader(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void accept(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        accept(bytes, 0, bytes.length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(byte[] buffer, int offset, int length, Charset charset) {
+        if (startsWith(buffer, offset, length, SIZE)) {
+            size = Long.parseLong(new String(buffer, offset + SIZE.length, length - SIZE.length,
+                    StandardCharsets.US_ASCII).trim());
+        } else if (startsWith(buffer, offset, length, BINARY)) {
+            //a chunk starts, it must continue where the artwork ends so far
+            long requested = offsets != null && chunkIndex < offsets.length ? offsets[chunkIndex] : received;
+            ++chunkIndex;
+            if (requested != received) {
+                misaligned = true;
+            }
+        }
+    }
+
+    /**
+     * Sets the offsets the chunks of the next pipeline were requested at.
+     *
+     * @param offsets the requested offsets in order
+     */
+    void expect(long[] offsets) {
+        this.offsets = offsets;
+        this.chunkIndex = 0;
+        this.misaligned = false;
+    }
+
+    /**
+     * Returns true if a chunk of the last pipeline was dropped because it did
+     * not start at the offset it was requested at.
+     *
+     * @return true if the remaining artwork has to be requested again
+     */
+    boolean isMisaligned() {
+        return (misaligned);
+    }
+
+    @Override
+    public void binary(byte[] buffer, int offset, int length) {
+        if (misaligned) {
+            return;
+        }
+
+        try {
+            out.write(buffer, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        received += length;
+    }
+
+    /**
+     * Returns the size of the artwork announced by the server.
+     *
+     * @return the size in bytes, -1 if the response had no artwork
+     */
+    long getSize() {
+        return (size);
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return the number of bytes received
+     */
+    long getReceived() {
+        return (received);
+    }
+
+    private static boolean startsWith(byte[] buffer, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return (false);
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return (false);
+            }
+        }
+        return (true);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * MPDAsync.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * MPDAsync is the asynchronous facade of a {@link MPD} connection.  To obtain
+ * an instance of the class you must use the {@link MPD#async()} method.  The
+ * controllers returned by this class mirror the common calls of
+ * {@link MPDDatabase}, {@link MPDPlayer}, {@link MPDPlaylist} and
+ * {@link MPDAdmin} but return <code>CompletableFuture</code>s backed directly
+ * by the transport of the connection, so many queries can be composed without
+ * a thread waiting on each of them:
+ * <pre>
+ * mpd.async().database().search(MPDDatabase.ScopeType.ARTIST, "Miles")
+ *         .thenAccept(songs -&gt; show(songs));
+ * </pre>
+ * A future fails with the same exception the blocking call would throw, for
+ * instance a {@link org.bff.javampd.exception.MPDDatabaseException} if the
+ * server rejects a search or a {@link MPDConnectionException} if the
+ * connection is lost.  Listeners registered with the blocking controllers are
+ * notified as well.
+ * <p>
+ * Futures are completed on the thread that read the response, which is an
+ * I/O thread of the {@link MPDEventLoop} if the connection uses one.
+ * Dependent stages and listeners must not call the blocking API from there;
+ * use the <code>...Async</code> variants of <code>CompletableFuture</code> for
+ * long running work.
+ */
+public class MPDAsync {
+
+    private final MPD mpd;
+    private MPDAsyncDatabase database;
+    private MPDAsyncPlayer player;
+    private MPDAsyncPlaylist playlist;
+    private MPDAsyncAdmin admin;
+
+    /**
+     * Creates the facade for a connection.
+     *
+     * @param mpd the MPD connection
+     */
+    MPDAsync(MPD mpd) {
+        this.mpd = mpd;
+    }
+
+    /**
+     * Returns the asynchronous database controller.
+     *
+     * @return the asynchronous database controller
+     */
+    public synchronized MPDAsyncDatabase database() {
+        if (database == null) {
+            database = new MPDAsyncDatabase(mpd);
+        }
+        return (database);
+    }
+
+    /**
+     * Returns the asynchronous player controller.
+     *
+     * @return the asynchronous player controller
+     */
+    public synchronized MPDAsyncPlayer player() {
+        if (player == null) {
+            player = new MPDAsyncPlayer(mpd);
+        }
+        return (player);
+    }
+
+    /**
+     * Returns the asynchronous playlist controller.
+     *
+     * @return the asynchronous playlist controller
+     */
+    public synchronized MPDAsyncPlaylist playlist() {
+        if (playlist == null) {
+            playlist = new MPDAsyncPlaylist(mpd);
+        }
+        return (playlist);
+    }
+
+    /**
+     * Returns the asynchronous administrative controller.
+     *
+     * @return the asynchronous administrative controller
+     */
+    public synchronized MPDAsyncAdmin admin() {
+        if (admin == null) {
+            admin = new MPDAsyncAdmin(mpd);
+        }
+        return (admin);
+    }
+
+    /**
+     * Sends the commands of all calls made by <code>calls</code> on this
+     * facade as one pipeline: they are written back to back on one connection
+     * once <code>calls</code> returns and the responses are read in order, so
+     * independent queries cost a single round trip instead of one each:
+     * <pre>
+     * MPDAsync async = mpd.async();
+     * async.pipelined(() -&gt; {
+     *     async.player().getStatus().thenAccept(status -&gt; showStatus(status));
+     *     async.player().getCurrentSong().thenAccept(song -&gt; showSong(song));
+     *     async.admin().getOutputs().thenAccept(outputs -&gt; showOutputs(outputs));
+     * });
+     * </pre>
+     * Each future completes or fails on its own; a rejected command does not
+     * affect the others.  Commands sent by dependent stages after
+     * <code>calls</code> returned are not part of the pipeline.
+     *
+     * @param calls the calls whose commands to pipeline
+     */
+    public void pipelined(Runnable calls) {
+        mpd.pipelined(calls);
+    }
+
+    /**
+     * Converts the future response of a command into the future result of a
+     * call.  Connection errors are passed on unchanged; server errors and
+     * errors of the parser are translated by <code>translate</code> the same
+     * way the blocking controller translates them.
+     *
+     * @param response  the future response
+     * @param parser    converts the response into the result
+     * @param translate converts any other error into the exception of the
+     *                  controller
+     * @param <R>       the type of the response
+     * @param <T>       the type of the result
+     * @return the future result
+     */
+    static <R, T> CompletableFuture<T> adapt(CompletableFuture<R> response,
+                                             final Function<R, T> parser,
+                                             final Function<Throwable, ? extends MPDException> translate) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        response.whenComplete((lines, error) -> {
+            if (error == null) {
+                try {
+                    result.complete(parser.apply(lines));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(translate.apply(e));
+                }
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof MPDConnectionException) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.completeExceptionally(translate.apply(cause));
+                }
+            }
+        });
+        return (result);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * MPDAsyncAdmin.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.events.MPDChangeEvent;
+import org.bff.javampd.events.OutputChangeEvent;
+import org.bff.javampd.exception.MPDAdminException;
+import org.bff.javampd.exception.MPDException;
+import org.bff.javampd.exception.MPDResponseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * MPDAsyncAdmin is the asynchronous counterpart of {@link MPDAdmin}.  To
+ * obtain an instance of the class you must use {@link MPDAsync#admin()}.
+ * Successful commands fire the same events on the {@link MPDAdmin} of the
+ * connection as the blocking calls.  Futures fail with a
+ * {@link MPDAdminException} if the MPD responded with an error and with a
+ * {@link org.bff.javampd.exception.MPDConnectionException} if there is a
+ * problem sending the command.
+ */
+public class MPDAsyncAdmin {
+
+    private final MPD mpd;
+    private final Properties prop;
+    private static final String MPDPROPREFRESH = "MPD_ADMIN_REFRESH";
+    private static final String MPDPROPOUTPUTS = "MPD_ADMIN_OUTPUTS";
+    private static final String MPDPROPOUTPUTENABLE = "MPD_ADMIN_ENABLE_OUT";
+    private static final String MPDPROPOUTPUTDISABLE = "MPD_ADMIN_DISABLE_OUT";
+
+    MPDAsyncAdmin(MPD mpd) {
+        this.mpd = mpd;
+        this.prop = mpd.getMPDProperties();
+    }
+
+    /**
+     * Returns the information about all outputs, see
+     * {@link MPDAdmin#getOutputs()}.
+     *
+     * @return the future {@link Collection} of {@link MPDOutput}
+     */
+    public CompletableFuture<Collection<MPDOutput>> getOutputs() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPOUTPUTS)),
+                response -> new ArrayList<MPDOutput>(MPDAdmin.parseOutputs(response))));
+    }
+
+    /**
+     * Disables the passed {@link MPDOutput}, see
+     * {@link MPDAdmin#disableOutput(MPDOutput)}.
+     *
+     * @param output the output to disable
+     * @return the future completed with true if the output is disabled
+     */
+    public CompletableFuture<Boolean> disableOutput(MPDOutput output) {
+        return (changeOutput(new MPDCommand(prop.getProperty(MPDPROPOUTPUTDISABLE), Integer.toString(output.getId()))));
+    }
+
+    /**
+     * Enables the passed {@link MPDOutput}, see
+     * {@link MPDAdmin#enableOutput(MPDOutput)}.
+     *
+     * @param output the output to enable
+     * @return the future completed with true if the output is enabled
+     */
+    public CompletableFuture<Boolean> enableOutput(MPDOutput output) {
+        return (changeOutput(new MPDCommand(prop.getProperty(MPDPROPOUTPUTENABLE), Integer.toString(output.getId()))));
+    }
+
+    /**
+     * Updates the MPD database, see {@link MPDAdmin#updateDatabase()}.
+     *
+     * @return the future completed when the update is started
+     */
+    public CompletableFuture<Void> updateDatabase() {
+        return (refresh(new MPDCommand(prop.getProperty(MPDPROPREFRESH))));
+    }
+
+    /**
+     * Updates a specific path of the MPD database, see
+     * {@link MPDAdmin#updateDatabase(String)}.
+     *
+     * @param path the path
+     * @return the future completed when the update is started
+     */
+    public CompletableFuture<Void> updateDatabase(String path) {
+        return (refresh(new MPDCommand(prop.getProperty(MPDPROPREFRESH), path)));
+    }
+
+    private CompletableFuture<Boolean> changeOutput(MPDCommand command) {
+        return (send(command, response -> {
+            mpd.getMPDAdmin().fireOutputChangeEvent(OutputChangeEvent.OUTPUT_EVENT.OUTPUT_CHANGED);
+            return (response.isEmpty());
+        }));
+    }
+
+    private CompletableFuture<Void> refresh(MPDCommand command) {
+        return (send(command, response -> {
+            mpd.getMPDAdmin().fireMPDChangeEvent(MPDChangeEvent.MPD_REFRESHED);
+            return (null);
+        }));
+    }
+
+    private <T> CompletableFuture<T> send(MPDCommand command, Function<List<String>, T> parser) {
+        return (MPDAsync.adapt(mpd.sendMPDCommandAsync(command), parser, MPDAsyncAdmin::translate));
+    }
+
+    private static MPDException translate(Throwable error) {
+        if (error instanceof MPDResponseException) {
+            MPDResponseException re = (MPDResponseException) error;
+            return (new MPDAdminException(re.getMessage(), re.getCommand(), re));
+        }
+        return (new MPDAdminException(error));
+    }
+}
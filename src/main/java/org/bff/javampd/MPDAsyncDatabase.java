@@ -0,0 +1,337 @@
+/*
+ * MPDAsyncDatabase.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDDatabaseException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDAlbum;
+import org.bff.javampd.objects.MPDArtist;
+import org.bff.javampd.objects.MPDGenre;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * MPDAsyncDatabase is the asynchronous counterpart of {@link MPDDatabase}.  To
+ * obtain an instance of the class you must use {@link MPDAsync#database()}.
+ * Futures fail with a {@link MPDDatabaseException} if the MPD responded with
+ * an error and with a {@link org.bff.javampd.exception.MPDConnectionException}
+ * if there is a problem sending the command.
+ * <p>
+ * Queries are answered from the {@link MPDDatabase#setLibraryIndex(MPDLibraryIndex)
+ * library index} and the {@link MPDDatabase#setCacheCapacity(int) cache} of
+ * the {@link MPDDatabase} where the blocking calls would be, in which case
+ * the returned future is already complete.
+ */
+public class MPDAsyncDatabase {
+
+    private final MPD mpd;
+    private final Properties prop;
+    private static final String MPDPROPFIND = "MPD_DB_FIND";
+    private static final String MPDPROPLIST = "MPD_DB_LIST_TAG";
+    private static final String MPDPROPLISTALLINFO = "MPD_DB_LIST_ALL_INFO";
+    private static final String MPDPROPLISTINFO = "MPD_DB_LIST_INFO";
+    private static final String MPDPROPSEARCH = "MPD_DB_SEARCH";
+    private static final String MPDPROPLISTSONGS = "MPD_DP_LIST_SONGS";
+    private static final String PLAYLIST_PREFIX = "playlist:";
+
+    MPDAsyncDatabase(MPD mpd) {
+        this.mpd = mpd;
+        this.prop = mpd.getMPDProperties();
+    }
+
+    /**
+     * Returns the {@link MPDSong}s exactly matching the criteria, see
+     * {@link MPDDatabase#find(MPDDatabase.ScopeType, String)}.
+     *
+     * @param scopeType the {@link MPDDatabase.ScopeType}
+     * @param param     the search criteria
+     * @return the future list of {@link MPDSong}s
+     */
+    public CompletableFuture<List<MPDSong>> find(final MPDDatabase.ScopeType scopeType, final String param) {
+        return (indexed(scopeType, param, index -> index.find(scopeType, param),
+                new MPDCommand(prop.getProperty(MPDPROPFIND), scopeParams(scopeType, param))));
+    }
+
+    /**
+     * Returns the {@link MPDSong}s partially matching the criteria, see
+     * {@link MPDDatabase#search(MPDDatabase.ScopeType, String)}.
+     *
+     * @param searchType the {@link MPDDatabase.ScopeType}
+     * @param param      the search criteria
+     * @return the future list of {@link MPDSong}s
+     */
+    public CompletableFuture<List<MPDSong>> search(final MPDDatabase.ScopeType searchType, final String param) {
+        return (indexed(searchType, param, index -> index.search(searchType, param),
+                new MPDCommand(prop.getProperty(MPDPROPSEARCH), scopeParams(searchType, param))));
+    }
+
+    /**
+     * Returns all {@link MPDSong}s of the database, see
+     * {@link MPDDatabase#listAllSongs()}.
+     *
+     * @return the future list of {@link MPDSong}s
+     */
+    public CompletableFuture<List<MPDSong>> listAllSongs() {
+        return (songs(new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO))));
+    }
+
+    /**
+     * Passes each {@link MPDSong} of the database to <code>songHandler</code>
+     * as soon as it is read, see {@link MPDDatabase#streamAllSongs(Consumer)}.
+     * The handler is called on the thread reading the response.
+     *
+     * @param songHandler receives the songs in database order
+     * @return the future completed after the last song
+     */
+    public CompletableFuture<Void> streamAllSongs(Consumer<MPDSong> songHandler) {
+        return (stream(new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO)), songHandler));
+    }
+
+    /**
+     * Passes each {@link MPDSong} partially matching the criteria to
+     * <code>songHandler</code> as soon as it is read, see
+     * {@link MPDDatabase#streamSearch(MPDDatabase.ScopeType, String, Consumer)}.
+     *
+     * @param searchType  the {@link MPDDatabase.ScopeType}
+     * @param param       the search criteria
+     * @param songHandler receives the songs in response order
+     * @return the future completed after the last song
+     */
+    public CompletableFuture<Void> streamSearch(final MPDDatabase.ScopeType searchType, final String param,
+                                                Consumer<MPDSong> songHandler) {
+        return (indexed(searchType, param, index -> index.search(searchType, param),
+                new MPDCommand(prop.getProperty(MPDPROPSEARCH), scopeParams(searchType, param)), songHandler));
+    }
+
+    /**
+     * Passes each {@link MPDSong} exactly matching the criteria to
+     * <code>songHandler</code> as soon as it is read, see
+     * {@link MPDDatabase#streamFind(MPDDatabase.ScopeType, String, Consumer)}.
+     *
+     * @param scopeType   the {@link MPDDatabase.ScopeType}
+     * @param param       the search criteria
+     * @param songHandler receives the songs in response order
+     * @return the future completed after the last song
+     */
+    public CompletableFuture<Void> streamFind(final MPDDatabase.ScopeType scopeType, final String param,
+                                              Consumer<MPDSong> songHandler) {
+        return (indexed(scopeType, param, index -> index.find(scopeType, param),
+                new MPDCommand(prop.getProperty(MPDPROPFIND), scopeParams(scopeType, param)), songHandler));
+    }
+
+    /**
+     * Returns all {@link MPDAlbum}s of the database, see
+     * {@link MPDDatabase#listAllAlbums()}.
+     *
+     * @return the future list of {@link MPDAlbum}s
+     */
+    public CompletableFuture<List<MPDAlbum>> listAllAlbums() {
+        return (MPDAsync.adapt(list("album"), values -> {
+            List<MPDAlbum> albums = new ArrayList<MPDAlbum>();
+            for (String value : values) {
+                albums.add(new MPDAlbum(value));
+            }
+            return (albums);
+        }, MPDAsyncDatabase::translate));
+    }
+
+    /**
+     * Returns all {@link MPDArtist}s of the database, see
+     * {@link MPDDatabase#listAllArtists()}.
+     *
+     * @return the future list of {@link MPDArtist}s
+     */
+    public CompletableFuture<List<MPDArtist>> listAllArtists() {
+        return (MPDAsync.adapt(list("artist"), values -> {
+            List<MPDArtist> artists = new ArrayList<MPDArtist>();
+            for (String value : values) {
+                artists.add(new MPDArtist(value));
+            }
+            return (artists);
+        }, MPDAsyncDatabase::translate));
+    }
+
+    /**
+     * Returns all {@link MPDGenre}s of the database, see
+     * {@link MPDDatabase#listAllGenres()}.
+     *
+     * @return the future list of {@link MPDGenre}s
+     */
+    public CompletableFuture<List<MPDGenre>> listAllGenres() {
+        return (MPDAsync.adapt(list("genre"), values -> {
+            List<MPDGenre> genres = new ArrayList<MPDGenre>();
+            for (String value : values) {
+                genres.add(new MPDGenre(value));
+            }
+            return (genres);
+        }, MPDAsyncDatabase::translate));
+    }
+
+    /**
+     * Returns the {@link MPDAlbum}s of an artist, see
+     * {@link MPDDatabase#listAlbumsByArtist(MPDArtist)}.
+     *
+     * @param artist the artist to find albums
+     * @return the future list of {@link MPDAlbum}s
+     */
+    public CompletableFuture<List<MPDAlbum>> listAlbumsByArtist(final MPDArtist artist) {
+        return (MPDAsync.adapt(list("album", artist.getName()), values -> {
+            List<MPDAlbum> albums = new ArrayList<MPDAlbum>();
+            for (String value : values) {
+                MPDAlbum album = new MPDAlbum(value);
+                album.setArtist(artist);
+                albums.add(album);
+            }
+            return (albums);
+        }, MPDAsyncDatabase::translate));
+    }
+
+    /**
+     * Returns the names of all saved playlists, see
+     * {@link MPDDatabase#listPlaylists()}.
+     *
+     * @return the future list of playlist names
+     */
+    public CompletableFuture<List<String>> listPlaylists() {
+        return (MPDAsync.adapt(mpd.sendMPDCommandAsync(new MPDCommand(prop.getProperty(MPDPROPLISTINFO))), response -> {
+            List<String> playlists = new ArrayList<String>();
+            for (String line : response) {
+                if (line.startsWith(PLAYLIST_PREFIX)) {
+                    playlists.add(line.substring(PLAYLIST_PREFIX.length()).trim());
+                }
+            }
+            return (playlists);
+        }, MPDAsyncDatabase::translate));
+    }
+
+    /**
+     * Returns the {@link MPDSong}s of a saved playlist, see
+     * {@link MPDDatabase#listPlaylistSongs(String)}.
+     *
+     * @param playlistName the name of the playlist
+     * @return the future list of {@link MPDSong}s
+     */
+    public CompletableFuture<List<MPDSong>> listPlaylistSongs(String playlistName) {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPLISTSONGS), playlistName)));
+    }
+
+    /**
+     * Answers from the library index if it supports the scope and from the
+     * server otherwise.
+     */
+    private CompletableFuture<List<MPDSong>> indexed(final MPDDatabase.ScopeType scopeType, final String param,
+                                                     final Function<MPDLibraryIndex, List<MPDSong>> query,
+                                                     final MPDCommand command) {
+        final MPDDatabase database = mpd.getMPDDatabase();
+        if (database.getIndex(scopeType, param) == null) {
+            return (songs(command));
+        }
+        return (whenValid(() -> {
+            MPDLibraryIndex index = database.getIndex(scopeType, param);
+            return (index != null ? CompletableFuture.completedFuture(query.apply(index)) : songs(command));
+        }));
+    }
+
+    /**
+     * Passes the songs from the library index if it supports the scope and
+     * streams them from the server otherwise.
+     */
+    private CompletableFuture<Void> indexed(final MPDDatabase.ScopeType scopeType, final String param,
+                                            final Function<MPDLibraryIndex, List<MPDSong>> query,
+                                            final MPDCommand command, final Consumer<MPDSong> songHandler) {
+        final MPDDatabase database = mpd.getMPDDatabase();
+        if (database.getIndex(scopeType, param) == null) {
+            return (stream(command, songHandler));
+        }
+        return (whenValid(() -> {
+            MPDLibraryIndex index = database.getIndex(scopeType, param);
+            if (index == null) {
+                return (stream(command, songHandler));
+            }
+            query.apply(index).forEach(songHandler);
+            return (CompletableFuture.completedFuture(null));
+        }));
+    }
+
+    private CompletableFuture<List<MPDSong>> songs(MPDCommand command) {
+        return (cached(command, () -> send(command)));
+    }
+
+    private CompletableFuture<List<MPDSong>> send(MPDCommand command) {
+        return (MPDAsync.adapt(mpd.sendMPDCommandAsync(command), mpd::convertResponseToSong,
+                MPDAsyncDatabase::translate));
+    }
+
+    private CompletableFuture<Void> stream(MPDCommand command, Consumer<MPDSong> songHandler) {
+        return (MPDAsync.adapt(mpd.sendMPDSongCommandAsync(command, songHandler), done -> done,
+                MPDAsyncDatabase::translate));
+    }
+
+    private CompletableFuture<List<String>> list(String... params) {
+        final MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLIST), params);
+        return (cached(command, () -> mpd.sendMPDCommandAsync(command).thenApply(MPDDatabase::parseList)));
+    }
+
+    /**
+     * Answers from the cache of the database if it holds the answer and
+     * caches the answer of the server otherwise.
+     */
+    private <T> CompletableFuture<List<T>> cached(final MPDCommand command,
+                                                  final Supplier<CompletableFuture<List<T>>> request) {
+        final MPDDatabase database = mpd.getMPDDatabase();
+        if (database.getCache() == null) {
+            return (request.get());
+        }
+        return (whenValid(() -> {
+            final MPDLibraryCache cache = database.getCache();
+            if (cache == null) {
+                return (request.get());
+            }
+            final String key = command.toCommandString();
+            List<T> hit = cache.get(key);
+            if (hit != null) {
+                return (CompletableFuture.completedFuture(hit));
+            }
+            final int generation = cache.getGeneration();
+            CompletableFuture<List<T>> response = request.get();
+            response.thenAccept(values -> cache.put(key, values, generation));
+            return (response);
+        }));
+    }
+
+    /**
+     * Runs <code>request</code> once the database checked, without blocking,
+     * whether the cache and index are still valid.  If no check is due the
+     * request is made right away, so it keeps its place in a pipeline.
+     */
+    private <T> CompletableFuture<T> whenValid(final Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<Void> valid = mpd.getMPDDatabase().validateAsync();
+        if (valid.isDone() && !valid.isCompletedExceptionally()) {
+            return (request.get());
+        }
+        return (MPDAsync.adapt(valid, done -> done, MPDAsyncDatabase::translate).thenCompose(done -> request.get()));
+    }
+
+    private static String[] scopeParams(MPDDatabase.ScopeType scopeType, String param) {
+        if (param == null) {
+            return (new String[]{scopeType.getType()});
+        }
+        return (new String[]{scopeType.getType(), param});
+    }
+
+    static MPDDatabaseException translate(Throwable error) {
+        if (error instanceof MPDResponseException) {
+            MPDResponseException re = (MPDResponseException) error;
+            return (new MPDDatabaseException(re.getMessage(), re.getCommand(), re));
+        }
+        return (new MPDDatabaseException(error));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * MPDAsyncPlayer.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.events.PlayerChangeEvent;
+import org.bff.javampd.exception.MPDException;
+import org.bff.javampd.exception.MPDPlayerException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * MPDAsyncPlayer is the asynchronous counterpart of {@link MPDPlayer}.  To
+ * obtain an instance of the class you must use {@link MPDAsync#player()}.
+ * Successful commands fire the same events on the {@link MPDPlayer} of the
+ * connection as the blocking calls.  Futures fail with a
+ * {@link MPDPlayerException} if the MPD responded with an error and with a
+ * {@link org.bff.javampd.exception.MPDConnectionException} if there is a
+ * problem sending the command.
+ */
+public class MPDAsyncPlayer {
+
+    private final MPD mpd;
+    private final Properties prop;
+    private static final String MPDPROPCURRSONG = "MPD_PLAYER_CURRENTSONG";
+    private static final String MPDPROPNEXT = "MPD_PLAYER_NEXT";
+    private static final String MPDPROPPAUSE = "MPD_PLAYER_PAUSE";
+    private static final String MPDPROPPLAY = "MPD_PLAYER_PLAY";
+    private static final String MPDPROPPLAYID = "MPD_PLAYER_PLAY_ID";
+    private static final String MPDPROPPREV = "MPD_PLAYER_PREV";
+    private static final String MPDPROPSTOP = "MPD_PLAYER_STOP";
+    private static final String MPDPROPSETVOL = "MPD_PLAYER_SET_VOLUME";
+
+    MPDAsyncPlayer(MPD mpd) {
+        this.mpd = mpd;
+        this.prop = mpd.getMPDProperties();
+    }
+
+    /**
+     * Starts the player, see {@link MPDPlayer#play()}.
+     *
+     * @return the future completed when the player started
+     */
+    public CompletableFuture<Void> play() {
+        return (playId(null));
+    }
+
+    /**
+     * Starts the player with the specified song, see
+     * {@link MPDPlayer#playId(MPDSong)}.
+     *
+     * @param song the song to start the player with
+     * @return the future completed when the player started
+     */
+    public CompletableFuture<Void> playId(MPDSong song) {
+        MPDCommand command = song == null
+                ? new MPDCommand(prop.getProperty(MPDPROPPLAY))
+                : new MPDCommand(prop.getProperty(MPDPROPPLAYID), Integer.toString(song.getId()));
+        return (send(command, response -> {
+            mpd.getMPDPlayer().played();
+            return (null);
+        }));
+    }
+
+    /**
+     * Stops the player, see {@link MPDPlayer#stop()}.
+     *
+     * @return the future completed when the player stopped
+     */
+    public CompletableFuture<Void> stop() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPSTOP)), response -> {
+            mpd.getMPDPlayer().changeStatus(MPDPlayer.PlayerStatus.STATUS_STOPPED, PlayerChangeEvent.PLAYER_STOPPED);
+            return (null);
+        }));
+    }
+
+    /**
+     * Pauses the player, see {@link MPDPlayer#pause()}.
+     *
+     * @return the future completed when the player paused
+     */
+    public CompletableFuture<Void> pause() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPPAUSE)), response -> {
+            mpd.getMPDPlayer().changeStatus(MPDPlayer.PlayerStatus.STATUS_PAUSED, PlayerChangeEvent.PLAYER_PAUSED);
+            return (null);
+        }));
+    }
+
+    /**
+     * Plays the next song in the playlist, see {@link MPDPlayer#playNext()}.
+     *
+     * @return the future completed when the next song is playing
+     */
+    public CompletableFuture<Void> playNext() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPNEXT)), response -> {
+            mpd.getMPDPlayer().firePlayerChangeEvent(PlayerChangeEvent.PLAYER_NEXT);
+            return (null);
+        }));
+    }
+
+    /**
+     * Plays the previous song in the playlist, see
+     * {@link MPDPlayer#playPrev()}.
+     *
+     * @return the future completed when the previous song is playing
+     */
+    public CompletableFuture<Void> playPrev() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPPREV)), response -> {
+            mpd.getMPDPlayer().firePlayerChangeEvent(PlayerChangeEvent.PLAYER_PREVIOUS);
+            return (null);
+        }));
+    }
+
+    /**
+     * Sets the volume of the player, see {@link MPDPlayer#setVolume(int)}.
+     * The volume is clamped to 0-100.
+     *
+     * @param volume the volume of the player
+     * @return the future completed when the volume is set
+     */
+    public CompletableFuture<Void> setVolume(int volume) {
+        final int newVolume = Math.max(0, Math.min(100, volume));
+        return (send(new MPDCommand(prop.getProperty(MPDPROPSETVOL), Integer.toString(newVolume)), response -> {
+            mpd.getMPDPlayer().fireVolumeChangeEvent(newVolume);
+            return (null);
+        }));
+    }
+
+    /**
+     * Returns the current volume of the player, see
+     * {@link MPDPlayer#getVolume()}.  Like the blocking call it shares the
+     * status snapshot and any status request on its way.
+     *
+     * @return the future volume of the player (0-100)
+     */
+    public CompletableFuture<Integer> getVolume() {
+        return (MPDAsync.adapt(mpd.getMPDStatusAsync(), MPDStatus::getVolume, MPDAsyncPlayer::translate));
+    }
+
+    /**
+     * Returns the current status of the player, see
+     * {@link MPDPlayer#getStatus()}.  Like the blocking call it shares the
+     * status snapshot and any status request on its way.
+     *
+     * @return the future status of the player
+     */
+    public CompletableFuture<MPDPlayer.PlayerStatus> getStatus() {
+        return (MPDAsync.adapt(mpd.getMPDStatusAsync(), MPDStatus::getState, MPDAsyncPlayer::translate));
+    }
+
+    /**
+     * Returns the current song either playing or queued for playing, see
+     * {@link MPDPlayer#getCurrentSong()}.
+     *
+     * @return the future current song, completed with null if there is none
+     */
+    public CompletableFuture<MPDSong> getCurrentSong() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPCURRSONG)), response -> {
+            List<MPDSong> songList = mpd.convertResponseToSong(response);
+            return (songList.isEmpty() ? null : songList.get(0));
+        }));
+    }
+
+    private <T> CompletableFuture<T> send(MPDCommand command, Function<List<String>, T> parser) {
+        return (MPDAsync.adapt(mpd.sendMPDCommandAsync(command), parser, MPDAsyncPlayer::translate));
+    }
+
+    private static MPDException translate(Throwable error) {
+        if (error instanceof MPDResponseException) {
+            MPDResponseException re = (MPDResponseException) error;
+            return (new MPDPlayerException(re.getMessage(), re.getCommand(), re));
+        }
+        return (new MPDPlayerException(error));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MPDAsyncPlaylist.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.events.PlaylistChangeEvent;
+import org.bff.javampd.exception.MPDPlaylistException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * MPDAsyncPlaylist is the asynchronous counterpart of {@link MPDPlaylist}.  To
+ * obtain an instance of the class you must use {@link MPDAsync#playlist()}.
+ * After a change the playlist version of the {@link MPDPlaylist} of the
+ * connection is updated and its events are fired just like after the blocking
+ * calls.  Futures fail with a {@link MPDPlaylistException} if the MPD
+ * responded with an error and with a
+ * {@link org.bff.javampd.exception.MPDConnectionException} if there is a
+ * problem sending the command.
+ */
+public class MPDAsyncPlaylist {
+
+    private final MPD mpd;
+    private final Properties prop;
+    private static final String MPDPROPADD = "MPD_PLAYLIST_ADD";
+    private static final String MPDPROPCLEAR = "MPD_PLAYLIST_CLEAR";
+    private static final String MPDPROPCURRSONG = "MPD_PLAYLIST_CURRSONG";
+    private static final String MPDPROPINFO = "MPD_PLAYLIST_LIST";
+    private static final String MPDPROPLOAD = "MPD_PLAYLIST_LOAD";
+    private static final String MPDPROPREMOVE = "MPD_PLAYLIST_REMOVE";
+    private static final String MPDPROPREMOVEID = "MPD_PLAYLIST_REMOVE_ID";
+    private static final String MPDPROPSTATUS = "MPD_CMD_STATUS";
+
+    MPDAsyncPlaylist(MPD mpd) {
+        this.mpd = mpd;
+        this.prop = mpd.getMPDProperties();
+    }
+
+    /**
+     * Returns the songs of the playlist, see {@link MPDPlaylist#getSongList()}.
+     *
+     * @return the future song list
+     */
+    public CompletableFuture<List<MPDSong>> getSongList() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPINFO)), mpd::convertResponseToSong));
+    }
+
+    /**
+     * Passes each song of the playlist to <code>songHandler</code> as soon as
+     * it is read, see {@link MPDPlaylist#streamSongList(Consumer)}.  The
+     * handler is called on the thread reading the response.
+     *
+     * @param songHandler receives the songs in playlist order
+     * @return the future completed after the last song
+     */
+    public CompletableFuture<Void> streamSongList(Consumer<MPDSong> songHandler) {
+        return (MPDAsync.adapt(mpd.sendMPDSongCommandAsync(new MPDCommand(prop.getProperty(MPDPROPINFO)), songHandler),
+                done -> done, MPDAsyncPlaylist::translate));
+    }
+
+    /**
+     * Returns the current song, see {@link MPDPlaylist#getCurrentSong()}.
+     *
+     * @return the future current song, completed with null if there is none
+     */
+    public CompletableFuture<MPDSong> getCurrentSong() {
+        return (send(new MPDCommand(prop.getProperty(MPDPROPCURRSONG)), response -> {
+            List<MPDSong> songList = mpd.convertResponseToSong(response);
+            return (songList.isEmpty() ? null : songList.get(0));
+        }));
+    }
+
+    /**
+     * Adds a {@link MPDSong} to the playlist, see
+     * {@link MPDPlaylist#addSong(MPDSong)}.
+     *
+     * @param song the song to add
+     * @return the future completed when the song is added
+     */
+    public CompletableFuture<Void> addSong(final MPDSong song) {
+        return (change(new MPDCommand(prop.getProperty(MPDPROPADD), song.getFile()))
+                .thenRun(() -> mpd.getMPDPlaylist().firePlaylistChangeEvent(PlaylistChangeEvent.SONG_ADDED, song.getName())));
+    }
+
+    /**
+     * Removes a {@link MPDSong} from the playlist, see
+     * {@link MPDPlaylist#removeSong(MPDSong)}.
+     *
+     * @param song the song to remove
+     * @return the future completed when the song is removed
+     */
+    public CompletableFuture<Void> removeSong(MPDSong song) {
+        MPDCommand command;
+        if (song.getId() > -1) {
+            command = new MPDCommand(prop.getProperty(MPDPROPREMOVEID), Integer.toString(song.getId()));
+        } else {
+            command = new MPDCommand(prop.getProperty(MPDPROPREMOVE), Integer.toString(song.getPosition()));
+        }
+        return (change(command));
+    }
+
+    /**
+     * Removes all songs from the playlist, see
+     * {@link MPDPlaylist#clearPlaylist()}.
+     *
+     * @return the future completed when the playlist is cleared
+     */
+    public CompletableFuture<Void> clearPlaylist() {
+        return (change(new MPDCommand(prop.getProperty(MPDPROPCLEAR))));
+    }
+
+    /**
+     * Loads the songs of a saved playlist into the current playlist, see
+     * {@link MPDPlaylist#loadPlaylist(String)}.
+     *
+     * @param playlistName the playlist name
+     * @return the future completed when the playlist is loaded
+     */
+    public CompletableFuture<Void> loadPlaylist(String playlistName) {
+        return (change(new MPDCommand(prop.getProperty(MPDPROPLOAD), playlistName)));
+    }
+
+    /**
+     * Sends a command changing the playlist followed by a status query and
+     * records the new playlist version.
+     */
+    private CompletableFuture<Void> change(MPDCommand command) {
+        CompletableFuture<List<String>> changed = mpd.sendMPDCommandAsync(command);
+        return (send(changed, response -> null)
+                .thenCompose(ignored -> send(new MPDCommand(prop.getProperty(MPDPROPSTATUS)), status -> {
+                    mpd.getMPDPlaylist().updatePlaylist(MPDStatus.parse(status).getPlaylistVersion());
+                    return (null);
+                })));
+    }
+
+    private <T> CompletableFuture<T> send(MPDCommand command, Function<List<String>, T> parser) {
+        return (send(mpd.sendMPDCommandAsync(command), parser));
+    }
+
+    private <T> CompletableFuture<T> send(CompletableFuture<List<String>> response, Function<List<String>, T> parser) {
+        return (MPDAsync.adapt(response, parser, MPDAsyncPlaylist::translate));
+    }
+
+    static MPDPlaylistException translate(Throwable error) {
+        if (error instanceof MPDResponseException) {
+            MPDResponseException re = (MPDResponseException) error;
+            return (new MPDPlaylistException(re.getMessage(), re.getCommand(), re));
+        }
+        return (new MPDPlaylistException(error));
+    }
+}
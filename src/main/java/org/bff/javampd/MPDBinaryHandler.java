@@ -0,0 +1,25 @@
+/*
+ * MPDBinaryHandler.java
+ */
+package org.bff.javampd;
+
+/**
+ * A line handler that also takes the binary payload of responses such as
+ * <code>albumart</code> and <code>readpicture</code>.  The transports pass the
+ * <code>binary: N</code> line to {@link #accept(byte[], int, int, java.nio.charset.Charset)}
+ * like any other line and then hand the N bytes following it to
+ * {@link #binary(byte[], int, int)}, possibly split over several calls.  For
+ * other handlers the payload is skipped.
+ */
+interface MPDBinaryHandler extends MPDByteLineHandler {
+
+    /**
+     * Handles a part of a binary payload.  The bytes are only valid during
+     * the call.
+     *
+     * @param buffer the buffer holding the data
+     * @param offset the offset of the data in the buffer
+     * @param length the number of bytes
+     */
+    void binary(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,27 @@
+/*
+ * MPDByteLineHandler.java
+ */
+package org.bff.javampd;
+
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+/**
+ * A line handler that takes the response lines as raw bytes.  The transports
+ * pass lines to handlers implementing this interface straight from their read
+ * buffer, so the handler decides which parts of a line are worth decoding.
+ * {@link #accept(Object)} is still used where the response is already
+ * available as strings.
+ */
+interface MPDByteLineHandler extends Consumer<String> {
+
+    /**
+     * Handles one response line.  The bytes are only valid during the call.
+     *
+     * @param buffer  the buffer holding the line
+     * @param offset  the offset of the line in the buffer
+     * @param length  the length of the line without the line terminator
+     * @param charset the encoding of the server
+     */
+    void accept(byte[] buffer, int offset, int length, Charset charset);
+}
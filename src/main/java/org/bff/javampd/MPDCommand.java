@@ -74,4 +74,24 @@ public class MPDCommand {
     public List<String> getParams() {
         return params;
     }
+
+    /**
+     * Returns the command line as it is sent to the server, terminated by a
+     * newline.  Parameters containing spaces are quoted.
+     *
+     * @return the command line
+     */
+    String toCommandString() {
+        StringBuilder sb = new StringBuilder(command);
+        for (String param : params) {
+            if (param != null) {
+                sb.append(param.contains(" ") ? " \"" : " ");
+                sb.append(param);
+                sb.append(param.contains(" ") ? "\"" : "");
+            }
+        }
+        sb.append("\n");
+
+        return (sb.toString());
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * MPDCommandList.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDCommandListException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MPDCommandList holds the protocol details of
+ * <code>command_list_ok_begin</code> shared by the transports: building the
+ * request, splitting the response on <code>list_OK</code> and locating the
+ * failing command of an <code>ACK [error@index]</code> line.
+ */
+final class MPDCommandList {
+
+    private static final String MPDPROPSTARTBULK = "MPD_CMD_START_BULK";
+    private static final String MPDPROPENDBULK = "MPD_CMD_END_BULK";
+    private static final String MPDPROPRESPONSELISTOK = "MPD_CMD_RESPONSE_LIST_OK";
+    private static final Pattern ERROR_INDEX = Pattern.compile("^\\[\\d+@(\\d+)\\]");
+
+    private MPDCommandList() {
+    }
+
+    /**
+     * Returns the protocol string of the commands wrapped in a command list.
+     *
+     * @param commandList the commands of the list
+     * @param prop        the MPD command properties
+     * @return the command list to send
+     */
+    static String toCommandString(List<MPDCommand> commandList, Properties prop) {
+        StringBuilder sb = new StringBuilder(new MPDCommand(prop.getProperty(MPDPROPSTARTBULK)).toCommandString());
+        for (MPDCommand command : commandList) {
+            sb.append(command.toCommandString());
+        }
+        sb.append(new MPDCommand(prop.getProperty(MPDPROPENDBULK)).toCommandString());
+        return (sb.toString());
+    }
+
+    /**
+     * Splits the response lines of a command list into the responses of the
+     * individual commands.
+     *
+     * @param lines the response lines without the final <code>OK</code>
+     * @param prop  the MPD command properties
+     * @return the response of each command, in the order of the command list
+     */
+    static List<List<String>> split(List<String> lines, Properties prop) {
+        String listOk = prop.getProperty(MPDPROPRESPONSELISTOK);
+        List<List<String>> responses = new ArrayList<List<String>>();
+        List<String> response = new ArrayList<String>();
+        for (String line : lines) {
+            if (line.equals(listOk)) {
+                responses.add(response);
+                response = new ArrayList<String>();
+            } else {
+                response.add(line);
+            }
+        }
+        return (responses);
+    }
+
+    /**
+     * Creates the exception for an error response to a command list.
+     *
+     * @param message     the error message without the leading
+     *                    <code>ACK</code>
+     * @param commandList the commands of the list
+     * @param lines       the response lines read before the error
+     * @param prop        the MPD command properties
+     * @return the exception naming the failing command
+     */
+    static MPDCommandListException error(String message, List<MPDCommand> commandList, List<String> lines,
+                                         Properties prop) {
+        List<List<String>> responses = split(lines, prop);
+        int index = responses.size();
+        Matcher matcher = ERROR_INDEX.matcher(message);
+        if (matcher.find()) {
+            index = Integer.parseInt(matcher.group(1));
+        }
+        String command = index < commandList.size() ? commandList.get(index).getCommand() : null;
+        return (new MPDCommandListException(message, command, index, responses));
+    }
+}
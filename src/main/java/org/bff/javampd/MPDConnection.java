@@ -0,0 +1,456 @@
+/*
+ * MPDConnection.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDCommandListException;
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.exception.MPDTimeoutException;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MPDConnection represents a single socket connection to a MPD server.  Each
+ * connection reads its own greeting and, if a password is given, performs its
+ * own <code>password</code> handshake.  Instances are handed out by a
+ * {@link MPDConnectionPool} and are not thread safe; a connection must only be
+ * used by the caller currently leasing it.
+ */
+class MPDConnection {
+
+    private final InetAddress serverAddress;
+    private final int port;
+    private final int timeout;
+    private final Properties prop;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final byte[] responseOk;
+    private final byte[] responseError;
+    private final byte[] responseBinary;
+    private final MPDLineReader reader = new MPDLineReader(READ_BUFFER_SIZE);
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private InputStream in;
+    private OutputStream out;
+    private Socket socket;
+    private String version;
+    private long lastUsed;
+    private static final String MPDPROPSERVERENCODING = "MPD_SERVER_ENCODING";
+    private static final String MPDPROPCLOSE = "MPD_CMD_CLOSE";
+    private static final String MPDPROPPASSWORD = "MPD_CMD_PASSWORD";
+    private static final String MPDPROPPING = "MPD_CMD_PING";
+    private static final String MPDPROPRESPONSEERR = "MPD_CMD_RESPONSE_ERR";
+    private static final String MPDPROPRESPONSEOK = "MPD_CMD_RESPONSE_OK";
+    private static final String MPDPROPRESPONSEBINARY = "MPD_CMD_RESPONSE_BINARY";
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int WRITE_BUFFER_SIZE = 1024;
+
+    /**
+     * Creates a new, unconnected MPDConnection.
+     *
+     * @param serverAddress the address of the MPD server
+     * @param port          the port MPD is listening on
+     * @param timeout       the amount of time in milliseconds to wait for the
+     *                      connection, 0 for infinite wait
+     * @param prop          the MPD command properties
+     */
+    MPDConnection(InetAddress serverAddress, int port, int timeout, Properties prop) {
+        this.serverAddress = serverAddress;
+        this.port = port;
+        this.timeout = timeout;
+        this.prop = prop;
+        this.charset = Charset.forName(prop.getProperty(MPDPROPSERVERENCODING));
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.responseOk = prop.getProperty(MPDPROPRESPONSEOK).getBytes(StandardCharsets.US_ASCII);
+        this.responseError = prop.getProperty(MPDPROPRESPONSEERR).getBytes(StandardCharsets.US_ASCII);
+        this.responseBinary = prop.getProperty(MPDPROPRESPONSEBINARY).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Opens the socket and reads the greeting of the server.  The greeting and
+     * all responses are read through the same buffer, so bytes received ahead
+     * of the current line are never lost.
+     *
+     * @return the version of MPD
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *                             if the server does not greet with OK
+     */
+    String connect() throws IOException, MPDConnectionException {
+        this.socket = new Socket();
+        SocketAddress sockaddr = new InetSocketAddress(serverAddress, port);
+        try {
+            this.socket.connect(sockaddr, timeout);
+        } catch (SocketTimeoutException ste) {
+            throw new MPDTimeoutException(ste);
+        }
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        reader.clear();
+
+        if (!reader.readLine(in)) {
+            throw new MPDConnectionException("Response from server: null");
+        }
+        if (reader.startsWith(responseOk)) {
+            this.version = reader.decode(responseOk.length, charset);
+            touch();
+            return (version);
+        } else {
+            throw new MPDConnectionException("Response from server: "
+                    + reader.decode(Math.min(responseError.length, reader.lineLength()), charset));
+        }
+    }
+
+    /**
+     * Sends the <code>password</code> command for this connection.
+     *
+     * @param password the password to authenticate with
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *                             if the password is rejected
+     */
+    void authenticate(String password) throws IOException, MPDResponseException {
+        sendCommand(new MPDCommand(prop.getProperty(MPDPROPPASSWORD), password));
+    }
+
+    /**
+     * Sends a {@link MPDCommand} and returns the response lines up to but not
+     * including the final <code>OK</code>.
+     *
+     * @param command the command to send
+     * @return the response as a <CODE>List</CODE> of <CODE>Strings</CODE>
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *                             if the MPD response generates an error
+     */
+    List<String> sendCommand(MPDCommand command) throws IOException, MPDResponseException {
+        List<String> responseList = new ArrayList<String>();
+        sendCommand(command, responseList::add);
+        return (responseList);
+    }
+
+    /**
+     * Sends a {@link MPDCommand} and passes each response line to
+     * <code>lineHandler</code> as soon as it is read, up to but not including
+     * the final <code>OK</code>.
+     *
+     * @param command     the command to send
+     * @param lineHandler receives the response lines
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *                             if the MPD response generates an error
+     */
+    void sendCommand(MPDCommand command, Consumer<String> lineHandler) throws IOException, MPDResponseException {
+        write(command.toCommandString());
+        readResponse(command.getCommand(), lineHandler);
+    }
+
+    /**
+     * Writes a {@link MPDCommand} without reading its response, which must be
+     * read with {@link #read(MPDCommand)}.  Unlike the other methods this may
+     * be called while another thread waits for a response, for instance to
+     * cancel an <code>idle</code> with <code>noidle</code>.
+     *
+     * @param command the command to send
+     * @throws java.io.IOException if there is a socket io problem
+     */
+    void write(MPDCommand command) throws IOException {
+        write(command.toCommandString());
+    }
+
+    /**
+     * Reads the response of a command sent with {@link #write(MPDCommand)}.
+     *
+     * @param command the command the response belongs to
+     * @return the response as a <CODE>List</CODE> of <CODE>Strings</CODE>
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *                             if the MPD response generates an error
+     */
+    List<String> read(MPDCommand command) throws IOException, MPDResponseException {
+        List<String> responseList = new ArrayList<String>();
+        readResponse(command.getCommand(), responseList::add);
+        return (responseList);
+    }
+
+    /**
+     * Writes all {@link MPDCommand}s in one go and then reads the responses in
+     * order, completing the future of each command as its response arrives.
+     * A command the server rejects fails its future with a
+     * {@link MPDResponseException} and the next response is read.
+     *
+     * @param commands  the commands to send
+     * @param responses the futures to complete, one for each command
+     * @throws java.io.IOException if there is a socket io problem; the futures
+     *                             not yet completed are left to the caller
+     */
+    void pipeline(List<MPDCommand> commands, List<CompletableFuture<List<String>>> responses) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (MPDCommand command : commands) {
+            sb.append(command.toCommandString());
+        }
+        write(sb);
+
+        for (int i = 0; i < commands.size(); i++) {
+            List<String> responseList = new ArrayList<String>();
+            try {
+                readResponse(commands.get(i).getCommand(), responseList::add);
+                responses.get(i).complete(responseList);
+            } catch (MPDResponseException re) {
+                responses.get(i).completeExceptionally(re);
+            }
+        }
+    }
+
+    /**
+     * Writes all {@link MPDCommand}s in one go and passes the response lines
+     * of all of them to <code>lineHandler</code> in order.  After the first
+     * error the remaining responses are read but not passed on.
+     *
+     * @param commands    the commands to send
+     * @param lineHandler receives the response lines
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *                             if one of the commands generates an error
+     */
+    void pipeline(List<MPDCommand> commands, Consumer<String> lineHandler) throws IOException, MPDResponseException {
+        StringBuilder sb = new StringBuilder();
+        for (MPDCommand command : commands) {
+            sb.append(command.toCommandString());
+        }
+        write(sb);
+
+        MPDResponseException error = null;
+        for (MPDCommand command : commands) {
+            try {
+                readResponse(command.getCommand(), error == null ? lineHandler : line -> {
+                });
+            } catch (MPDResponseException re) {
+                if (error == null) {
+                    error = re;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Reads one response from the socket.  Lines are handed to a
+     * {@link MPDByteLineHandler} straight from the read buffer and decoded for
+     * any other handler.  The payload following a <code>binary:</code> line
+     * is passed to a {@link MPDBinaryHandler} and skipped otherwise.
+     */
+    private void readResponse(String command, Consumer<String> lineHandler) throws IOException, MPDResponseException {
+        MPDByteLineHandler byteHandler = lineHandler instanceof MPDByteLineHandler
+                ? (MPDByteLineHandler) lineHandler : null;
+        MPDBinaryHandler binaryHandler = lineHandler instanceof MPDBinaryHandler
+                ? (MPDBinaryHandler) lineHandler : null;
+
+        while (reader.readLine(in)) {
+            if (reader.startsWith(responseOk)) {
+                //end of command is ok so break
+                return;
+            }
+
+            if (reader.startsWith(responseError)) {
+                throw new MPDResponseException(reader.decode(responseError.length, charset), command);
+            }
+
+            int binaryLength = reader.startsWith(responseBinary) ? binaryLength() : -1;
+
+            if (byteHandler != null) {
+                byteHandler.accept(reader.buffer(), reader.lineStart(), reader.lineLength(), charset);
+            } else {
+                lineHandler.accept(reader.decode(charset));
+            }
+
+            if (binaryLength >= 0) {
+                readBinary(binaryLength, binaryHandler);
+            }
+        }
+
+        throw new EOFException("Connection closed by server while reading the response");
+    }
+
+    private int binaryLength() throws IOException {
+        try {
+            return (reader.parseInt(responseBinary.length));
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Malformed binary response: " + reader.decode(charset), nfe);
+        }
+    }
+
+    /**
+     * Reads the payload of a binary response and the newline terminating it.
+     */
+    private void readBinary(int length, MPDBinaryHandler binaryHandler) throws IOException {
+        int remaining = length + 1;
+        while (remaining > 0) {
+            int count = reader.take(remaining);
+            if (count == 0) {
+                if (reader.fill(in) < 0) {
+                    throw new EOFException("Connection closed by server while reading the response");
+                }
+                continue;
+            }
+            int data = Math.min(count, remaining - 1);
+            if (data > 0 && binaryHandler != null) {
+                binaryHandler.binary(reader.buffer(), reader.lineStart(), data);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Sends a list of {@link MPDCommand}s all at once wrapped in a command list
+     * and returns the response of each command.
+     *
+     * @param commandList the list of {@link MPDCommand}s
+     * @return the response lines of each command, in the order of the list
+     * @throws java.io.IOException if there is a socket io problem
+     * @throws org.bff.javampd.exception.MPDCommandListException
+     *                             if one of the commands generates an error
+     */
+    List<List<String>> sendCommands(List<MPDCommand> commandList) throws IOException, MPDCommandListException {
+        write(MPDCommandList.toCommandString(commandList, prop));
+
+        List<String> lines = new ArrayList<String>();
+        try {
+            readResponse(null, lines::add);
+        } catch (MPDResponseException re) {
+            throw MPDCommandList.error(re.getMessage(), commandList, lines, prop);
+        }
+        return (MPDCommandList.split(lines, prop));
+    }
+
+    /**
+     * Sends a <code>ping</code> to check the health of the connection.
+     *
+     * @return true if the server answered, false otherwise
+     */
+    boolean ping() {
+        if (!isConnected()) {
+            return (false);
+        }
+
+        try {
+            sendCommand(new MPDCommand(prop.getProperty(MPDPROPPING)));
+            return (true);
+        } catch (Exception e) {
+            return (false);
+        }
+    }
+
+    /**
+     * Returns true if response data can be read without blocking, which tells
+     * whether the response of a command sent with {@link #write(MPDCommand)}
+     * has started to arrive.
+     *
+     * @return true if response data is waiting
+     * @throws java.io.IOException if there is a socket io problem
+     */
+    boolean isReadable() throws IOException {
+        return (reader.available() > 0 || in.available() > 0);
+    }
+
+    /**
+     * Returns true if the socket is open.  This does not query the server, use
+     * {@link #ping()} to verify the server is still answering.
+     *
+     * @return true if the socket is open
+     */
+    boolean isConnected() {
+        return (socket != null && socket.isConnected() && !socket.isClosed());
+    }
+
+    /**
+     * Sends the <code>close</code> command and closes the socket.  Errors are
+     * logged and otherwise ignored.
+     */
+    void close() {
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+
+        try {
+            write(new MPDCommand(prop.getProperty(MPDPROPCLOSE)).toCommandString());
+        } catch (IOException ex) {
+            //the server may already have dropped the connection
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                Logger.getLogger(MPDConnection.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the MPD version the server greeted this connection with.
+     *
+     * @return the version of MPD
+     */
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the time in milliseconds this connection last sent a command.
+     *
+     * @return the time of last use
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    private void touch() {
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Encodes the commands into the write buffer of the connection and sends
+     * them.  The encoder and the buffer are reset and reused for every
+     * command; the buffer only grows for commands that do not fit.
+     */
+    private synchronized void write(CharSequence commands) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(commands);
+        encoder.reset();
+        writeBuffer.clear();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, writeBuffer, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(writeBuffer);
+            }
+            if (result.isOverflow()) {
+                ByteBuffer grown = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+                writeBuffer.flip();
+                grown.put(writeBuffer);
+                writeBuffer = grown;
+            }
+        } while (result.isOverflow());
+
+        out.write(writeBuffer.array(), 0, writeBuffer.position());
+        out.flush();
+        touch();
+    }
+}
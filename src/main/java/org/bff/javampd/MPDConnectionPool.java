@@ -0,0 +1,503 @@
+/*
+ * MPDConnectionPool.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MPDConnectionPool maintains a bounded pool of authenticated
+ * {@link MPDConnection}s to a single MPD server.  A connection is leased for
+ * the duration of one command and returned afterwards, so independent callers
+ * run in parallel up to the size of the pool.  Connections that have been idle
+ * for a while are pinged before being handed out and replaced if the server
+ * has dropped them.
+ */
+class MPDConnectionPool implements MPDTransport {
+
+    private final InetAddress serverAddress;
+    private final int port;
+    private final String password;
+    private final int timeout;
+    private final int size;
+    private final Properties prop;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<MPDConnection> idle;
+    private volatile boolean closed;
+    private String version;
+    private ExecutorService executor;
+    /**
+     * Idle connections older than this are pinged before they are leased.
+     */
+    private static final long VALIDATION_INTERVAL = 15000;
+    private static final int TRIES = 3;
+
+    /**
+     * Creates a new pool.  No connection is opened until the first lease.
+     *
+     * @param serverAddress the address of the MPD server
+     * @param port          the port MPD is listening on
+     * @param password      the password to authenticate with, null for none
+     * @param timeout       the connect timeout in milliseconds, 0 for infinite
+     * @param size          the maximum number of connections
+     * @param prop          the MPD command properties
+     */
+    MPDConnectionPool(InetAddress serverAddress, int port, String password, int timeout, int size, Properties prop) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1: " + size);
+        }
+        this.serverAddress = serverAddress;
+        this.port = port;
+        this.password = password;
+        this.timeout = timeout;
+        this.size = size;
+        this.prop = prop;
+        this.permits = new Semaphore(size, true);
+        this.idle = new LinkedBlockingDeque<MPDConnection>();
+    }
+
+    @Override
+    public String connect() throws MPDConnectionException, MPDResponseException {
+        release(lease());
+        return (getVersion());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The command is sent on a leased connection so commands of different
+     * threads do not wait on each other.  If the connection turns out to be
+     * broken the command is retried on a fresh one.
+     */
+    @Override
+    public List<String> sendCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException {
+        final List<String> responseList = new ArrayList<String>();
+        send(command, responseList::add, responseList::clear);
+        return (responseList);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler is called on the calling thread.  If the connection breaks
+     * before the first line was handled the command is retried on a fresh
+     * connection.
+     */
+    @Override
+    public void sendCommand(MPDCommand command, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        send(command, lineHandler, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The command is sent from one of at most as many threads as the pool has
+     * connections.
+     */
+    @Override
+    public CompletableFuture<List<String>> submit(final MPDCommand command) {
+        final CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(sendCommand(command));
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(new MPDConnectionException(e.getMessage(), e));
+        }
+        return (future);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler is called from one of the threads of
+     * {@link #submit(MPDCommand)}.
+     */
+    @Override
+    public CompletableFuture<Void> submit(final MPDCommand command, final Consumer<String> lineHandler) {
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sendCommand(command, lineHandler);
+                        future.complete(null);
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(new MPDConnectionException(e.getMessage(), e));
+        }
+        return (future);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The commands are sent on one leased connection from the same threads as
+     * {@link #submit(MPDCommand)}.  They are not retried if the connection
+     * breaks since the server may already have executed some of them.
+     */
+    @Override
+    public List<CompletableFuture<List<String>>> pipeline(final List<MPDCommand> commands) {
+        final List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            futures.add(new CompletableFuture<List<String>>());
+        }
+
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    sendPipelined(commands, futures);
+                }
+            });
+        } catch (RuntimeException e) {
+            failAll(futures, new MPDConnectionException(e.getMessage(), e));
+        }
+        return (futures);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The commands are sent on one leased connection and the handler is
+     * called on the calling thread.  They are not retried if the connection
+     * breaks.
+     */
+    @Override
+    public void pipeline(List<MPDCommand> commands, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        MPDConnection connection = lease();
+        try {
+            connection.pipeline(commands, lineHandler);
+            release(connection);
+        } catch (MPDResponseException re) {
+            //all responses were read so the connection is still usable
+            release(connection);
+            throw re;
+        } catch (IOException e) {
+            invalidate(connection);
+            throw new MPDConnectionException("Connection to server lost: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            //the rest of the responses is still unread
+            invalidate(connection);
+            throw new MPDResponseException(e);
+        }
+    }
+
+    @Override
+    public List<List<String>> sendCommands(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException {
+        MPDConnection connection = lease();
+        try {
+            List<List<String>> responses = connection.sendCommands(commandList);
+            release(connection);
+            return (responses);
+        } catch (MPDResponseException re) {
+            release(connection);
+            throw re;
+        } catch (IOException e) {
+            invalidate(connection);
+            throw new MPDConnectionException(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            invalidate(connection);
+            throw new MPDConnectionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Leases a healthy connection, opening a new one if no idle connection is
+     * available.  Blocks while all connections are leased.  The connection
+     * must be given back with {@link #release(MPDConnection)} or
+     * {@link #invalidate(MPDConnection)}.
+     *
+     * @return a connected and authenticated connection
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if no connection could be established
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the server rejects the password
+     */
+    MPDConnection lease() throws MPDConnectionException, MPDResponseException {
+        if (closed) {
+            throw new MPDConnectionException("Connection pool is closed");
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted waiting for a connection", ie);
+        }
+        if (closed) {
+            //closed while waiting for a connection
+            permits.release();
+            throw new MPDConnectionException("Connection pool is closed");
+        }
+
+        MPDConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (isHealthy(connection)) {
+                return (connection);
+            }
+            connection.close();
+        }
+
+        boolean opened = false;
+        try {
+            connection = open();
+            opened = true;
+            return (connection);
+        } catch (IOException e) {
+            throw new MPDConnectionException(e.getMessage(), e);
+        } finally {
+            if (!opened) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param connection the connection to return
+     */
+    void release(MPDConnection connection) {
+        if (closed) {
+            connection.close();
+        } else {
+            idle.offerFirst(connection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a leased connection that failed and frees its slot in the pool.
+     *
+     * @param connection the broken connection
+     */
+    void invalidate(MPDConnection connection) {
+        connection.close();
+        permits.release();
+    }
+
+    /**
+     * Closes all idle connections and marks the pool as closed.  Connections
+     * currently leased are closed as they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        MPDConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns the MPD version reported by the most recently opened connection.
+     *
+     * @return the version of MPD
+     */
+    synchronized String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the maximum number of connections of this pool.
+     *
+     * @return the pool size
+     */
+    int getSize() {
+        return size;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(size, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "MPDConnectionPool-" + serverAddress.getHostName() + ":" + port);
+                    thread.setDaemon(true);
+                    return (thread);
+                }
+            });
+        }
+        return (executor);
+    }
+
+    /**
+     * Sends a command on a leased connection, retrying on a fresh connection
+     * if the connection is broken.  Lines already handled are discarded by
+     * <code>reset</code> before a retry; without one the command is only
+     * retried if no line has been handled yet.
+     */
+    private void send(MPDCommand command, Consumer<String> lineHandler, Runnable reset)
+            throws MPDConnectionException, MPDResponseException {
+        int count = 0;
+        Exception excReturn = null;
+        TrackingHandler handler = new TrackingHandler(lineHandler);
+
+        while (count < TRIES) {
+            MPDConnection connection = lease();
+            try {
+                connection.sendCommand(command, handler);
+                release(connection);
+                return;
+            } catch (MPDResponseException re) {
+                //the response was read up to the error so the connection is still usable
+                release(connection);
+                throw re;
+            } catch (IOException e) {
+                invalidate(connection);
+                if (handler.handled) {
+                    if (reset == null) {
+                        throw new MPDConnectionException("Connection to server lost: " + e.getMessage(), e);
+                    }
+                    reset.run();
+                    handler.handled = false;
+                }
+                Logger.getLogger(MPDConnectionPool.class.getName()).log(Level.WARNING,
+                        "Got error from " + command.getCommand() + ", retrying", e);
+                ++count;
+                excReturn = e;
+            } catch (RuntimeException e) {
+                //the rest of the response is still unread
+                invalidate(connection);
+                throw new MPDResponseException(e);
+            }
+        }
+
+        throw new MPDConnectionException("Connection to server lost: " + excReturn.getMessage(), excReturn);
+    }
+
+    private void sendPipelined(List<MPDCommand> commands, List<CompletableFuture<List<String>>> futures) {
+        MPDConnection connection;
+        try {
+            connection = lease();
+        } catch (Exception e) {
+            failAll(futures, e);
+            return;
+        }
+
+        try {
+            connection.pipeline(commands, futures);
+            release(connection);
+        } catch (IOException e) {
+            invalidate(connection);
+            failAll(futures, new MPDConnectionException("Connection to server lost: " + e.getMessage(), e));
+        } catch (RuntimeException e) {
+            invalidate(connection);
+            failAll(futures, new MPDConnectionException(e.getMessage(), e));
+        }
+    }
+
+    private static void failAll(List<CompletableFuture<List<String>>> futures, Exception cause) {
+        //futures already completed keep their response
+        for (CompletableFuture<List<String>> future : futures) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    private boolean isHealthy(MPDConnection connection) {
+        if (!connection.isConnected()) {
+            return (false);
+        }
+
+        if (System.currentTimeMillis() - connection.getLastUsed() > VALIDATION_INTERVAL) {
+            return (connection.ping());
+        }
+        return (true);
+    }
+
+    private MPDConnection open() throws IOException, MPDConnectionException, MPDResponseException {
+        MPDConnection connection = new MPDConnection(serverAddress, port, timeout, prop);
+        String connectVersion = connection.connect();
+
+        if (password != null) {
+            boolean authenticated = false;
+            try {
+                connection.authenticate(password);
+                authenticated = true;
+            } finally {
+                if (!authenticated) {
+                    connection.close();
+                }
+            }
+        }
+
+        synchronized (this) {
+            this.version = connectVersion;
+        }
+        return (connection);
+    }
+
+    /**
+     * Passes lines on to a handler and records whether any line was handled.
+     * Raw lines and binary payloads are passed on as bytes if the handler
+     * takes them.
+     */
+    private static class TrackingHandler implements MPDBinaryHandler {
+
+        private final Consumer<String> lineHandler;
+        private boolean handled;
+
+        TrackingHandler(Consumer<String> lineHandler) {
+            this.lineHandler = lineHandler;
+        }
+
+        @Override
+        public void accept(String line) {
+            handled = true;
+            lineHandler.accept(line);
+        }
+
+        @Override
+        public void accept(byte[] buffer, int offset, int length, Charset charset) {
+            handled = true;
+            if (lineHandler instanceof MPDByteLineHandler) {
+                ((MPDByteLineHandler) lineHandler).accept(buffer, offset, length, charset);
+            } else {
+                lineHandler.accept(new String(buffer, offset, length, charset));
+            }
+        }
+
+        @Override
+        public void binary(byte[] buffer, int offset, int length) {
+            handled = true;
+            if (lineHandler instanceof MPDBinaryHandler) {
+                ((MPDBinaryHandler) lineHandler).binary(buffer, offset, length);
+            }
+        }
+    }
+}
@@ -14,7 +14,16 @@ import org.bff.javampd.exception.MPDDatabaseException;
 import org.bff.javampd.exception.MPDResponseException;
 import org.bff.javampd.objects.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * MPDDatabase represents a database controller to a MPD server.  To obtain
@@ -37,6 +46,27 @@ public class MPDDatabase {
     private static final String MPDPROPLISTINFO = "MPD_DB_LIST_INFO";
     private static final String MPDPROPSEARCH = "MPD_DB_SEARCH";
     private static final String MPDPROPLISTSONGS = "MPD_DP_LIST_SONGS";
+    private static final String MPDPROPLISTSONGSINFO = "MPD_DP_LIST_SONGS_INFO";
+    private static final String WINDOW = "window";
+    private static final String MPDPROPALBUMART = "MPD_DB_ALBUM_ART";
+    private static final String MPDPROPREADPICTURE = "MPD_DB_READ_PICTURE";
+    private static final String MPDPROPBINARYLIMIT = "MPD_CMD_BINARY_LIMIT";
+    /**
+     * The number of artwork chunks requested in one pipeline.
+     */
+    private static final int ARTWORK_PIPELINE_DEPTH = 16;
+    private volatile int artworkChunkSize;
+    /**
+     * The binary limit of MPD until a client changes it.
+     */
+    private static final int DEFAULT_BINARY_LIMIT = 8192;
+    private volatile boolean binaryLimitChanged;
+    private static final int DEFAULT_CACHE_VALIDATION = 1000;
+    private volatile MPDLibraryCache cache;
+    private volatile int cacheValidationInterval = DEFAULT_CACHE_VALIDATION;
+    private volatile boolean cacheValidated;
+    private volatile long cacheValidatedTime;
+    private volatile MPDLibraryIndex libraryIndex;
 
     private enum ListType {
 
@@ -230,17 +260,9 @@ public class MPDDatabase {
      *          if there is a problem sending the command
      */
     public List<MPDSong> findAlbumByArtist(MPDArtist artist, MPDAlbum album) throws MPDConnectionException, MPDDatabaseException {
-        List<MPDSong> retList = new ArrayList<MPDSong>();
-
-        List<MPDSong> songList = new ArrayList<MPDSong>(find(ScopeType.ALBUM, album.getName()));
-
-        for (MPDSong song : songList) {
-            if (song.getArtist() != null && song.getArtist().equals(artist)) {
-                retList.add(song);
-            }
-        }
-
-        return (retList);
+        return (find(new MPDQuery()
+                .where(ScopeType.ALBUM, album.getName())
+                .where(ScopeType.ARTIST, artist.getName())));
     }
 
     /**
@@ -257,17 +279,9 @@ public class MPDDatabase {
      *          if there is a problem sending the command
      */
     public List<MPDSong> findAlbumByGenre(MPDGenre genre, MPDAlbum album) throws MPDConnectionException, MPDDatabaseException {
-        List<MPDSong> retList = new ArrayList<MPDSong>();
-
-        List<MPDSong> songList = new ArrayList<MPDSong>(find(ScopeType.ALBUM, album.getName()));
-
-        for (MPDSong song : songList) {
-            if (song.getGenre() != null && song.getGenre().equals(genre.getName())) {
-                retList.add(song);
-            }
-        }
-
-        return (retList);
+        return (find(new MPDQuery()
+                .where(ScopeType.ALBUM, album.getName())
+                .where(ScopeType.GENRE, genre.getName())));
     }
 
     /**
@@ -284,17 +298,9 @@ public class MPDDatabase {
      *          if there is a problem sending the command
      */
     public List<MPDSong> findAlbumByYear(String year, MPDAlbum album) throws MPDConnectionException, MPDDatabaseException {
-        List<MPDSong> retList = new ArrayList<MPDSong>();
-
-        List<MPDSong> songList = new ArrayList<MPDSong>(find(ScopeType.ALBUM, album.getName()));
-
-        for (MPDSong song : songList) {
-            if (song.getYear() != null && song.getYear().equals(year)) {
-                retList.add(song);
-            }
-        }
-
-        return (retList);
+        return (find(new MPDQuery()
+                .where(ScopeType.ALBUM, album.getName())
+                .where(ScopeType.DATE, year)));
     }
 
     /**
@@ -386,24 +392,20 @@ public class MPDDatabase {
      */
     public List<String> listAllSongFiles() throws MPDConnectionException, MPDDatabaseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTALL));
-        List<String> fileList;
+        final List<String> retList = new ArrayList<String>();
 
         try {
-            fileList = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommand(command, line -> {
+                if (line.startsWith(MPD.SONGPREFIXFILE)) {
+                    retList.add((line.substring(MPD.SONGPREFIXFILE.length())).trim());
+                }
+            });
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
 
-        List<String> retList = new ArrayList<String>();
-
-        for (String s : fileList) {
-            if (s.startsWith(MPD.SONGPREFIXFILE)) {
-                retList.add((s.substring(MPD.SONGPREFIXFILE.length())).trim());
-            }
-        }
-
         return (retList);
     }
 
@@ -420,23 +422,19 @@ public class MPDDatabase {
      */
     public List<String> listAllSongFiles(String path) throws MPDConnectionException, MPDDatabaseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTALL), path);
-        List<String> fileList;
+        final List<String> retList = new ArrayList<String>();
 
         try {
-            fileList = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommand(command, line -> {
+                if (line.startsWith(MPD.SONGPREFIXFILE)) {
+                    retList.add((line.substring(MPD.SONGPREFIXFILE.length())).trim());
+                }
+            });
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
-
-        List<String> retList = new ArrayList<String>();
-
-        for (String s : fileList) {
-            if (s.startsWith(MPD.SONGPREFIXFILE)) {
-                retList.add((s.substring(MPD.SONGPREFIXFILE.length())).trim());
-            }
-        }
         return (retList);
     }
 
@@ -452,17 +450,43 @@ public class MPDDatabase {
      */
     public List<MPDSong> listAllSongs() throws MPDConnectionException, MPDDatabaseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO));
-        List<String> songList;
+        return (songs(command));
+    }
 
+    /**
+     * Returns all songs like {@link #listAllSongs()} but keeps a snapshot of
+     * the library in <code>snapshot</code> to start from next time.  If the
+     * snapshot was taken of this server at its current database update time
+     * the songs are read from the memory-mapped file without asking the
+     * server for them; otherwise the library is read from the server and
+     * the snapshot replaced.  A snapshot that cannot be written is skipped.
+     *
+     * @param snapshot the file holding the snapshot
+     * @return the songs of the library
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public List<MPDSong> loadAllSongs(Path snapshot) throws MPDConnectionException, MPDDatabaseException {
+        long dbUpdate = getLastUpdateTime();
+        String serverId = mpd.getServerId();
         try {
-            songList = new ArrayList<String>(mpd.sendMPDCommand(command));
-        } catch (MPDResponseException re) {
-            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDDatabaseException(e);
+            List<MPDSong> songs = MPDLibrarySnapshot.read(snapshot, serverId, dbUpdate);
+            if (songs != null) {
+                return (songs);
+            }
+        } catch (IOException e) {
+            Logger.getLogger(MPDDatabase.class.getName()).log(Level.WARNING, "Cannot read library snapshot " + snapshot, e);
         }
 
-        return (new ArrayList<MPDSong>(mpd.convertResponseToSong(songList)));
+        List<MPDSong> songs = listAllSongs();
+        try {
+            MPDLibrarySnapshot.write(snapshot, serverId, dbUpdate, songs);
+        } catch (IOException e) {
+            Logger.getLogger(MPDDatabase.class.getName()).log(Level.WARNING, "Cannot write library snapshot " + snapshot, e);
+        }
+        return (songs);
     }
 
     /**
@@ -478,17 +502,41 @@ public class MPDDatabase {
      */
     public List<MPDSong> listAllSongs(String path) throws MPDConnectionException, MPDDatabaseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO), path);
-        List<String> songList;
+        return (songs(command));
+    }
 
-        try {
-            songList = new ArrayList<String>(mpd.sendMPDCommand(command));
-        } catch (MPDResponseException re) {
-            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDDatabaseException(e);
-        }
+    /**
+     * Passes each {@link MPDSong} of the database to <code>songHandler</code>
+     * as soon as it is read.  Unlike {@link #listAllSongs()} only the song
+     * being read is held in memory, so the whole library can be exported or
+     * indexed in constant memory.  If the connection uses a
+     * {@link MPDEventLoop} the handler is called on its I/O thread and must
+     * not block.
+     *
+     * @param songHandler receives the songs in database order
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error or the handler fails
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public void streamAllSongs(Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        streamSongs(new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO)), songHandler);
+    }
 
-        return (new ArrayList<MPDSong>(mpd.convertResponseToSong(songList)));
+    /**
+     * Passes each {@link MPDSong} below the given path to
+     * <code>songHandler</code> as soon as it is read, see
+     * {@link #streamAllSongs(Consumer)}.
+     *
+     * @param path        the root of the list
+     * @param songHandler receives the songs in database order
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error or the handler fails
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public void streamAllSongs(String path, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        streamSongs(new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO), path), songHandler);
     }
 
     /**
@@ -608,32 +656,9 @@ public class MPDDatabase {
      *          if there is a problem sending the command
      */
     public List<MPDSong> searchTitle(String title, int startYear, int endYear) throws MPDConnectionException, MPDDatabaseException {
-        List<MPDSong> retList = new ArrayList<MPDSong>();
-
-        for (MPDSong song : search(ScopeType.TITLE, title)) {
-            int year;
-
-            //Ignore songs that miss the year tag.
-            if (song.getYear() == null) {
-                continue;
-            }
-
-            try {
-                if (song.getYear().contains("-")) {
-                    year = Integer.parseInt(song.getYear().split("-")[0]);
-                } else {
-                    year = Integer.parseInt(song.getYear());
-                }
-
-                if (year >= startYear && year <= endYear) {
-                    retList.add(song);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-        return retList;
+        return (search(new MPDQuery()
+                .where(ScopeType.TITLE, title)
+                .yearBetween(startYear, endYear)));
     }
 
     /**
@@ -803,27 +828,24 @@ public class MPDDatabase {
         return (albums);
     }
 
-    private List<String> listInfo(ListInfoType... types) throws MPDConnectionException, MPDDatabaseException {
-        List<String> returnList = new ArrayList<String>();
-        List<String> list;
+    private List<String> listInfo(final ListInfoType... types) throws MPDConnectionException, MPDDatabaseException {
+        final List<String> returnList = new ArrayList<String>();
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTINFO));
 
         try {
-            list = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommand(command, line -> {
+                for (ListInfoType type : types) {
+                    if (line.startsWith(type.getPrefix())) {
+                        returnList.add(line.substring(type.getPrefix().length()).trim());
+                    }
+                }
+            });
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
 
-        for (String s : list) {
-            for (ListInfoType type : types) {
-                if (s.startsWith(type.getPrefix())) {
-                    returnList.add(s.substring(type.getPrefix().length()).trim());
-                }
-            }
-        }
-
         return (returnList);
     }
 
@@ -838,6 +860,16 @@ public class MPDDatabase {
         return listDirectory("");
     }
 
+    /**
+     * Returns the root directory of the file system without listing it.  Its children and those of
+     * the directories below it are listed the first time {@link MPDFile#getChildren()} is called.
+     *
+     * @return the root directory
+     */
+    public MPDFile getRootDirectory() {
+        return (newFile("", true));
+    }
+
     /**
      * Lists all {@link MPDFile}s for the given directory of the file system.
      *
@@ -859,38 +891,102 @@ public class MPDDatabase {
         return listDirectoryInfo(directory);
     }
 
-    private List<MPDFile> listDirectoryInfo(String directory) throws MPDConnectionException, MPDDatabaseException {
-        List<MPDFile> returnList = new ArrayList<MPDFile>();
-        List<String> list;
-        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTINFO), directory);
+    /**
+     * Reads the whole tree below a directory with a single <code>listall</code> and sets the
+     * children of the directory and of every directory below it, so browsing the tree with
+     * {@link MPDFile#getChildren()} needs no further commands.
+     *
+     * @param directory the directory whose tree to read
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the MPD responded with an error or the {@link MPDFile}
+     *                                is not a directory.
+     */
+    public void prefetchTree(MPDFile directory) throws MPDConnectionException, MPDDatabaseException {
+        if (!directory.isDirectory()) {
+            throw new MPDDatabaseException(directory.getName() + " is not a directory.");
+        }
+
+        final String root = directory.getPath() == null ? "" : directory.getPath();
+        final Map<String, List<MPDFile>> children = new HashMap<String, List<MPDFile>>();
+        final Map<String, MPDFile> directories = new HashMap<String, MPDFile>();
+        children.put(root, new ArrayList<MPDFile>());
+        directories.put(root, directory);
+        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTALL), root);
 
         try {
-            list = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommand(command, s -> {
+                boolean isDirectory = s.startsWith(ListInfoType.DIRECTORY.getPrefix());
+                if (!isDirectory && !s.startsWith(ListInfoType.FILE.getPrefix())) {
+                    return;
+                }
+
+                String path = s.substring((isDirectory ? ListInfoType.DIRECTORY : ListInfoType.FILE).getPrefix().length()).trim();
+                if (path.equals(root)) {
+                    return;
+                }
+                int slash = path.lastIndexOf('/');
+                String parent = slash < 0 ? "" : path.substring(0, slash);
+                List<MPDFile> siblings = children.get(parent);
+                if (siblings == null) {
+                    //outside the requested tree
+                    return;
+                }
+
+                MPDFile f = newFile(path, isDirectory);
+                siblings.add(f);
+                if (isDirectory) {
+                    children.put(path, new ArrayList<MPDFile>());
+                    directories.put(path, f);
+                }
+            });
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
 
-        for (String s : list) {
+        for (Map.Entry<String, MPDFile> entry : directories.entrySet()) {
+            entry.getValue().setChildren(children.get(entry.getKey()));
+        }
+    }
 
-            if (s.startsWith(ListInfoType.FILE.getPrefix())
-                    || s.startsWith(ListInfoType.DIRECTORY.getPrefix())) {
-                MPDFile f = new MPDFile();
+    /**
+     * Returns a directory entry listing its children through this database.
+     */
+    private MPDFile newFile(String path, boolean directory) {
+        MPDFile f = new MPDFile();
+        f.setDirectory(directory);
+        f.setName(path);
+        f.setPath(path);
+        f.setDatabase(this);
+        return (f);
+    }
 
-                String name = s;
-                if (s.startsWith(ListInfoType.FILE.getPrefix())) {
-                    f.setDirectory(false);
-                    name = name.substring(ListInfoType.FILE.getPrefix().length()).trim();
-                } else {
-                    f.setDirectory(true);
-                    name = name.substring(ListInfoType.DIRECTORY.getPrefix().length()).trim();
-                }
+    private List<MPDFile> listDirectoryInfo(String directory) throws MPDConnectionException, MPDDatabaseException {
+        final List<MPDFile> returnList = new ArrayList<MPDFile>();
+        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTINFO), directory);
 
-                f.setName(name);
-                f.setPath(name);
-                returnList.add(f);
-            }
+        try {
+            mpd.sendMPDCommand(command, s -> {
+                if (s.startsWith(ListInfoType.FILE.getPrefix())
+                        || s.startsWith(ListInfoType.DIRECTORY.getPrefix())) {
+                    String name = s;
+                    boolean isDirectory;
+                    if (s.startsWith(ListInfoType.FILE.getPrefix())) {
+                        isDirectory = false;
+                        name = name.substring(ListInfoType.FILE.getPrefix().length()).trim();
+                    } else {
+                        isDirectory = true;
+                        name = name.substring(ListInfoType.DIRECTORY.getPrefix().length()).trim();
+                    }
+
+                    returnList.add(newFile(name, isDirectory));
+                }
+            });
+        } catch (MPDResponseException re) {
+            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDDatabaseException(e);
         }
         return (returnList);
     }
@@ -918,28 +1014,317 @@ public class MPDDatabase {
         }
 
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLIST), paramList);
-        List<String> responseList;
+        MPDLibraryCache current = getValidCache();
+        int generation = 0;
+        if (current != null) {
+            List<String> cached = current.get(command.toCommandString());
+            if (cached != null) {
+                return (cached);
+            }
+            generation = current.getGeneration();
+        }
 
+        final List<String> retList = new ArrayList<String>();
         try {
-            responseList = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommand(command, line -> retList.add(parseListValue(line)));
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
 
+        if (current != null) {
+            current.put(command.toCommandString(), retList, generation);
+        }
+        return (retList);
+    }
+
+    /**
+     * Strips the tag names from the response of the <code>list</code> command
+     * and returns the values.
+     *
+     * @param responseList the response from the MPD server
+     * @return the tag values
+     */
+    static List<String> parseList(List<String> responseList) {
         List<String> retList = new ArrayList<String>();
         for (String s : responseList) {
-            try {
-                retList.add(s.substring(s.split(":")[0].length() + 1).trim());
-            } catch (ArrayIndexOutOfBoundsException e) {
-                System.out.println("String with array problem:" + s);
-                retList.add("");
-            }
+            retList.add(parseListValue(s));
         }
         return (retList);
     }
 
+    private static String parseListValue(String s) {
+        try {
+            return (s.substring(s.split(":")[0].length() + 1).trim());
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("String with array problem:" + s);
+            return ("");
+        }
+    }
+
+    /**
+     * Sends a command answering with songs and collects them as they are
+     * parsed, without holding the response lines.
+     */
+    private List<MPDSong> songs(MPDCommand command) throws MPDConnectionException, MPDDatabaseException {
+        return (songs(command, true));
+    }
+
+    /**
+     * Sends a command answering with songs, using the cache only if
+     * <code>cacheable</code>.  Saved playlists are not cacheable as they
+     * change without a database update.
+     */
+    private List<MPDSong> songs(MPDCommand command, boolean cacheable) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryCache current = cacheable ? getValidCache() : null;
+        int generation = 0;
+        if (current != null) {
+            List<MPDSong> cached = current.get(command.toCommandString());
+            if (cached != null) {
+                return (cached);
+            }
+            generation = current.getGeneration();
+        }
+
+        List<MPDSong> songList = new ArrayList<MPDSong>();
+        streamSongs(command, songList::add);
+        if (current != null) {
+            current.put(command.toCommandString(), songList, generation);
+        }
+        return (songList);
+    }
+
+    /**
+     * Returns the cache after dropping it if the database was updated.
+     */
+    private MPDLibraryCache getValidCache() throws MPDConnectionException, MPDDatabaseException {
+        validate();
+        return (cache);
+    }
+
+    /**
+     * Returns the library index able to answer queries for the scope, unless
+     * the database was updated since it was built.
+     */
+    private MPDLibraryIndex getValidIndex(ScopeType scopeType, String param) throws MPDConnectionException, MPDDatabaseException {
+        if (getIndex(scopeType, param) == null) {
+            return (null);
+        }
+        validate();
+        return (getIndex(scopeType, param));
+    }
+
+    /**
+     * Returns the library index if it supports the scope, without checking
+     * whether the database was updated.
+     */
+    MPDLibraryIndex getIndex(ScopeType scopeType, String param) {
+        MPDLibraryIndex index = libraryIndex;
+        if (index == null || param == null || !MPDLibraryIndex.supports(scopeType)) {
+            return (null);
+        }
+        return (index);
+    }
+
+    /**
+     * Returns the cache, if enabled, without checking whether the database
+     * was updated.
+     */
+    MPDLibraryCache getCache() {
+        return (cache);
+    }
+
+    /**
+     * Returns the library index able to answer the query, unless the
+     * database was updated since it was built.
+     */
+    private MPDLibraryIndex getValidIndex(MPDQuery query) throws MPDConnectionException, MPDDatabaseException {
+        if (libraryIndex == null || query.isEmpty() || !MPDLibraryIndex.supports(query)) {
+            return (null);
+        }
+        validate();
+        return (libraryIndex);
+    }
+
+    /**
+     * Drops the cached answers and the library index if the database was
+     * updated, which is checked at most once per validation interval.
+     */
+    private void validate() throws MPDConnectionException, MPDDatabaseException {
+        if (isValidationDue()) {
+            validated(getLastUpdateTime());
+        }
+    }
+
+    /**
+     * Checks like {@link #validate()} whether the database was updated,
+     * without waiting for the server.
+     *
+     * @return the future completed once the cache and index were checked
+     */
+    CompletableFuture<Void> validateAsync() {
+        if (!isValidationDue()) {
+            return (CompletableFuture.completedFuture(null));
+        }
+        return (mpd.getMPDStatsAsync().thenAccept(stats -> validated(stats.getDbUpdate())));
+    }
+
+    private boolean isValidationDue() {
+        MPDLibraryIndex index = libraryIndex;
+        return ((cache != null || (index != null && index.getDbUpdate() >= 0))
+                && (!cacheValidated || System.nanoTime() - cacheValidatedTime >= cacheValidationInterval * 1000000L));
+    }
+
+    private void validated(long dbUpdate) {
+        MPDLibraryCache current = cache;
+        MPDLibraryIndex index = libraryIndex;
+        if (current != null) {
+            current.validate(dbUpdate);
+        }
+        if (index != null && index.getDbUpdate() >= 0 && index.getDbUpdate() != dbUpdate) {
+            libraryIndex = null;
+        }
+        cacheValidatedTime = System.nanoTime();
+        cacheValidated = true;
+    }
+
+    /**
+     * Reads the whole library and builds a {@link MPDLibraryIndex} of it.
+     *
+     * @return the index
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public MPDLibraryIndex buildIndex() throws MPDConnectionException, MPDDatabaseException {
+        long dbUpdate = getLastUpdateTime();
+        return (new MPDLibraryIndex(listAllSongs(), dbUpdate));
+    }
+
+    /**
+     * Builds a {@link MPDLibraryIndex} of the library read through the
+     * snapshot, see {@link #loadAllSongs(Path)}.
+     *
+     * @param snapshot the file holding the snapshot
+     * @return the index
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public MPDLibraryIndex buildIndex(Path snapshot) throws MPDConnectionException, MPDDatabaseException {
+        long dbUpdate = getLastUpdateTime();
+        return (new MPDLibraryIndex(loadAllSongs(snapshot), dbUpdate));
+    }
+
+    /**
+     * Answers the <code>search</code> and <code>find</code> queries from the
+     * index instead of the server where the index supports the scope.  The
+     * index is dropped, and the server asked again, once the database is
+     * updated, which is checked like the {@link #setCacheCapacity(int) cache}.
+     * The {@link MPDAsyncDatabase} answers from the index as well.  Pass null
+     * to ask the server again.
+     *
+     * @param index the index built with {@link #buildIndex()}
+     */
+    public void setLibraryIndex(MPDLibraryIndex index) {
+        this.cacheValidated = false;
+        this.libraryIndex = index;
+    }
+
+    /**
+     * Returns the index answering queries, if any.
+     *
+     * @return the index or null
+     */
+    public MPDLibraryIndex getLibraryIndex() {
+        return (libraryIndex);
+    }
+
+    /**
+     * Enables a cache answering repeated browse and search queries, such as
+     * {@link #listAllArtists()} or {@link #findAlbum(String)}, from memory.
+     * The cache holds up to <code>capacity</code> tag values and songs and
+     * evicts the least recently used answers beyond that.  It is dropped when
+     * the last database update time changes, which is checked at most once
+     * per {@link #setCacheValidationInterval(int) validation interval}, and
+     * by {@link #invalidateCache()}.  Cached songs are shared between
+     * callers.  The {@link MPDAsyncDatabase} shares the cache.  The songs of
+     * saved playlists are always read from the server.  A capacity of 0, the default, disables the cache.
+     *
+     * @param capacity the maximum number of tag values and songs held
+     */
+    public void setCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+        }
+
+        synchronized (this) {
+            if (capacity == 0) {
+                cache = null;
+            } else if (cache == null) {
+                cacheValidated = false;
+                cache = new MPDLibraryCache(capacity);
+            } else {
+                cache.setCapacity(capacity);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of tag values and songs cached.
+     *
+     * @return the cache capacity, 0 if the cache is disabled
+     */
+    public int getCacheCapacity() {
+        MPDLibraryCache current = cache;
+        return (current == null ? 0 : current.getCapacity());
+    }
+
+    /**
+     * Sets how often the cache checks whether the database was updated.
+     *
+     * @param millis the interval in milliseconds
+     */
+    public void setCacheValidationInterval(int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Validation interval must not be negative: " + millis);
+        }
+        this.cacheValidationInterval = millis;
+    }
+
+    /**
+     * Returns how often the cache checks whether the database was updated.
+     *
+     * @return the interval in milliseconds
+     */
+    public int getCacheValidationInterval() {
+        return (cacheValidationInterval);
+    }
+
+    /**
+     * Drops all cached answers, for instance when an idle connection reports
+     * a change of the database.
+     */
+    public void invalidateCache() {
+        MPDLibraryCache current = cache;
+        if (current != null) {
+            current.invalidate();
+        }
+    }
+
+    private void streamSongs(MPDCommand command, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        try {
+            mpd.sendMPDSongCommand(command, songHandler);
+        } catch (MPDResponseException re) {
+            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDDatabaseException(e);
+        }
+    }
+
     /**
      * Returns a {@link Collection} of {@link MPDSong}s for a searches matching the scope type any.
      * Please note this returns a partial match of a title.  To find an
@@ -952,28 +1337,33 @@ public class MPDDatabase {
      * @throws MPDDatabaseException   if the database throws an exception during the search
      */
     public List<MPDSong> search(ScopeType searchType, String param) throws MPDConnectionException, MPDDatabaseException {
-        String[] paramList;
-
-        if (param != null) {
-            paramList = new String[2];
-            paramList[1] = param;
-        } else {
-            paramList = new String[1];
+        MPDLibraryIndex index = getValidIndex(searchType, param);
+        if (index != null) {
+            return (index.search(searchType, param));
         }
+        return (songs(scopeCommand(MPDPROPSEARCH, searchType, param)));
+    }
 
-        paramList[0] = searchType.getType();
-        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPSEARCH), paramList);
-        List<String> titleList;
-
-        try {
-            titleList = new ArrayList<String>(mpd.sendMPDCommand(command));
-        } catch (MPDResponseException re) {
-            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDDatabaseException(e);
+    /**
+     * Passes each {@link MPDSong} partially matching the criteria to
+     * <code>songHandler</code> as soon as it is read, see
+     * {@link #search(org.bff.javampd.MPDDatabase.ScopeType, java.lang.String)}.
+     * Only the song being read is held in memory.
+     *
+     * @param searchType  the {@link ScopeType}
+     * @param param       the search criteria
+     * @param songHandler receives the songs in response order
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     *                                or the handler fails
+     */
+    public void streamSearch(ScopeType searchType, String param, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(searchType, param);
+        if (index != null) {
+            index.search(searchType, param).forEach(songHandler);
+            return;
         }
-
-        return (mpd.convertResponseToSong(titleList));
+        streamSongs(scopeCommand(MPDPROPSEARCH, searchType, param), songHandler);
     }
 
     /**
@@ -988,6 +1378,274 @@ public class MPDDatabase {
      * @throws MPDDatabaseException   if the database throws an exception during the search
      */
     public List<MPDSong> find(ScopeType scopeType, String param) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(scopeType, param);
+        if (index != null) {
+            return (index.find(scopeType, param));
+        }
+        return (songs(scopeCommand(MPDPROPFIND, scopeType, param)));
+    }
+
+    /**
+     * Passes each {@link MPDSong} exactly matching the criteria to
+     * <code>songHandler</code> as soon as it is read, see
+     * {@link #find(org.bff.javampd.MPDDatabase.ScopeType, java.lang.String)}.
+     * Only the song being read is held in memory.
+     *
+     * @param scopeType   the {@link ScopeType}
+     * @param param       the search criteria
+     * @param songHandler receives the songs in response order
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     *                                or the handler fails
+     */
+    public void streamFind(ScopeType scopeType, String param, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(scopeType, param);
+        if (index != null) {
+            index.find(scopeType, param).forEach(songHandler);
+            return;
+        }
+        streamSongs(scopeCommand(MPDPROPFIND, scopeType, param), songHandler);
+    }
+
+    /**
+     * Returns the {@link MPDSong}s exactly matching every clause of the
+     * query.  The clauses are sent in one command so only the matching songs
+     * are read from the server.
+     *
+     * @param query the clauses to match
+     * @return the matching songs
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     */
+    public List<MPDSong> find(MPDQuery query) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(query);
+        if (index != null) {
+            return (index.find(query));
+        }
+        if (query.hasYearRange()) {
+            List<MPDSong> songList = new ArrayList<MPDSong>();
+            streamSongs(queryCommand(MPDPROPFIND, query), query.filter(songList::add));
+            return (songList);
+        }
+        return (songs(queryCommand(MPDPROPFIND, query)));
+    }
+
+    /**
+     * Passes each {@link MPDSong} exactly matching every clause of the query
+     * to <code>songHandler</code> as soon as it is read, see
+     * {@link #find(MPDQuery)}.
+     *
+     * @param query       the clauses to match
+     * @param songHandler receives the songs in response order
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     *                                or the handler fails
+     */
+    public void streamFind(MPDQuery query, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(query);
+        if (index != null) {
+            index.find(query).forEach(songHandler);
+            return;
+        }
+        streamSongs(queryCommand(MPDPROPFIND, query), query.filter(songHandler));
+    }
+
+    /**
+     * Returns the {@link MPDSong}s partially matching every clause of the
+     * query, see {@link #find(MPDQuery)}.
+     *
+     * @param query the clauses to match
+     * @return the matching songs
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     */
+    public List<MPDSong> search(MPDQuery query) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(query);
+        if (index != null) {
+            return (index.search(query));
+        }
+        if (query.hasYearRange()) {
+            List<MPDSong> songList = new ArrayList<MPDSong>();
+            streamSongs(queryCommand(MPDPROPSEARCH, query), query.filter(songList::add));
+            return (songList);
+        }
+        return (songs(queryCommand(MPDPROPSEARCH, query)));
+    }
+
+    /**
+     * Passes each {@link MPDSong} partially matching every clause of the
+     * query to <code>songHandler</code> as soon as it is read, see
+     * {@link #search(MPDQuery)}.
+     *
+     * @param query       the clauses to match
+     * @param songHandler receives the songs in response order
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     *                                or the handler fails
+     */
+    public void streamSearch(MPDQuery query, Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDDatabaseException {
+        MPDLibraryIndex index = getValidIndex(query);
+        if (index != null) {
+            index.search(query).forEach(songHandler);
+            return;
+        }
+        streamSongs(queryCommand(MPDPROPSEARCH, query), query.filter(songHandler));
+    }
+
+    /**
+     * Returns the songs from <code>start</code> up to but not including
+     * <code>end</code> of those exactly matching every clause of the query,
+     * see {@link #find(MPDQuery)}.  The server only sends the songs of the
+     * window.  Requires MPD 0.20 or later.
+     *
+     * @param query the clauses to match
+     * @param start the position of the first song
+     * @param end   the position after the last song
+     * @return the matching songs of the window
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     */
+    public List<MPDSong> find(MPDQuery query, int start, int end) throws MPDConnectionException, MPDDatabaseException {
+        return (window(MPDPROPFIND, query, start, end));
+    }
+
+    /**
+     * Returns the songs from <code>start</code> up to but not including
+     * <code>end</code> of those partially matching every clause of the query,
+     * see {@link #find(MPDQuery, int, int)}.
+     *
+     * @param query the clauses to match
+     * @param start the position of the first song
+     * @param end   the position after the last song
+     * @return the matching songs of the window
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the database throws an exception during the search
+     */
+    public List<MPDSong> search(MPDQuery query, int start, int end) throws MPDConnectionException, MPDDatabaseException {
+        return (window(MPDPROPSEARCH, query, start, end));
+    }
+
+    /**
+     * Returns a {@link MPDSongPager} reading the songs exactly matching every
+     * clause of the query a page at a time, see {@link #find(MPDQuery)}.
+     *
+     * @param query    the clauses to match
+     * @param pageSize the number of songs per page
+     * @return the pager, already reading the first page
+     */
+    public MPDSongPager findPages(MPDQuery query, int pageSize) {
+        return (pages(MPDPROPFIND, query, pageSize));
+    }
+
+    /**
+     * Returns a {@link MPDSongPager} reading the songs partially matching
+     * every clause of the query a page at a time, see
+     * {@link #search(MPDQuery)}.
+     *
+     * @param query    the clauses to match
+     * @param pageSize the number of songs per page
+     * @return the pager, already reading the first page
+     */
+    public MPDSongPager searchPages(MPDQuery query, int pageSize) {
+        return (pages(MPDPROPSEARCH, query, pageSize));
+    }
+
+    /**
+     * Returns a window of the matching songs.  The index and year ranges
+     * cannot be windowed by the server, so their songs are windowed here.
+     */
+    private List<MPDSong> window(String commandProperty, MPDQuery query, int start, int end) throws MPDConnectionException, MPDDatabaseException {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Query has no clauses");
+        }
+        String range = MPDSongPager.range(start, end);
+        MPDLibraryIndex index = getValidIndex(query);
+        if (index != null) {
+            return (MPDSongPager.slice(indexed(commandProperty, index, query), start, end));
+        }
+        if (query.hasYearRange()) {
+            final List<MPDSong> songList = new ArrayList<MPDSong>();
+            final int[] position = new int[1];
+            streamSongs(queryCommand(commandProperty, query), query.filter(song -> {
+                if (position[0] >= start && position[0] < end) {
+                    songList.add(song);
+                }
+                ++position[0];
+            }));
+            return (songList);
+        }
+        return (songs(windowCommand(commandProperty, query, range)));
+    }
+
+    private MPDSongPager pages(final String commandProperty, final MPDQuery query, int pageSize) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Query has no clauses");
+        }
+        if (query.hasYearRange()) {
+            //the server cannot window the range, so the result is read once
+            return (new MPDSongPager(pageSize, new MPDSongPager.StreamedLoader(songHandler -> {
+                MPDLibraryIndex index = getValidIndex(query);
+                if (index != null) {
+                    indexed(commandProperty, index, query).forEach(songHandler);
+                    return (CompletableFuture.completedFuture(null));
+                }
+                return (mpd.sendMPDSongCommandAsync(queryCommand(commandProperty, query), query.filter(songHandler)));
+            }), MPDAsyncDatabase::translate));
+        }
+
+        //the answer of the index is computed once for all pages
+        final Map<MPDLibraryIndex, List<MPDSong>> answers = new IdentityHashMap<MPDLibraryIndex, List<MPDSong>>();
+        return (new MPDSongPager(pageSize, (start, end) -> {
+            MPDLibraryIndex index = getValidIndex(query);
+            if (index != null) {
+                List<MPDSong> answer = answers.get(index);
+                if (answer == null) {
+                    answers.clear();
+                    answer = indexed(commandProperty, index, query);
+                    answers.put(index, answer);
+                }
+                return (CompletableFuture.completedFuture(MPDSongPager.slice(answer, start, end)));
+            }
+            return (page(windowCommand(commandProperty, query, MPDSongPager.range(start, end))));
+        }, MPDAsyncDatabase::translate));
+    }
+
+    private static List<MPDSong> indexed(String commandProperty, MPDLibraryIndex index, MPDQuery query) {
+        return (MPDPROPFIND.equals(commandProperty) ? index.find(query) : index.search(query));
+    }
+
+    private CompletableFuture<List<MPDSong>> page(MPDCommand command) {
+        final List<MPDSong> songList = new ArrayList<MPDSong>();
+        return (MPDAsync.adapt(mpd.sendMPDSongCommandAsync(command, songList::add), done -> songList,
+                MPDAsyncDatabase::translate));
+    }
+
+    private MPDCommand windowCommand(String commandProperty, MPDQuery query, String range) {
+        if (query.getScopes().isEmpty()) {
+            throw new IllegalArgumentException("Query has no clauses");
+        }
+        String[] clauses = query.toParams();
+        String[] params = Arrays.copyOf(clauses, clauses.length + 2);
+        params[clauses.length] = WINDOW;
+        params[clauses.length + 1] = range;
+        return (new MPDCommand(prop.getProperty(commandProperty), params));
+    }
+
+    /**
+     * Returns the command sending the clauses of the query.  A query with
+     * only a year range reads the whole library.
+     */
+    private MPDCommand queryCommand(String commandProperty, MPDQuery query) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Query has no clauses");
+        }
+        if (query.getScopes().isEmpty()) {
+            return (new MPDCommand(prop.getProperty(MPDPROPLISTALLINFO)));
+        }
+        return (new MPDCommand(prop.getProperty(commandProperty), query.toParams()));
+    }
+
+    private MPDCommand scopeCommand(String commandProperty, ScopeType scopeType, String param) {
         String[] paramList;
 
         if (param != null) {
@@ -997,18 +1655,179 @@ public class MPDDatabase {
             paramList = new String[1];
         }
         paramList[0] = scopeType.getType();
-        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPFIND), paramList);
-        List<String> titleList;
+        return (new MPDCommand(prop.getProperty(commandProperty), paramList));
+    }
+
+    /**
+     * Writes the cover art of the directory of a song to <code>out</code> as
+     * it is received, without decoding it.  The cover is fetched in chunks of
+     * {@link #getArtworkChunkSize()} bytes; after the first chunk announced
+     * the size the remaining chunks are requested in pipelines.
+     *
+     * @param song the song whose cover to read
+     * @param out  receives the image data
+     * @return the number of bytes written
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the song has no cover or writing fails
+     */
+    public long streamAlbumArt(MPDSong song, OutputStream out) throws MPDConnectionException, MPDDatabaseException {
+        return (artwork(MPDPROPALBUMART, song.getFile(), out));
+    }
 
+    /**
+     * Reads the cover art of the directory of a song into
+     * <code>buffer</code>, see {@link #streamAlbumArt(MPDSong, OutputStream)}.
+     *
+     * @param song   the song whose cover to read
+     * @param buffer receives the image data at its position
+     * @return the number of bytes read
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the song has no cover or the cover does
+     *                                not fit into the buffer
+     */
+    public int readAlbumArt(MPDSong song, ByteBuffer buffer) throws MPDConnectionException, MPDDatabaseException {
+        return ((int) artwork(MPDPROPALBUMART, song.getFile(), new ByteBufferOutputStream(buffer)));
+    }
+
+    /**
+     * Writes the picture embedded in a song file to <code>out</code> as it is
+     * received, without decoding it.  It is fetched the same way as
+     * {@link #streamAlbumArt(MPDSong, OutputStream)}.
+     *
+     * @param song the song whose picture to read
+     * @param out  receives the image data
+     * @return the number of bytes written, 0 if the song has no picture
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the song is unknown or writing fails
+     */
+    public long streamPicture(MPDSong song, OutputStream out) throws MPDConnectionException, MPDDatabaseException {
+        return (artwork(MPDPROPREADPICTURE, song.getFile(), out));
+    }
+
+    /**
+     * Reads the picture embedded in a song file into <code>buffer</code>, see
+     * {@link #streamPicture(MPDSong, OutputStream)}.
+     *
+     * @param song   the song whose picture to read
+     * @param buffer receives the image data at its position
+     * @return the number of bytes read, 0 if the song has no picture
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the song is unknown or the picture does
+     *                                not fit into the buffer
+     */
+    public int readPicture(MPDSong song, ByteBuffer buffer) throws MPDConnectionException, MPDDatabaseException {
+        return ((int) artwork(MPDPROPREADPICTURE, song.getFile(), new ByteBufferOutputStream(buffer)));
+    }
+
+    /**
+     * Returns the size of the chunks artwork is fetched in.
+     *
+     * @return the chunk size in bytes, 0 for the default of the server
+     */
+    public int getArtworkChunkSize() {
+        return (artworkChunkSize);
+    }
+
+    /**
+     * Sets the size of the chunks artwork is fetched in.  Larger chunks need
+     * fewer requests but delay other commands on the same connection for
+     * longer.  Setting a size requires MPD 0.22.4 or later; once a size was
+     * set, going back to 0 resets the connections to the default of MPD.
+     *
+     * @param artworkChunkSize the chunk size in bytes, 0 for the default of
+     *                         the server
+     */
+    public void setArtworkChunkSize(int artworkChunkSize) {
+        if (artworkChunkSize < 0) {
+            throw new IllegalArgumentException("Negative chunk size " + artworkChunkSize);
+        }
+        this.artworkChunkSize = artworkChunkSize;
+    }
+
+    private long artwork(String commandProperty, String file, OutputStream out) throws MPDConnectionException, MPDDatabaseException {
+        MPDArtworkReader reader = new MPDArtworkReader(out);
+        int chunkSize = artworkChunkSize;
+        sendArtwork(artworkCommands(commandProperty, file, chunkSize, 0, 0, 1, reader), reader);
+
+        //the first chunk shows how much the server sends per request
+        long chunk = reader.getReceived();
+        while (reader.getReceived() < reader.getSize()) {
+            long offset = reader.getReceived();
+            if (chunk == 0) {
+                throw new MPDDatabaseException("Incomplete artwork of " + file + ": " + offset
+                        + " of " + reader.getSize() + " bytes");
+            }
+            int count = (int) Math.min(ARTWORK_PIPELINE_DEPTH, (reader.getSize() - offset + chunk - 1) / chunk);
+            sendArtwork(artworkCommands(commandProperty, file, chunkSize, offset, chunk, count, reader), reader);
+            if (reader.isMisaligned()) {
+                //the server sent chunks of another size; continue from the first one
+                chunk = reader.getReceived() - offset;
+            } else if (reader.getReceived() == offset) {
+                chunk = 0;
+            }
+        }
+        return (reader.getReceived());
+    }
+
+    /**
+     * Returns the pipeline requesting <code>count</code> chunks from
+     * <code>offset</code> and tells the reader which offsets to expect.  The
+     * binary limit is part of every pipeline since it is state of the pooled
+     * connection the pipeline happens to be sent on.
+     */
+    private List<MPDCommand> artworkCommands(String commandProperty, String file, int chunkSize, long offset,
+                                             long chunk, int count, MPDArtworkReader reader) {
+        List<MPDCommand> commands = new ArrayList<MPDCommand>(count + 1);
+        if (chunkSize > 0) {
+            binaryLimitChanged = true;
+            commands.add(new MPDCommand(prop.getProperty(MPDPROPBINARYLIMIT), Integer.toString(chunkSize)));
+        } else if (binaryLimitChanged) {
+            commands.add(new MPDCommand(prop.getProperty(MPDPROPBINARYLIMIT), Integer.toString(DEFAULT_BINARY_LIMIT)));
+        }
+
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offset + i * chunk;
+            commands.add(new MPDCommand(prop.getProperty(commandProperty),
+                    new String[]{file, Long.toString(offsets[i])}));
+        }
+        reader.expect(offsets);
+        return (commands);
+    }
+
+    private void sendArtwork(List<MPDCommand> commands, MPDArtworkReader reader) throws MPDConnectionException, MPDDatabaseException {
         try {
-            titleList = new ArrayList<String>(mpd.sendMPDCommand(command));
+            mpd.sendMPDCommandsPipelined(commands, reader);
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
             throw new MPDDatabaseException(e);
         }
+    }
+
+    /**
+     * Writes to the remaining space of a buffer.
+     */
+    private static class ByteBufferOutputStream extends OutputStream {
 
-        return (mpd.convertResponseToSong(titleList));
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.remaining()) {
+                throw new IOException("Artwork does not fit into the buffer of " + buffer.capacity() + " bytes");
+            }
+            buffer.put(b, off, len);
+        }
     }
 
     /**
@@ -1022,7 +1841,7 @@ public class MPDDatabase {
      */
     public int getArtistCount() throws MPDConnectionException, MPDDatabaseException {
         try {
-            return (Integer.parseInt(mpd.getServerStat(MPD.StatList.ARTISTS)));
+            return (mpd.getMPDStats().getArtists());
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
@@ -1041,7 +1860,7 @@ public class MPDDatabase {
      */
     public int getAlbumCount() throws MPDConnectionException, MPDDatabaseException {
         try {
-            return (Integer.parseInt(mpd.getServerStat(MPD.StatList.ALBUMS)));
+            return (mpd.getMPDStats().getAlbums());
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
@@ -1060,7 +1879,7 @@ public class MPDDatabase {
      */
     public int getSongCount() throws MPDConnectionException, MPDDatabaseException {
         try {
-            return (Integer.parseInt(mpd.getServerStat(MPD.StatList.SONGS)));
+            return (mpd.getMPDStats().getSongs());
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
@@ -1079,7 +1898,7 @@ public class MPDDatabase {
      */
     public long getDbPlayTime() throws MPDConnectionException, MPDDatabaseException {
         try {
-            return (Long.parseLong(mpd.getServerStat(MPD.StatList.DBPLAYTIME)));
+            return (mpd.getMPDStats().getDbPlaytime());
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
@@ -1098,7 +1917,7 @@ public class MPDDatabase {
      */
     public long getLastUpdateTime() throws MPDConnectionException, MPDDatabaseException {
         try {
-            return (Long.parseLong(mpd.getServerStat(MPD.StatList.DBUPDATE)));
+            return (mpd.getMPDStats().getDbUpdate());
         } catch (MPDResponseException re) {
             throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
         } catch (Exception e) {
@@ -1125,8 +1944,9 @@ public class MPDDatabase {
     }
 
     /**
-     * Returns a {@link Collection} of {@link MPDSavedPlaylist}s of all saved playlists.  This is an expensive
-     * call so use it cautiously.
+     * Returns a {@link Collection} of {@link MPDSavedPlaylist}s of all saved playlists with their songs.
+     * The songs of all playlists are read with {@link #loadPlaylistSongs(List)}; use
+     * {@link #listSavedPlaylistNames()} if only the names are needed.
      *
      * @return a {@link Collection} of all {@link MPDSavedPlaylist}s
      * @throws org.bff.javampd.exception.MPDConnectionException
@@ -1135,16 +1955,81 @@ public class MPDDatabase {
      *          if the MPD responded with an error
      */
     public List<MPDSavedPlaylist> listSavedPlaylists() throws MPDConnectionException, MPDDatabaseException {
+        List<MPDSavedPlaylist> playlists = listSavedPlaylistNames();
+        loadPlaylistSongs(playlists);
+        return playlists;
+    }
+
+    /**
+     * Returns a {@link Collection} of {@link MPDSavedPlaylist}s of all saved playlists without reading
+     * their songs, which costs a single command.  The songs of a playlist are read the first time
+     * {@link MPDSavedPlaylist#getSongs()} is called; fill in those of several playlists at once with
+     * {@link #loadPlaylistSongs(List)}.
+     *
+     * @return a {@link Collection} of all {@link MPDSavedPlaylist}s, without songs
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     */
+    public List<MPDSavedPlaylist> listSavedPlaylistNames() throws MPDConnectionException, MPDDatabaseException {
         List<MPDSavedPlaylist> playlists = new ArrayList<MPDSavedPlaylist>();
 
-        for (String s : listPlaylists()) {
+        for (final String s : listPlaylists()) {
             MPDSavedPlaylist playlist = new MPDSavedPlaylist(s);
-            playlist.setSongs(listPlaylistSongs(s));
+            playlist.setSongLoader(() -> listPlaylistSongs(s));
             playlists.add(playlist);
         }
         return playlists;
     }
 
+    /**
+     * Reads the songs of the {@link MPDSavedPlaylist}s and sets them on the playlists.  The
+     * <code>listplaylist</code> commands are pipelined instead of waiting for each answer in turn;
+     * with a connection pool they are spread over the connections and sent in parallel.
+     *
+     * @param playlists the playlists to fill in
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the commands
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     */
+    public void loadPlaylistSongs(List<MPDSavedPlaylist> playlists) throws MPDConnectionException, MPDDatabaseException {
+        if (playlists.isEmpty()) {
+            return;
+        }
+
+        int connections = Math.min(mpd.getPoolSize(), playlists.size());
+        int chunk = (playlists.size() + connections - 1) / connections;
+        List<CompletableFuture<List<String>>> responses = new ArrayList<CompletableFuture<List<String>>>(playlists.size());
+        for (int start = 0; start < playlists.size(); start += chunk) {
+            List<MPDCommand> commands = new ArrayList<MPDCommand>();
+            for (MPDSavedPlaylist playlist : playlists.subList(start, Math.min(start + chunk, playlists.size()))) {
+                commands.add(new MPDCommand(prop.getProperty(MPDPROPLISTSONGS), playlist.getName()));
+            }
+            responses.addAll(mpd.sendMPDCommandsPipelined(commands));
+        }
+
+        for (int i = 0; i < playlists.size(); i++) {
+            playlists.get(i).setSongs(mpd.convertResponseToSong(await(responses.get(i))));
+        }
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> response) throws MPDConnectionException, MPDDatabaseException {
+        try {
+            return (response.get());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted while waiting for response", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof MPDConnectionException) {
+                throw (MPDConnectionException) cause;
+            }
+            throw MPDAsyncDatabase.translate(cause);
+        }
+    }
+
     /**
      * Returns a {@link Collection} of all available playlist names on the server.
      *
@@ -1176,18 +2061,44 @@ public class MPDDatabase {
      */
     public List<MPDSong> listPlaylistSongs(String playlistName) throws MPDConnectionException, MPDDatabaseException {
         MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPLISTSONGS), playlistName);
-        List<String> response;
-        List<MPDSong> songList;
-        try {
-            response = mpd.sendMPDCommand(command);
-            songList = mpd.convertResponseToSong(response);
-        } catch (MPDResponseException re) {
-            throw new MPDDatabaseException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDDatabaseException(e);
-        }
+        return (songs(command, false));
+    }
 
-        return (songList);
+    /**
+     * Returns the songs of a {@link MPDSavedPlaylist} from <code>start</code>
+     * up to but not including <code>end</code> with all their tags.  The
+     * server only sends the songs of the window.  Requires MPD 0.24 or later.
+     *
+     * @param playlistName the name of the {@link MPDSavedPlaylist}
+     * @param start        the position of the first song
+     * @param end          the position after the last song
+     * @return the songs of the window
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     * @throws org.bff.javampd.exception.MPDDatabaseException
+     *          if the MPD responded with an error
+     */
+    public List<MPDSong> listPlaylistSongs(String playlistName, int start, int end) throws MPDConnectionException, MPDDatabaseException {
+        return (songs(playlistCommand(playlistName, MPDSongPager.range(start, end)), false));
+    }
+
+    /**
+     * Returns a {@link MPDSongPager} reading the songs of a
+     * {@link MPDSavedPlaylist} a page at a time, see
+     * {@link #listPlaylistSongs(String, int, int)}.
+     *
+     * @param playlistName the name of the {@link MPDSavedPlaylist}
+     * @param pageSize     the number of songs per page
+     * @return the pager, already reading the first page
+     */
+    public MPDSongPager listPlaylistSongPages(final String playlistName, int pageSize) {
+        return (new MPDSongPager(pageSize,
+                (start, end) -> page(playlistCommand(playlistName, MPDSongPager.range(start, end))),
+                MPDAsyncDatabase::translate));
+    }
+
+    private MPDCommand playlistCommand(String playlistName, String range) {
+        return (new MPDCommand(prop.getProperty(MPDPROPLISTSONGSINFO), new String[]{playlistName, range}));
     }
 
     /**
@@ -0,0 +1,225 @@
+/*
+ * MPDEventLoop.java
+ */
+package org.bff.javampd;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MPDEventLoop is a small, fixed set of I/O threads that drive non-blocking
+ * connections to any number of MPD servers.  Each thread owns a
+ * {@link Selector}; connections are assigned to the threads round robin and
+ * stay on their thread for their whole life.  Pass the same event loop to
+ * every {@link MPD} that should share it:
+ * <pre>
+ * MPDEventLoop eventLoop = new MPDEventLoop(2);
+ * MPD kitchen = new MPD("kitchen", 6600, null, 0, eventLoop);
+ * MPD livingRoom = new MPD("livingroom", 6600, null, 0, eventLoop);
+ * </pre>
+ * Responses are completed on the I/O threads, so callbacks attached to them
+ * must not block.
+ */
+public class MPDEventLoop {
+
+    private final Worker[] workers;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates an event loop with a single I/O thread.
+     *
+     * @throws java.io.IOException if a selector could not be opened
+     */
+    public MPDEventLoop() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Creates an event loop with the given number of I/O threads.
+     *
+     * @param threads the number of I/O threads
+     * @throws java.io.IOException if a selector could not be opened
+     */
+    public MPDEventLoop(int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(Selector.open(), "MPDEventLoop-" + i);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Stops all I/O threads.  Connections still open are closed and their
+     * outstanding commands fail with a connection error.
+     */
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Returns true if called on one of the I/O threads of this event loop.
+     *
+     * @return true if the current thread is an I/O thread
+     */
+    boolean inEventLoop() {
+        for (Worker worker : workers) {
+            if (worker.isCurrentThread()) {
+                return (true);
+            }
+        }
+        return (false);
+    }
+
+    /**
+     * Returns the I/O thread the next connection is assigned to.
+     *
+     * @return the next worker
+     */
+    Worker nextWorker() {
+        return (workers[(next.getAndIncrement() & Integer.MAX_VALUE) % workers.length]);
+    }
+
+    /**
+     * Receives the readiness events of a channel registered with a
+     * {@link Worker}.  All methods are called on the I/O thread.
+     */
+    interface Handler {
+
+        /**
+         * Handles the ready operations of the key.
+         *
+         * @param key the selected key
+         */
+        void handle(SelectionKey key);
+
+        /**
+         * Called when the event loop shuts down while the channel is still
+         * registered.
+         */
+        void shutdown();
+    }
+
+    /**
+     * One I/O thread and its selector.
+     */
+    static class Worker implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Worker(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Runs the task on the I/O thread.
+         *
+         * @param task the task to run
+         * @return false if the event loop has been shut down
+         */
+        boolean execute(Runnable task) {
+            if (!running) {
+                return (false);
+            }
+            tasks.add(task);
+            if (!running && tasks.remove(task)) {
+                //shut down meanwhile and the last tasks may already have run
+                return (false);
+            }
+            selector.wakeup();
+            return (true);
+        }
+
+        /**
+         * Registers a channel with the selector of this worker.  Must be
+         * called on the I/O thread.
+         *
+         * @param channel the channel to register
+         * @param ops     the interest set
+         * @param handler the handler of the events
+         * @return the selection key
+         * @throws java.nio.channels.ClosedChannelException
+         *          if the channel is closed
+         */
+        SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws ClosedChannelException {
+            return (channel.register(selector, ops, handler));
+        }
+
+        /**
+         * Returns true if called on the I/O thread of this worker.
+         *
+         * @return true if the current thread is the I/O thread
+         */
+        boolean isCurrentThread() {
+            return (Thread.currentThread() == thread);
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    runTasks();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        ((Handler) key.attachment()).handle(key);
+                    }
+                } catch (IOException e) {
+                    Logger.getLogger(MPDEventLoop.class.getName()).log(Level.SEVERE, null, e);
+                } catch (RuntimeException e) {
+                    Logger.getLogger(MPDEventLoop.class.getName()).log(Level.SEVERE, null, e);
+                }
+            }
+
+            runTasks();
+            for (SelectionKey key : selector.keys()) {
+                ((Handler) key.attachment()).shutdown();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Logger.getLogger(MPDEventLoop.class.getName()).log(Level.SEVERE, null, e);
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Logger.getLogger(MPDEventLoop.class.getName()).log(Level.SEVERE, null, e);
+                }
+            }
+        }
+    }
+}
@@ -5,8 +5,17 @@
 
 package org.bff.javampd;
 
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDDatabaseException;
+
+import java.util.Collections;
+import java.util.List;
+
 /**
- * Represents a file within the mpd songs directory.
+ * Represents a file within the mpd songs directory.  A directory listed by
+ * {@link MPDDatabase} reads its children the first time they are asked for
+ * and keeps them; {@link MPDDatabase#prefetchTree(MPDFile)} reads a whole
+ * tree at once.
  *
  * @author Bill
  */
@@ -14,6 +23,8 @@ public class MPDFile {
     private String name;
     private boolean directory;
     private String path;
+    private MPDDatabase database;
+    private List<MPDFile> children;
 
     /**
      * @return the name
@@ -60,6 +71,46 @@ public class MPDFile {
         this.path = path;
     }
 
+    /**
+     * Returns the files and directories in this directory, listing them the
+     * first time.
+     *
+     * @return the children of the directory
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDDatabaseException   if the MPD responded with an error or this
+     *                                is not a directory listed by a database
+     */
+    public synchronized List<MPDFile> getChildren() throws MPDConnectionException, MPDDatabaseException {
+        if (children == null) {
+            if (database == null) {
+                throw new MPDDatabaseException(getName() + " was not listed by a database.");
+            }
+            children = Collections.unmodifiableList(database.listDirectory(this));
+        }
+        return children;
+    }
+
+    /**
+     * @return true if the children were already listed
+     */
+    public synchronized boolean isLoaded() {
+        return children != null;
+    }
+
+    /**
+     * @param children the children of the directory
+     */
+    synchronized void setChildren(List<MPDFile> children) {
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @param database the database listing the children
+     */
+    void setDatabase(MPDDatabase database) {
+        this.database = database;
+    }
+
     @Override
     public String toString() {
         return getName();
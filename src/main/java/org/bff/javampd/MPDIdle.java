@@ -0,0 +1,289 @@
+/*
+ * MPDIdle.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * MPDIdle waits for changes on a MPD server using the <code>idle</code>
+ * command.  To obtain an instance of the class you must use the
+ * {@link MPD#openIdle()} method.  Each instance owns a dedicated connection
+ * since the server answers <code>idle</code> only once something changed, so
+ * waiting costs neither traffic nor load on the server.
+ * <p>
+ * One thread at a time may wait with {@link #waitForChanges(Subsystem...)};
+ * any thread may end the wait early with {@link #cancel()}.  Callers that
+ * must not block start the wait with {@link #begin(Subsystem...)} and check
+ * for the answer with {@link #poll()}.
+ */
+public class MPDIdle {
+
+    private final MPDConnection connection;
+    private final Properties prop;
+    private final Object lock = new Object();
+    private MPDCommand pending;
+    private boolean cancelled;
+    private static final String MPDPROPIDLE = "MPD_CMD_IDLE";
+    private static final String MPDPROPNOIDLE = "MPD_CMD_NOIDLE";
+    private static final String RESPONSE_CHANGED = "changed:";
+
+    /**
+     * The subsystems of the server reported by <code>idle</code>.
+     */
+    public enum Subsystem {
+
+        /**
+         * the song database has been modified after an update
+         */
+        DATABASE("database"),
+        /**
+         * a database update has started or finished
+         */
+        UPDATE("update"),
+        /**
+         * a stored playlist has been modified, renamed, created or deleted
+         */
+        STORED_PLAYLIST("stored_playlist"),
+        /**
+         * the current playlist has been modified
+         */
+        PLAYLIST("playlist"),
+        /**
+         * the player has been started, stopped or seeked
+         */
+        PLAYER("player"),
+        /**
+         * the volume has been changed
+         */
+        MIXER("mixer"),
+        /**
+         * an audio output has been enabled or disabled
+         */
+        OUTPUT("output"),
+        /**
+         * options like repeat, random or crossfade have changed
+         */
+        OPTIONS("options"),
+        /**
+         * the sticker database has been modified
+         */
+        STICKER("sticker"),
+        /**
+         * a client has subscribed or unsubscribed to a channel
+         */
+        SUBSCRIPTION("subscription"),
+        /**
+         * a message was received on a subscribed channel
+         */
+        MESSAGE("message");
+        private String name;
+
+        Subsystem(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the subsystem in the protocol.
+         *
+         * @return the name of the subsystem
+         */
+        public String getName() {
+            return (name);
+        }
+
+        /**
+         * Returns the subsystem with the given protocol name.
+         *
+         * @param name the name of the subsystem
+         * @return the subsystem or null if it is unknown
+         */
+        public static Subsystem forName(String name) {
+            for (Subsystem subsystem : values()) {
+                if (subsystem.name.equals(name)) {
+                    return (subsystem);
+                }
+            }
+            return (null);
+        }
+    }
+
+    /**
+     * Creates the idle connection.
+     *
+     * @param connection the dedicated, connected and authenticated connection
+     * @param prop       the MPD command properties
+     */
+    MPDIdle(MPDConnection connection, Properties prop) {
+        this.connection = connection;
+        this.prop = prop;
+    }
+
+    /**
+     * Waits until one of the given subsystems changes, or any subsystem if
+     * none is given, and returns the changed subsystems.  Changes that
+     * happened since the previous call are reported immediately.  If a wait
+     * was already begun with {@link #begin(Subsystem...)} its subsystems are
+     * used instead.
+     *
+     * @param subsystems the subsystems to wait for
+     * @return the changed subsystems, empty if the wait was cancelled
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if the connection is lost or closed
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the server rejects the command
+     */
+    public Set<Subsystem> waitForChanges(Subsystem... subsystems) throws MPDConnectionException, MPDResponseException {
+        synchronized (lock) {
+            if (cancelled && pending == null) {
+                cancelled = false;
+                return (EnumSet.noneOf(Subsystem.class));
+            }
+        }
+        begin(subsystems);
+        return (finish());
+    }
+
+    /**
+     * Starts waiting for changes of the given subsystems, or any subsystem if
+     * none is given, without blocking.  The changes are collected with
+     * {@link #poll()} or {@link #waitForChanges(Subsystem...)}.  Does nothing
+     * if a wait is already running.
+     *
+     * @param subsystems the subsystems to wait for
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if the connection is lost or closed
+     */
+    public void begin(Subsystem... subsystems) throws MPDConnectionException {
+        synchronized (lock) {
+            if (pending != null) {
+                return;
+            }
+
+            String[] names = new String[subsystems.length];
+            for (int i = 0; i < subsystems.length; i++) {
+                names[i] = subsystems[i].getName();
+            }
+            MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPIDLE), names);
+            try {
+                connection.write(command);
+            } catch (IOException e) {
+                throw lost(e);
+            }
+            pending = command;
+        }
+    }
+
+    /**
+     * Returns the changed subsystems if the server has answered the wait
+     * started with {@link #begin(Subsystem...)}, without blocking otherwise.
+     * A new wait must then be begun to see further changes.
+     *
+     * @return the changed subsystems, empty if the wait was cancelled, or null
+     *         if nothing changed yet or no wait is running
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if the connection is lost or closed
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the server rejects the command
+     */
+    public Set<Subsystem> poll() throws MPDConnectionException, MPDResponseException {
+        synchronized (lock) {
+            if (pending == null) {
+                return (null);
+            }
+        }
+        try {
+            if (!connection.isReadable()) {
+                return (null);
+            }
+        } catch (IOException e) {
+            throw lost(e);
+        }
+        return (finish());
+    }
+
+    /**
+     * Ends a running or the next call of {@link #waitForChanges(Subsystem...)}
+     * by sending <code>noidle</code>.
+     *
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if the connection is lost
+     */
+    public void cancel() throws MPDConnectionException {
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (pending != null) {
+                try {
+                    connection.write(new MPDCommand(prop.getProperty(MPDPROPNOIDLE)));
+                } catch (IOException e) {
+                    throw lost(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the connection is open.
+     *
+     * @return true if the connection is open
+     */
+    public boolean isConnected() {
+        return (connection.isConnected());
+    }
+
+    /**
+     * Closes the connection.  A running wait fails with a
+     * {@link MPDConnectionException}.
+     */
+    public void close() {
+        connection.close();
+    }
+
+    private Set<Subsystem> finish() throws MPDConnectionException, MPDResponseException {
+        MPDCommand command;
+        synchronized (lock) {
+            command = pending;
+        }
+
+        List<String> response;
+        try {
+            response = connection.read(command);
+        } catch (IOException e) {
+            throw lost(e);
+        } finally {
+            synchronized (lock) {
+                pending = null;
+                cancelled = false;
+            }
+        }
+        return (parse(response));
+    }
+
+    private MPDConnectionException lost(IOException e) {
+        connection.close();
+        return (new MPDConnectionException("Connection to server lost: " + e.getMessage(), e));
+    }
+
+    private static Set<Subsystem> parse(List<String> response) {
+        Set<Subsystem> changed = EnumSet.noneOf(Subsystem.class);
+        for (String line : response) {
+            if (line.startsWith(RESPONSE_CHANGED)) {
+                Subsystem subsystem = Subsystem.forName(line.substring(RESPONSE_CHANGED.length()).trim());
+                if (subsystem != null) {
+                    changed.add(subsystem);
+                }
+            }
+        }
+        return (changed);
+    }
+}
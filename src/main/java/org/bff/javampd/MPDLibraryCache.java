@@ -0,0 +1,140 @@
+/*
+ * MPDLibraryCache.java
+ */
+package org.bff.javampd;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MPDLibraryCache holds the answers to database queries keyed by the command
+ * line that produced them.  The cache is bounded by the total number of
+ * items held, tag values and songs alike; once full the least recently used
+ * answers are evicted.  An answer larger than the capacity is not cached.
+ * <p>
+ * The library only changes with a database update so the whole cache is
+ * dropped when the <code>db_update</code> time of the server changes or
+ * {@link #invalidate()} is called.
+ */
+class MPDLibraryCache {
+
+    private final Map<String, List<?>> entries = new LinkedHashMap<String, List<?>>(16, 0.75f, true);
+    private int capacity;
+    private int size;
+    private long dbUpdate = -1;
+    private int generation;
+
+    /**
+     * Creates a cache holding up to <code>capacity</code> items.
+     *
+     * @param capacity the maximum number of items
+     */
+    MPDLibraryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a copy of the cached answer to the command line.
+     *
+     * @param key the command line
+     * @return the answer or null if not cached
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> List<T> get(String key) {
+        List<T> value = (List<T>) entries.get(key);
+        return (value == null ? null : new ArrayList<T>(value));
+    }
+
+    /**
+     * Returns a number changing whenever the cache is dropped.  Read it
+     * before querying the server so an answer that may predate a database
+     * update is not cached afterwards.
+     *
+     * @return the generation of the cache
+     */
+    synchronized int getGeneration() {
+        return (generation);
+    }
+
+    /**
+     * Caches a copy of the answer to the command line, evicting the least
+     * recently used answers as needed.
+     *
+     * @param key        the command line
+     * @param value      the answer
+     * @param generation the generation read before the query
+     */
+    synchronized void put(String key, List<?> value, int generation) {
+        if (generation != this.generation || value.size() > capacity) {
+            return;
+        }
+
+        List<?> previous = entries.put(key, new ArrayList<Object>(value));
+        if (previous != null) {
+            size -= previous.size();
+        }
+        size += value.size();
+        evict();
+    }
+
+    /**
+     * Drops the cache if the database was updated since the answers were
+     * cached.
+     *
+     * @param dbUpdate the <code>db_update</code> time reported by the server
+     */
+    synchronized void validate(long dbUpdate) {
+        if (dbUpdate != this.dbUpdate) {
+            invalidate();
+            this.dbUpdate = dbUpdate;
+        }
+    }
+
+    /**
+     * Drops all cached answers.
+     */
+    synchronized void invalidate() {
+        ++generation;
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Changes the maximum number of items held.
+     *
+     * @param capacity the maximum number of items
+     */
+    synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Returns the maximum number of items held.
+     *
+     * @return the capacity
+     */
+    synchronized int getCapacity() {
+        return (capacity);
+    }
+
+    /**
+     * Returns the number of items held.
+     *
+     * @return the number of items
+     */
+    synchronized int size() {
+        return (size);
+    }
+
+    private void evict() {
+        Iterator<List<?>> it = entries.values().iterator();
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().size();
+            it.remove();
+        }
+    }
+}
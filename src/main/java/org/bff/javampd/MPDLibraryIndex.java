@@ -0,0 +1,406 @@
+/*
+ * MPDLibraryIndex.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.MPDDatabase.ScopeType;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MPDLibraryIndex answers <code>search</code> and <code>find</code> queries
+ * over a copy of the library without asking the server, for instance to
+ * search as the user types.  Obtain one with {@link MPDDatabase#buildIndex()}
+ * and pass it to {@link MPDDatabase#setLibraryIndex(MPDLibraryIndex)} to
+ * have the database answer from it, or query it directly.
+ * <p>
+ * Each tag has an inverted index from its distinct values to the songs
+ * carrying them, which answers {@link #find(ScopeType, String)} with a
+ * single lookup.  For {@link #search(ScopeType, String)} the lower-cased
+ * values are also indexed by their three character substrings: the values
+ * holding every trigram of the query are candidates and only those are
+ * checked for the query.  Queries shorter than three characters check the
+ * distinct values, which are far fewer than the songs.
+ * <p>
+ * As on the server, <code>find</code> matches whole values exactly and
+ * <code>search</code> matches parts of values ignoring case; songs are
+ * returned in library order.  {@link ScopeType#ANY} matches any tag but not
+ * the file name.  The composer and performer are not part of
+ * {@link MPDSong} and cannot be answered, see {@link #supports(ScopeType)}.
+ */
+public class MPDLibraryIndex {
+
+    private static final int GRAM = 3;
+    /**
+     * Holds the placeholders {@link MPDSong} returns for missing tags.
+     */
+    private static final MPDSong MISSING = new MPDSong();
+    private final MPDSong[] songs;
+    private final Map<ScopeType, Field> fields = new EnumMap<ScopeType, Field>(ScopeType.class);
+    private final long dbUpdate;
+
+    /**
+     * Creates an index of the songs.
+     *
+     * @param songs the songs of the library
+     */
+    public MPDLibraryIndex(List<MPDSong> songs) {
+        this(songs, -1);
+    }
+
+    /**
+     * Creates an index of the songs read at the given database update.
+     *
+     * @param songs    the songs of the library
+     * @param dbUpdate the <code>db_update</code> time of the server, -1 if
+     *                 unknown
+     */
+    MPDLibraryIndex(List<MPDSong> songs, long dbUpdate) {
+        this.songs = songs.toArray(new MPDSong[songs.size()]);
+        this.dbUpdate = dbUpdate;
+
+        for (ScopeType scope : ScopeType.values()) {
+            if (supports(scope)) {
+                fields.put(scope, new Field());
+            }
+        }
+        Field any = fields.get(ScopeType.ANY);
+        for (int i = 0; i < this.songs.length; i++) {
+            MPDSong song = this.songs[i];
+            for (Map.Entry<ScopeType, Field> entry : fields.entrySet()) {
+                if (entry.getKey() != ScopeType.ANY) {
+                    String value = value(song, entry.getKey());
+                    entry.getValue().add(value, i);
+                    if (entry.getKey() != ScopeType.FILENAME) {
+                        any.add(value, i);
+                    }
+                }
+            }
+        }
+        for (Field field : fields.values()) {
+            field.freeze();
+        }
+    }
+
+    /**
+     * Returns true if queries for the scope can be answered.
+     *
+     * @param scope the scope of the query
+     * @return true unless the tag is not known to {@link MPDSong}
+     */
+    public static boolean supports(ScopeType scope) {
+        return (scope != ScopeType.COMPOSER && scope != ScopeType.PERFORMER);
+    }
+
+    /**
+     * Returns true if every clause of the query can be answered.
+     *
+     * @param query the query
+     * @return true if all scopes of the query are supported
+     */
+    public static boolean supports(MPDQuery query) {
+        for (ScopeType scope : query.getScopes()) {
+            if (!supports(scope)) {
+                return (false);
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Returns the songs exactly matching every clause of the query, see
+     * {@link MPDDatabase#find(MPDQuery)}.
+     *
+     * @param query the clauses to match
+     * @return the songs in library order
+     * @throws IllegalArgumentException if a scope is not supported
+     */
+    public List<MPDSong> find(MPDQuery query) {
+        BitSet matches = null;
+        for (int i = 0; i < query.getScopes().size(); i++) {
+            BitSet clause = findMatches(query.getScopes().get(i), query.getValues().get(i));
+            matches = and(matches, clause);
+        }
+        return (collect(matches, query));
+    }
+
+    /**
+     * Returns the songs partially matching every clause of the query, see
+     * {@link MPDDatabase#search(MPDQuery)}.
+     *
+     * @param query the clauses to match
+     * @return the songs in library order
+     * @throws IllegalArgumentException if a scope is not supported
+     */
+    public List<MPDSong> search(MPDQuery query) {
+        BitSet matches = null;
+        for (int i = 0; i < query.getScopes().size(); i++) {
+            BitSet clause = searchMatches(query.getScopes().get(i), query.getValues().get(i));
+            matches = and(matches, clause);
+        }
+        return (collect(matches, query));
+    }
+
+    /**
+     * Returns the songs with a tag exactly matching <code>param</code>, see
+     * {@link MPDDatabase#find(ScopeType, String)}.
+     *
+     * @param scope the tag to match
+     * @param param the value to match
+     * @return the songs in library order
+     * @throws IllegalArgumentException if the scope is not supported
+     */
+    public List<MPDSong> find(ScopeType scope, String param) {
+        return (collect(findMatches(scope, param)));
+    }
+
+    /**
+     * Returns the songs with a tag containing <code>param</code> ignoring
+     * case, see {@link MPDDatabase#search(ScopeType, String)}.
+     *
+     * @param scope the tag to match
+     * @param param the text to look for
+     * @return the songs in library order
+     * @throws IllegalArgumentException if the scope is not supported
+     */
+    public List<MPDSong> search(ScopeType scope, String param) {
+        return (collect(searchMatches(scope, param)));
+    }
+
+    /**
+     * Returns the number of songs indexed.
+     *
+     * @return the number of songs
+     */
+    public int size() {
+        return (songs.length);
+    }
+
+    /**
+     * Returns the database update time the songs were read at.
+     *
+     * @return the <code>db_update</code> time, -1 if unknown
+     */
+    long getDbUpdate() {
+        return (dbUpdate);
+    }
+
+    private BitSet findMatches(ScopeType scope, String param) {
+        Field field = field(scope);
+        BitSet matches = new BitSet(songs.length);
+        Integer value = field.exact.get(param);
+        if (value != null) {
+            for (int song : field.songs[value]) {
+                matches.set(song);
+            }
+        }
+        return (matches);
+    }
+
+    private BitSet searchMatches(ScopeType scope, String param) {
+        Field field = field(scope);
+        String query = param.toLowerCase(Locale.ROOT);
+
+        BitSet matches = new BitSet(songs.length);
+        for (int value : field.candidates(query)) {
+            if (field.lowerValues[value].contains(query)) {
+                for (int song : field.songs[value]) {
+                    matches.set(song);
+                }
+            }
+        }
+        return (matches);
+    }
+
+    private static BitSet and(BitSet matches, BitSet clause) {
+        if (matches == null) {
+            return (clause);
+        }
+        matches.and(clause);
+        return (matches);
+    }
+
+    private Field field(ScopeType scope) {
+        Field field = fields.get(scope);
+        if (field == null) {
+            throw new IllegalArgumentException(scope + " is not indexed");
+        }
+        return (field);
+    }
+
+    /**
+     * Returns the matching songs within the year range of the query; all
+     * songs are candidates if the query has no clauses.
+     */
+    private List<MPDSong> collect(BitSet matches, MPDQuery query) {
+        if (matches == null) {
+            matches = new BitSet(songs.length);
+            matches.set(0, songs.length);
+        }
+
+        List<MPDSong> result = new ArrayList<MPDSong>();
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (query.matchesYear(songs[i])) {
+                result.add(songs[i]);
+            }
+        }
+        return (result);
+    }
+
+    private List<MPDSong> collect(BitSet matches) {
+        List<MPDSong> result = new ArrayList<MPDSong>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(songs[i]);
+        }
+        return (result);
+    }
+
+    private static String value(MPDSong song, ScopeType scope) {
+        switch (scope) {
+            case ALBUM:
+                return (song.getAlbum() == null ? null : song.getAlbum().getName());
+            case ARTIST:
+                return (song.getArtist() == null ? null : song.getArtist().getName());
+            case TITLE:
+                return (song.getTitle());
+            case TRACK:
+                return (song.getTrack() > 0 ? Integer.toString(song.getTrack()) : null);
+            case NAME:
+                return (song.getName());
+            case GENRE:
+                return (tag(song.getGenre(), MISSING.getGenre()));
+            case DATE:
+                return (tag(song.getYear(), MISSING.getYear()));
+            case COMMENT:
+                return (tag(song.getComment(), MISSING.getComment()));
+            case DISC:
+                return (tag(song.getDiscNumber(), MISSING.getDiscNumber()));
+            case FILENAME:
+                return (song.getFile());
+            default:
+                return (null);
+        }
+    }
+
+    private static String tag(String value, String missing) {
+        return (value.equals(missing) ? null : value);
+    }
+
+    /**
+     * The inverted indexes of one tag.  Values are numbered in the order
+     * they are first seen.
+     */
+    private static final class Field {
+
+        private final Map<String, Integer> exact = new HashMap<String, Integer>();
+        private Map<String, List<Integer>> buildSongs = new HashMap<String, List<Integer>>();
+        private String[] lowerValues;
+        private int[][] songs;
+        private Map<String, int[]> grams;
+
+        private void add(String value, int song) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+
+            List<Integer> list = buildSongs.get(value);
+            if (list == null) {
+                exact.put(value, exact.size());
+                list = new ArrayList<Integer>();
+                buildSongs.put(value, list);
+            }
+            if (list.isEmpty() || list.get(list.size() - 1) != song) {
+                list.add(song);
+            }
+        }
+
+        private void freeze() {
+            lowerValues = new String[exact.size()];
+            songs = new int[exact.size()][];
+            Map<String, List<Integer>> buildGrams = new HashMap<String, List<Integer>>();
+            for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+                int value = entry.getValue();
+                String lower = entry.getKey().toLowerCase(Locale.ROOT);
+                lowerValues[value] = lower;
+                songs[value] = toArray(buildSongs.get(entry.getKey()));
+
+                for (int i = 0; i + GRAM <= lower.length(); i++) {
+                    String gram = lower.substring(i, i + GRAM);
+                    List<Integer> list = buildGrams.get(gram);
+                    if (list == null) {
+                        list = new ArrayList<Integer>();
+                        buildGrams.put(gram, list);
+                    }
+                    if (list.isEmpty() || list.get(list.size() - 1) != value) {
+                        list.add(value);
+                    }
+                }
+            }
+
+            grams = new HashMap<String, int[]>();
+            for (Map.Entry<String, List<Integer>> entry : buildGrams.entrySet()) {
+                int[] values = toArray(entry.getValue());
+                Arrays.sort(values);
+                grams.put(entry.getKey(), values);
+            }
+            buildSongs = null;
+        }
+
+        /**
+         * Returns the values which may contain the query: those holding all
+         * of its trigrams, or every value for short queries.
+         */
+        private int[] candidates(String query) {
+            if (query.length() < GRAM) {
+                int[] all = new int[lowerValues.length];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = i;
+                }
+                return (all);
+            }
+
+            int[] result = null;
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                int[] values = grams.get(query.substring(i, i + GRAM));
+                if (values == null) {
+                    return (new int[0]);
+                }
+                result = result == null ? values : intersect(result, values);
+            }
+            return (result);
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] result = new int[Math.min(a.length, b.length)];
+            int n = 0;
+            for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+                if (a[i] < b[j]) {
+                    ++i;
+                } else if (a[i] > b[j]) {
+                    ++j;
+                } else {
+                    result[n++] = a[i];
+                    ++i;
+                    ++j;
+                }
+            }
+            return (Arrays.copyOf(result, n));
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return (array);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * MPDLibrarySnapshot.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.objects.MPDAlbum;
+import org.bff.javampd.objects.MPDArtist;
+import org.bff.javampd.objects.MPDSong;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MPDLibrarySnapshot stores the songs of a library in a compact binary file
+ * tagged with the server and its <code>db_update</code> time, so a client
+ * can start from the file instead of reading the whole library again.
+ * <p>
+ * Every distinct tag value is written once to a string table and the songs
+ * refer to it by index, which keeps files of libraries with many songs per
+ * artist and album small.  The file is memory-mapped when read and the
+ * header is checked before any song is decoded.  It is written to a
+ * temporary file first and moved into place, so a reader never sees a
+ * partial snapshot.
+ */
+class MPDLibrarySnapshot {
+
+    private static final int MAGIC = 0x4A4D5044;
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+    /**
+     * The number of string table references per song.
+     */
+    private static final int STRING_FIELDS = 9;
+
+    private MPDLibrarySnapshot() {
+    }
+
+    /**
+     * Reads the songs from the snapshot if it was taken of the same server
+     * at the same database update.
+     *
+     * @param file     the snapshot file
+     * @param serverId identifies the server
+     * @param dbUpdate the <code>db_update</code> time of the server
+     * @return the songs or null if there is no matching snapshot
+     * @throws IOException if the file cannot be read
+     */
+    static List<MPDSong> read(Path file, String serverId, long dbUpdate) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return (null);
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !serverId.equals(readString(buffer)) || buffer.getLong() != dbUpdate) {
+                return (null);
+            }
+
+            String[] strings = new String[readCount(buffer, 4)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+
+            int count = readCount(buffer, (STRING_FIELDS + 2) * 4);
+            List<MPDSong> songs = new ArrayList<MPDSong>(count);
+            for (int i = 0; i < count; i++) {
+                MPDSong song = new MPDSong();
+                song.setFile(string(strings, buffer.getInt()));
+                song.setTitle(string(strings, buffer.getInt()));
+                String artist = string(strings, buffer.getInt());
+                if (artist != null) {
+                    song.setArtist(new MPDArtist(artist));
+                }
+                String album = string(strings, buffer.getInt());
+                if (album != null) {
+                    song.setAlbum(new MPDAlbum(album));
+                }
+                song.setGenre(string(strings, buffer.getInt()));
+                song.setComment(string(strings, buffer.getInt()));
+                song.setYear(string(strings, buffer.getInt()));
+                song.setDiscNumber(string(strings, buffer.getInt()));
+                song.setName(string(strings, buffer.getInt()));
+                song.setLength(buffer.getInt());
+                song.setTrack(buffer.getInt());
+                songs.add(song);
+            }
+            return (songs);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            //truncated or corrupt, read the library again
+            return (null);
+        }
+    }
+
+    /**
+     * Writes the songs to the snapshot file, replacing an older snapshot.
+     *
+     * @param file     the snapshot file
+     * @param serverId identifies the server
+     * @param dbUpdate the <code>db_update</code> time of the server
+     * @param songs    the songs of the library
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, String serverId, long dbUpdate, List<MPDSong> songs) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        int[] refs = new int[songs.size() * STRING_FIELDS];
+        int r = 0;
+        for (MPDSong song : songs) {
+            refs[r++] = index(strings, song.getFile());
+            refs[r++] = index(strings, song.getTitle());
+            refs[r++] = index(strings, song.getArtist() == null ? null : song.getArtist().getName());
+            refs[r++] = index(strings, song.getAlbum() == null ? null : song.getAlbum().getName());
+            refs[r++] = index(strings, song.getGenre());
+            refs[r++] = index(strings, song.getComment());
+            refs[r++] = index(strings, song.getYear());
+            refs[r++] = index(strings, song.getDiscNumber());
+            refs[r++] = index(strings, song.getName());
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, serverId);
+                out.writeLong(dbUpdate);
+                out.writeInt(strings.size());
+                for (String s : strings.keySet()) {
+                    writeString(out, s);
+                }
+
+                out.writeInt(songs.size());
+                r = 0;
+                for (MPDSong song : songs) {
+                    for (int i = 0; i < STRING_FIELDS; i++) {
+                        out.writeInt(refs[r++]);
+                    }
+                    out.writeInt(song.getLength());
+                    out.writeInt(song.getTrack());
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int index(Map<String, Integer> strings, String s) {
+        if (s == null) {
+            return (NONE);
+        }
+
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        return (index);
+    }
+
+    private static String string(String[] strings, int index) {
+        return (index == NONE ? null : strings[index]);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a count and checks that the entries it announces fit in the rest
+     * of the file, so a corrupt count cannot make us allocate more than the
+     * file holds.
+     */
+    private static int readCount(MappedByteBuffer buffer, int entrySize) {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * entrySize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return (count);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return (new String(bytes, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * MPDLineReader.java
+ */
+package org.bff.javampd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * MPDLineReader splits the bytes received from a MPD server into response
+ * lines without decoding them.  Data is read straight into an internal buffer
+ * and each line is exposed as a range of that buffer, valid until the next
+ * call of {@link #nextLine()} or a fill method.  The buffer grows if a single
+ * line does not fit.  Instances are not thread safe.
+ */
+class MPDLineReader {
+
+    private byte[] buffer;
+    private int start;
+    private int scanned;
+    private int end;
+    private int lineStart;
+    private int lineLength;
+
+    /**
+     * Creates a reader with the given initial buffer size.
+     *
+     * @param size the initial size of the buffer in bytes
+     */
+    MPDLineReader(int size) {
+        this.buffer = new byte[size];
+    }
+
+    /**
+     * Advances to the next complete line in the buffer.
+     *
+     * @return true if a line is available, false if more data must be read
+     */
+    boolean nextLine() {
+        for (int i = scanned; i < end; i++) {
+            if (buffer[i] == '\n') {
+                lineStart = start;
+                lineLength = i - start;
+                if (lineLength > 0 && buffer[i - 1] == '\r') {
+                    --lineLength;
+                }
+                start = i + 1;
+                scanned = start;
+                return (true);
+            }
+        }
+        scanned = end;
+        return (false);
+    }
+
+    /**
+     * Takes up to <code>max</code> bytes following the last line as raw data,
+     * for instance the payload of a <code>binary:</code> response.  The bytes
+     * are exposed like a line through {@link #buffer()},
+     * {@link #lineStart()} and {@link #lineLength()}.
+     *
+     * @param max the maximum number of bytes to take
+     * @return the number of bytes taken, 0 if more data must be read
+     */
+    int take(int max) {
+        int count = Math.min(max, end - start);
+        lineStart = start;
+        lineLength = count;
+        start += count;
+        scanned = start;
+        return (count);
+    }
+
+    /**
+     * Reads the next line from a blocking stream, filling the buffer as
+     * needed.
+     *
+     * @param in the stream to read from
+     * @return true if a line is available, false at the end of the stream
+     * @throws IOException if reading fails
+     */
+    boolean readLine(InputStream in) throws IOException {
+        while (!nextLine()) {
+            if (fill(in) < 0) {
+                return (false);
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Reads as many bytes as are available from the stream into the buffer.
+     *
+     * @param in the stream to read from
+     * @return the number of bytes read or -1 at the end of the stream
+     * @throws IOException if reading fails
+     */
+    int fill(InputStream in) throws IOException {
+        makeRoom();
+        int count = in.read(buffer, end, buffer.length - end);
+        if (count > 0) {
+            end += count;
+        }
+        return (count);
+    }
+
+    /**
+     * Reads as many bytes as are available from the channel into the buffer.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read or -1 at the end of the stream
+     * @throws IOException if reading fails
+     */
+    int fill(ReadableByteChannel channel) throws IOException {
+        makeRoom();
+        int count = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        if (count > 0) {
+            end += count;
+        }
+        return (count);
+    }
+
+    /**
+     * Returns the buffer holding the current line.
+     *
+     * @return the buffer
+     */
+    byte[] buffer() {
+        return (buffer);
+    }
+
+    /**
+     * Returns the offset of the current line in {@link #buffer()}.
+     *
+     * @return the offset of the line
+     */
+    int lineStart() {
+        return (lineStart);
+    }
+
+    /**
+     * Returns the length of the current line without the line terminator.
+     *
+     * @return the length of the line
+     */
+    int lineLength() {
+        return (lineLength);
+    }
+
+    /**
+     * Returns true if the current line starts with the given bytes.
+     *
+     * @param prefix the prefix to test
+     * @return true if the line starts with the prefix
+     */
+    boolean startsWith(byte[] prefix) {
+        if (lineLength < prefix.length) {
+            return (false);
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[lineStart + i] != prefix[i]) {
+                return (false);
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Decodes the current line.
+     *
+     * @param charset the encoding of the server
+     * @return the line
+     */
+    String decode(Charset charset) {
+        return (new String(buffer, lineStart, lineLength, charset));
+    }
+
+    /**
+     * Decodes the current line starting at <code>offset</code>, with
+     * surrounding whitespace removed.
+     *
+     * @param offset  the number of bytes to skip
+     * @param charset the encoding of the server
+     * @return the rest of the line
+     */
+    String decode(int offset, Charset charset) {
+        return (new String(buffer, lineStart + offset, lineLength - offset, charset).trim());
+    }
+
+    /**
+     * Parses the decimal number following <code>offset</code> in the current
+     * line, ignoring surrounding whitespace.
+     *
+     * @param offset the number of bytes to skip
+     * @return the number
+     * @throws NumberFormatException if the rest of the line is not a number
+     */
+    int parseInt(int offset) {
+        int from = lineStart + offset;
+        int to = lineStart + lineLength;
+        while (from < to && buffer[from] == ' ') {
+            ++from;
+        }
+        while (to > from && buffer[to - 1] == ' ') {
+            --to;
+        }
+        if (from == to || to - from > 9) {
+            throw new NumberFormatException("Not a number: " + new String(buffer, lineStart, lineLength));
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + new String(buffer, lineStart, lineLength));
+            }
+            value = value * 10 + digit;
+        }
+        return (value);
+    }
+
+    /**
+     * Returns the number of buffered bytes not yet returned as a line.
+     *
+     * @return the number of unread bytes
+     */
+    int available() {
+        return (end - start);
+    }
+
+    /**
+     * Discards all buffered data.
+     */
+    void clear() {
+        start = 0;
+        scanned = 0;
+        end = 0;
+    }
+
+    private void makeRoom() {
+        if (start == end) {
+            //everything was consumed, start over at the beginning
+            start = 0;
+            scanned = 0;
+            end = 0;
+            return;
+        }
+        if (end < buffer.length) {
+            return;
+        }
+        int pending = end - start;
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, pending);
+        } else {
+            //a single line fills the whole buffer
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, pending);
+            buffer = grown;
+        }
+        scanned -= start;
+        start = 0;
+        end = pending;
+    }
+}
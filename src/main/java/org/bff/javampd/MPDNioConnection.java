@@ -0,0 +1,704 @@
+/*
+ * MPDNioConnection.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.exception.MPDTimeoutException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MPDNioConnection is a non-blocking connection to a MPD server driven by a
+ * shared {@link MPDEventLoop}.  Commands of all threads are queued on the one
+ * connection and written by the I/O thread in the order they were submitted;
+ * the responses are matched to the commands in the same order and handed back
+ * as futures.  No thread is parked per server or per command unless the
+ * caller chooses to wait for the result.
+ * <p>
+ * If the server drops the connection all outstanding commands fail with a
+ * {@link MPDConnectionException} and the next command opens a new connection.
+ */
+class MPDNioConnection implements MPDTransport {
+
+    private final MPDEventLoop eventLoop;
+    private final InetAddress serverAddress;
+    private final int port;
+    private final String password;
+    private final int timeout;
+    private final Properties prop;
+    private final Charset charset;
+    private final byte[] responseOk;
+    private final byte[] responseError;
+    private final byte[] responseBinary;
+    private volatile Session session;
+    private volatile boolean closed;
+    private String version;
+    private static final int BUFFER_SIZE = 8192;
+    private static final String MPDPROPSERVERENCODING = "MPD_SERVER_ENCODING";
+    private static final String MPDPROPCLOSE = "MPD_CMD_CLOSE";
+    private static final String MPDPROPPASSWORD = "MPD_CMD_PASSWORD";
+    private static final String MPDPROPRESPONSEERR = "MPD_CMD_RESPONSE_ERR";
+    private static final String MPDPROPRESPONSEOK = "MPD_CMD_RESPONSE_OK";
+    private static final String MPDPROPRESPONSEBINARY = "MPD_CMD_RESPONSE_BINARY";
+
+    /**
+     * Creates a new, unconnected MPDNioConnection.
+     *
+     * @param eventLoop     the event loop driving the connection
+     * @param serverAddress the address of the MPD server
+     * @param port          the port MPD is listening on
+     * @param password      the password to authenticate with, null for none
+     * @param timeout       the amount of time in milliseconds to wait for the
+     *                      connection and greeting, 0 for infinite wait
+     * @param prop          the MPD command properties
+     */
+    MPDNioConnection(MPDEventLoop eventLoop, InetAddress serverAddress, int port, String password,
+                     int timeout, Properties prop) {
+        this.eventLoop = eventLoop;
+        this.serverAddress = serverAddress;
+        this.port = port;
+        this.password = password;
+        this.timeout = timeout;
+        this.prop = prop;
+        this.charset = Charset.forName(prop.getProperty(MPDPROPSERVERENCODING));
+        this.responseOk = prop.getProperty(MPDPROPRESPONSEOK).getBytes(StandardCharsets.US_ASCII);
+        this.responseError = prop.getProperty(MPDPROPRESPONSEERR).getBytes(StandardCharsets.US_ASCII);
+        this.responseBinary = prop.getProperty(MPDPROPRESPONSEBINARY).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public synchronized String connect() throws MPDConnectionException, MPDResponseException {
+        if (session != null) {
+            session.close();
+        }
+        session = open();
+        return (version);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The command is queued on the connection and the future is completed on
+     * the I/O thread, so dependent stages must not block.
+     */
+    @Override
+    public CompletableFuture<List<String>> submit(MPDCommand command) {
+        return (pipeline(Collections.singletonList(command)).get(0));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The commands are queued together and written by the I/O thread with a
+     * single gathering write.
+     */
+    @Override
+    public List<CompletableFuture<List<String>>> pipeline(List<MPDCommand> commands) {
+        try {
+            return (submitSession().submit(commands));
+        } catch (Exception e) {
+            List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>(commands.size());
+            for (int i = 0; i < commands.size(); i++) {
+                CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+                future.completeExceptionally(e);
+                futures.add(future);
+            }
+            return (futures);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler is called on the I/O thread and must not block.
+     */
+    @Override
+    public void pipeline(List<MPDCommand> commands, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        Session current = session();
+        if (current.worker.isCurrentThread()) {
+            throw new MPDConnectionException("Blocking pipeline sent from the I/O thread, use MPD.async() in callbacks");
+        }
+        await(current.submit(commands, lineHandler));
+    }
+
+    @Override
+    public List<String> sendCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException {
+        Session current = session();
+        if (current.worker.isCurrentThread()) {
+            //waiting here would stop the thread that has to read the response
+            throw new MPDConnectionException("Blocking command " + command.getCommand()
+                    + " sent from the I/O thread, use MPD.async() in callbacks");
+        }
+        return (await(current.submit(command.getCommand(), command.toCommandString())));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler is called on the I/O thread and must not block.
+     */
+    @Override
+    public void sendCommand(MPDCommand command, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException {
+        Session current = session();
+        if (current.worker.isCurrentThread()) {
+            throw new MPDConnectionException("Blocking command " + command.getCommand()
+                    + " sent from the I/O thread, use MPD.async() in callbacks");
+        }
+        await(current.submit(command, lineHandler));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The handler is called on the I/O thread and must not block.
+     */
+    @Override
+    public CompletableFuture<Void> submit(MPDCommand command, Consumer<String> lineHandler) {
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        try {
+            submitSession().submit(command, lineHandler).whenComplete((lines, error) -> {
+                if (error == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return (future);
+    }
+
+    @Override
+    public List<List<String>> sendCommands(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException {
+        Session current = session();
+        if (current.worker.isCurrentThread()) {
+            throw new MPDConnectionException("Blocking command list sent from the I/O thread, use MPD.async() in callbacks");
+        }
+        return (MPDCommandList.split(await(current.submitList(commandList)), prop));
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+    }
+
+    private Session session() throws MPDConnectionException, MPDResponseException {
+        Session current = session;
+        if (current != null && current.isOpen()) {
+            return (current);
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new MPDConnectionException("Connection is closed");
+            }
+            if (session == null || !session.isOpen()) {
+                session = open();
+            }
+            return (session);
+        }
+    }
+
+    private Session submitSession() throws MPDConnectionException, MPDResponseException {
+        Session current = session;
+        if ((current == null || !current.isOpen()) && eventLoop.inEventLoop()) {
+            //reconnecting waits for the greeting, which would stop the I/O thread
+            throw new MPDConnectionException("Connection to server lost");
+        }
+        return (session());
+    }
+
+    private Session open() throws MPDConnectionException, MPDResponseException {
+        Session opened = new Session(eventLoop.nextWorker());
+        CompletableFuture<List<String>> greeting = opened.start();
+        CompletableFuture<List<String>> authentication = null;
+        if (password != null) {
+            MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPPASSWORD), password);
+            authentication = opened.submit(command.getCommand(), command.toCommandString());
+        }
+
+        boolean success = false;
+        try {
+            if (timeout > 0) {
+                this.version = greeting.get(timeout, TimeUnit.MILLISECONDS).get(0);
+            } else {
+                this.version = greeting.get().get(0);
+            }
+            if (authentication != null) {
+                await(authentication);
+            }
+            success = true;
+            return (opened);
+        } catch (TimeoutException te) {
+            throw new MPDTimeoutException("Timed out connecting to " + serverAddress + ":" + port, te);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted while connecting", ie);
+        } catch (ExecutionException ee) {
+            throw unwrap(ee);
+        } finally {
+            if (!success) {
+                opened.close();
+            }
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws MPDConnectionException, MPDResponseException {
+        try {
+            return (future.get());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted waiting for the response", ie);
+        } catch (ExecutionException ee) {
+            throw unwrap(ee);
+        }
+    }
+
+    private static MPDConnectionException unwrap(ExecutionException ee) throws MPDResponseException {
+        Throwable cause = ee.getCause();
+        if (cause instanceof MPDResponseException) {
+            throw (MPDResponseException) cause;
+        } else if (cause instanceof MPDConnectionException) {
+            return ((MPDConnectionException) cause);
+        }
+        return (new MPDConnectionException(cause.getMessage(), cause));
+    }
+
+    /**
+     * A command waiting for its response.
+     */
+    private static class Request {
+
+        private final String command;
+        private final List<MPDCommand> commandList;
+        private final byte[] payload;
+        private final Consumer<String> lineHandler;
+        private final List<String> lines = new ArrayList<String>();
+        private final CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        private RuntimeException handlerError;
+
+        Request(String command, byte[] payload) {
+            this(command, null, payload, null);
+        }
+
+        Request(String command, List<MPDCommand> commandList, byte[] payload, Consumer<String> lineHandler) {
+            this.command = command;
+            this.commandList = commandList;
+            this.payload = payload;
+            this.lineHandler = lineHandler;
+        }
+
+        /**
+         * Passes a part of a binary payload to the line handler if it takes
+         * binary data.
+         */
+        void binary(byte[] buffer, int offset, int length) {
+            if (lineHandler instanceof MPDBinaryHandler && handlerError == null) {
+                try {
+                    ((MPDBinaryHandler) lineHandler).binary(buffer, offset, length);
+                } catch (RuntimeException e) {
+                    handlerError = e;
+                }
+            }
+        }
+
+        /**
+         * Collects the current line of the reader or passes it to the line
+         * handler, as raw bytes if the handler takes them.  Once the handler
+         * failed the rest of the response is skipped.
+         */
+        void add(MPDLineReader reader, Charset charset) {
+            if (lineHandler == null) {
+                lines.add(reader.decode(charset));
+            } else if (handlerError == null) {
+                try {
+                    if (lineHandler instanceof MPDByteLineHandler) {
+                        ((MPDByteLineHandler) lineHandler).accept(reader.buffer(), reader.lineStart(),
+                                reader.lineLength(), charset);
+                    } else {
+                        lineHandler.accept(reader.decode(charset));
+                    }
+                } catch (RuntimeException e) {
+                    handlerError = e;
+                }
+            }
+        }
+
+        void complete() {
+            if (handlerError != null) {
+                future.completeExceptionally(new MPDResponseException(handlerError));
+            } else {
+                future.complete(lines);
+            }
+        }
+    }
+
+    /**
+     * Passes the responses of a pipeline to one handler until a command of it
+     * fails.  Only used on the I/O thread.
+     */
+    private static class PipelineHandler implements MPDBinaryHandler {
+
+        private final Consumer<String> lineHandler;
+        private boolean failed;
+
+        PipelineHandler(Consumer<String> lineHandler) {
+            this.lineHandler = lineHandler;
+        }
+
+        @Override
+        public void accept(String line) {
+            if (!failed) {
+                lineHandler.accept(line);
+            }
+        }
+
+        @Override
+        public void accept(byte[] buffer, int offset, int length, Charset charset) {
+            if (failed) {
+                return;
+            }
+            if (lineHandler instanceof MPDByteLineHandler) {
+                ((MPDByteLineHandler) lineHandler).accept(buffer, offset, length, charset);
+            } else {
+                lineHandler.accept(new String(buffer, offset, length, charset));
+            }
+        }
+
+        @Override
+        public void binary(byte[] buffer, int offset, int length) {
+            if (!failed && lineHandler instanceof MPDBinaryHandler) {
+                ((MPDBinaryHandler) lineHandler).binary(buffer, offset, length);
+            }
+        }
+    }
+
+    /**
+     * One physical socket.  Apart from the <code>submit</code> methods,
+     * {@link #close()} and {@link #isOpen()} all methods run on the I/O
+     * thread of the worker.
+     */
+    private class Session implements MPDEventLoop.Handler {
+
+        private final MPDEventLoop.Worker worker;
+        private final Queue<Request> outbound = new ConcurrentLinkedQueue<Request>();
+        private final Deque<Request> inflight = new ArrayDeque<Request>();
+        private final Deque<ByteBuffer> writing = new ArrayDeque<ByteBuffer>();
+        private final MPDLineReader reader = new MPDLineReader(BUFFER_SIZE);
+        /**
+         * The bytes left of the binary payload being read, including its
+         * terminating newline.
+         */
+        private int binaryRemaining;
+        private final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        private SocketChannel channel;
+        private SelectionKey key;
+        private boolean connected;
+        private volatile boolean open = true;
+
+        Session(MPDEventLoop.Worker worker) {
+            this.worker = worker;
+        }
+
+        boolean isOpen() {
+            return (open);
+        }
+
+        /**
+         * Starts connecting and returns a future of the greeting, completed
+         * with the MPD version as the only line.
+         */
+        CompletableFuture<List<String>> start() {
+            final Request greeting = new Request(null, null);
+            boolean started = worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    inflight.add(greeting);
+                    try {
+                        channel = SocketChannel.open();
+                        channel.configureBlocking(false);
+                        if (channel.connect(new InetSocketAddress(serverAddress, port))) {
+                            key = worker.register(channel, SelectionKey.OP_READ, Session.this);
+                            connected = true;
+                        } else {
+                            key = worker.register(channel, SelectionKey.OP_CONNECT, Session.this);
+                        }
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+            });
+            if (!started) {
+                open = false;
+                greeting.future.completeExceptionally(new MPDConnectionException("Event loop is shut down"));
+            }
+            return (greeting.future);
+        }
+
+        CompletableFuture<List<String>> submit(String command, String payload) {
+            Request request = new Request(command, payload.getBytes(charset));
+            outbound.add(request);
+            scheduleFlush();
+            return (request.future);
+        }
+
+        CompletableFuture<List<String>> submit(MPDCommand command, Consumer<String> lineHandler) {
+            Request request = new Request(command.getCommand(), null,
+                    command.toCommandString().getBytes(charset), lineHandler);
+            outbound.add(request);
+            scheduleFlush();
+            return (request.future);
+        }
+
+        List<CompletableFuture<List<String>>> submit(List<MPDCommand> commands) {
+            List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>(commands.size());
+            for (MPDCommand command : commands) {
+                Request request = new Request(command.getCommand(), command.toCommandString().getBytes(charset));
+                outbound.add(request);
+                futures.add(request.future);
+            }
+            scheduleFlush();
+            return (futures);
+        }
+
+        /**
+         * Queues the commands with one handler for all their responses.  The
+         * returned future fails with the first error in command order; the
+         * handler is not called after an error.
+         */
+        CompletableFuture<List<String>> submit(List<MPDCommand> commands, Consumer<String> lineHandler) {
+            final PipelineHandler handler = new PipelineHandler(lineHandler);
+            CompletableFuture<List<String>> result = CompletableFuture.completedFuture(Collections.<String>emptyList());
+            for (MPDCommand command : commands) {
+                Request request = new Request(command.getCommand(), null,
+                        command.toCommandString().getBytes(charset), handler);
+                //runs on the I/O thread before the next response is read
+                request.future.whenComplete((lines, error) -> {
+                    if (error != null) {
+                        handler.failed = true;
+                    }
+                });
+                outbound.add(request);
+                //keeps the error of the first failing command
+                result = result.thenCombine(request.future, (previous, lines) -> previous);
+            }
+            scheduleFlush();
+            return (result);
+        }
+
+        CompletableFuture<List<String>> submitList(List<MPDCommand> commandList) {
+            Request request = new Request(null, commandList,
+                    MPDCommandList.toCommandString(commandList, prop).getBytes(charset), null);
+            outbound.add(request);
+            scheduleFlush();
+            return (request.future);
+        }
+
+        private void scheduleFlush() {
+            if (!open || !worker.execute(flushTask)) {
+                open = false;
+                failOutbound(new MPDConnectionException("Connection is closed"));
+            }
+        }
+
+        void close() {
+            open = false;
+            boolean scheduled = worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (connected && channel.isOpen()) {
+                        try {
+                            channel.write(ByteBuffer.wrap(new MPDCommand(prop.getProperty(MPDPROPCLOSE))
+                                    .toCommandString().getBytes(charset)));
+                        } catch (IOException e) {
+                            //the server may already have dropped the connection
+                        }
+                    }
+                    fail(new MPDConnectionException("Connection is closed"));
+                }
+            });
+            if (!scheduled) {
+                failOutbound(new MPDConnectionException("Connection is closed"));
+            }
+        }
+
+        @Override
+        public void handle(SelectionKey selected) {
+            try {
+                if (selected.isConnectable()) {
+                    channel.finishConnect();
+                    connected = true;
+                    selected.interestOps(SelectionKey.OP_READ);
+                    flush();
+                }
+                if (selected.isValid() && selected.isReadable()) {
+                    read();
+                }
+                if (selected.isValid() && selected.isWritable()) {
+                    flush();
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (CancelledKeyException e) {
+                fail(new EOFException("Connection closed"));
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            fail(new MPDConnectionException("Event loop is shut down"));
+        }
+
+        private void flush() {
+            if (!connected || !channel.isOpen()) {
+                return;
+            }
+
+            Request request;
+            while ((request = outbound.poll()) != null) {
+                inflight.add(request);
+                writing.add(ByteBuffer.wrap(request.payload));
+            }
+
+            try {
+                if (!writing.isEmpty()) {
+                    //one gathering write keeps pipelined commands in as few packets as possible
+                    channel.write(writing.toArray(new ByteBuffer[writing.size()]));
+                    while (!writing.isEmpty() && !writing.peek().hasRemaining()) {
+                        writing.poll();
+                    }
+                }
+                if (writing.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                } else {
+                    //socket buffer is full, continue when writable
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void read() throws IOException {
+            if (reader.fill(channel) < 0) {
+                fail(new EOFException("Connection closed by server"));
+                return;
+            }
+
+            while (open) {
+                if (binaryRemaining > 0) {
+                    int count = reader.take(binaryRemaining);
+                    if (count == 0) {
+                        break;
+                    }
+                    int data = Math.min(count, binaryRemaining - 1);
+                    Request request = inflight.peek();
+                    if (data > 0 && request != null) {
+                        request.binary(reader.buffer(), reader.lineStart(), data);
+                    }
+                    binaryRemaining -= count;
+                } else if (reader.nextLine()) {
+                    handleLine();
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void handleLine() {
+            Request request = inflight.peek();
+            if (request == null) {
+                Logger.getLogger(MPDNioConnection.class.getName()).log(Level.WARNING,
+                        "Unexpected line from server: " + reader.decode(charset));
+                return;
+            }
+
+            if (reader.startsWith(responseOk)) {
+                inflight.poll();
+                if (request.payload == null) {
+                    request.future.complete(Collections.singletonList(reader.decode(responseOk.length, charset)));
+                } else {
+                    request.complete();
+                }
+            } else if (reader.startsWith(responseError)) {
+                inflight.poll();
+                String message = reader.decode(responseError.length, charset);
+                if (request.payload == null) {
+                    request.future.completeExceptionally(new MPDConnectionException("Response from server: " + message));
+                } else if (request.commandList != null) {
+                    request.future.completeExceptionally(MPDCommandList.error(message, request.commandList,
+                            request.lines, prop));
+                } else {
+                    request.future.completeExceptionally(new MPDResponseException(message, request.command));
+                }
+            } else {
+                if (reader.startsWith(responseBinary)) {
+                    try {
+                        binaryRemaining = reader.parseInt(responseBinary.length) + 1;
+                    } catch (NumberFormatException nfe) {
+                        fail(new IOException("Malformed binary response: " + reader.decode(charset), nfe));
+                        return;
+                    }
+                }
+                request.add(reader, charset);
+            }
+        }
+
+        private void fail(Exception cause) {
+            open = false;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Logger.getLogger(MPDNioConnection.class.getName()).log(Level.SEVERE, null, e);
+                }
+            }
+
+            MPDConnectionException exception = cause instanceof MPDConnectionException
+                    ? (MPDConnectionException) cause
+                    : new MPDConnectionException("Connection to server lost: " + cause.getMessage(), cause);
+            Request request;
+            while ((request = inflight.poll()) != null) {
+                request.future.completeExceptionally(exception);
+            }
+            failOutbound(exception);
+        }
+
+        private void failOutbound(MPDConnectionException exception) {
+            Request request;
+            while ((request = outbound.poll()) != null) {
+                request.future.completeExceptionally(exception);
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.bff.javampd.objects.MPDSong;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * MPDPlayer represents a player controller to a MPD server. To obtain an
@@ -30,6 +31,9 @@ import java.util.Properties;
  * constructor (singleton model) so the object must be obtained from the
  * connection object.
  * <p>
+ * The getters read the shared status snapshot of {@link MPD#getMPDStatus()},
+ * so reading several of them in a row costs one <code>status</code> request.
+ * <p>
  * @author Bill Findeisen
  * @version 1.0
  */
@@ -40,6 +44,7 @@ public class MPDPlayer {
     private int oldVolume;
     private List<PlayerChangeListener> listeners = new ArrayList<PlayerChangeListener>();
     private List<VolumeChangeListener> volListeners = new ArrayList<VolumeChangeListener>();
+    private final List<Runnable> commandListeners = new CopyOnWriteArrayList<Runnable>();
     //properties value constants
     private static final String MPDPROPXFADE = "MPD_PLAYER_CROSSFADE";
     private static final String MPDPROPCURRSONG = "MPD_PLAYER_CURRENTSONG";
@@ -174,6 +179,40 @@ public class MPDPlayer {
         volListeners.remove(vcl);
     }
 
+    /**
+     * Adds a callback run after each command sent through this player,
+     * whether or not the command changed anything.  Monitors use it to query
+     * the server again soon after a command.
+     * <p>
+     * @param listener the callback to add
+     */
+    public void addCommandListener(Runnable listener) {
+        commandListeners.add(listener);
+    }
+
+    /**
+     * Removes a callback added by {@link #addCommandListener(Runnable)}.
+     * <p>
+     * @param listener the callback to remove
+     */
+    public void removeCommandListener(Runnable listener) {
+        commandListeners.remove(listener);
+    }
+
+    /**
+     * Sends a command changing the player and runs the command listeners
+     * once it completed.
+     */
+    private List<String> sendCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException {
+        try {
+            return (mpd.sendMPDCommand(command));
+        } finally {
+            for (Runnable listener : commandListeners) {
+                listener.run();
+            }
+        }
+    }
+
     /**
      * Sends the appropriate {@link VolumeChangeEvent} to all registered
      * {@link VolumeChangeListener}.
@@ -217,9 +256,9 @@ public class MPDPlayer {
     public void playId(MPDSong song) throws MPDConnectionException, MPDPlayerException {
         try {
             if (song == null) {
-                mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPPLAY), null));
+                sendCommand(makeCommand(prop.getProperty(MPDPROPPLAY), null));
             } else {
-                mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPPLAYID), new String[]{Integer.toString(song.getId())}));
+                sendCommand(makeCommand(prop.getProperty(MPDPROPPLAYID), new String[]{Integer.toString(song.getId())}));
             }
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
@@ -227,14 +266,33 @@ public class MPDPlayer {
             throw new MPDPlayerException(e);
         }
 
+        played();
+    }
+
+    /**
+     * Records a successful play command and fires the matching
+     * {@link PlayerChangeEvent}.
+     */
+    void played() {
         if (status == PlayerStatus.STATUS_STOPPED || status == PlayerStatus.STATUS_PAUSED) {
-            status = PlayerStatus.STATUS_PLAYING;
-            firePlayerChangeEvent(PlayerChangeEvent.PLAYER_STARTED);
+            changeStatus(PlayerStatus.STATUS_PLAYING, PlayerChangeEvent.PLAYER_STARTED);
         } else {
             firePlayerChangeEvent(PlayerChangeEvent.PLAYER_SONG_SET);
         }
     }
 
+    /**
+     * Records the new status of the player and fires a
+     * {@link PlayerChangeEvent}.
+     * <p>
+     * @param newStatus the new status of the player
+     * @param id        the event id to send
+     */
+    void changeStatus(PlayerStatus newStatus, int id) {
+        status = newStatus;
+        firePlayerChangeEvent(id);
+    }
+
     /**
      * Seeks to the desired location in the current song. If the location is
      * larger than the length of the song or is less than 0 then the parameter
@@ -284,7 +342,7 @@ public class MPDPlayer {
                 };
                 try {
                     response
-                            = new ArrayList<String>(mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPSEEKID), params)));
+                            = new ArrayList<String>(sendCommand(makeCommand(prop.getProperty(MPDPROPSEEKID), params)));
                 } catch (MPDResponseException re) {
                     throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
                 }
@@ -297,7 +355,7 @@ public class MPDPlayer {
                 };
                 try {
                     response
-                            = new ArrayList<String>(mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPSEEKID), params)));
+                            = new ArrayList<String>(sendCommand(makeCommand(prop.getProperty(MPDPROPSEEKID), params)));
                 } catch (MPDResponseException re) {
                     throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
                 }
@@ -321,13 +379,12 @@ public class MPDPlayer {
      */
     public void stop() throws MPDConnectionException, MPDPlayerException {
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPSTOP), null));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPSTOP), null));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
 
-        status = PlayerStatus.STATUS_STOPPED;
-        firePlayerChangeEvent(PlayerChangeEvent.PLAYER_STOPPED);
+        changeStatus(PlayerStatus.STATUS_STOPPED, PlayerChangeEvent.PLAYER_STOPPED);
     }
 
     /**
@@ -342,13 +399,12 @@ public class MPDPlayer {
      */
     public void pause() throws MPDConnectionException, MPDPlayerException {
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPPAUSE), null));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPPAUSE), null));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
 
-        status = PlayerStatus.STATUS_PAUSED;
-        firePlayerChangeEvent(PlayerChangeEvent.PLAYER_PAUSED);
+        changeStatus(PlayerStatus.STATUS_PAUSED, PlayerChangeEvent.PLAYER_PAUSED);
 
     }
 
@@ -364,7 +420,7 @@ public class MPDPlayer {
      */
     public void playNext() throws MPDConnectionException, MPDPlayerException {
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPNEXT), null));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPNEXT), null));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -384,7 +440,7 @@ public class MPDPlayer {
      */
     public void playPrev() throws MPDConnectionException, MPDPlayerException {
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPPREV), null));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPPREV), null));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -438,14 +494,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public int getBitrate() throws MPDConnectionException, MPDPlayerException {
-        try {
-            String bitrate = mpd.getStatus(MPD.StatusList.BITRATE);
-            return (Integer.parseInt(bitrate));
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        } catch (NullPointerException npe) {
-            return (0);
-        }
+        return (getMPDStatus().getBitrate());
     }
 
     /**
@@ -461,11 +510,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public int getVolume() throws MPDConnectionException, MPDPlayerException {
-        try {
-            return (Integer.parseInt(mpd.getStatus(MPD.StatusList.VOLUME)));
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
+        return (getMPDStatus().getVolume());
     }
 
     /**
@@ -490,7 +535,7 @@ public class MPDPlayer {
         }
 
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPSETVOL), new String[]{Integer.toString(volume)}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPSETVOL), new String[]{Integer.toString(volume)}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -511,14 +556,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public boolean isRepeat() throws MPDConnectionException, MPDPlayerException {
-        String repeat;
-        try {
-            repeat = mpd.getStatus(MPD.StatusList.REPEAT);
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
-
-        return "1".equals(repeat);
+        return (getMPDStatus().isRepeat());
     }
 
     /**
@@ -541,7 +579,7 @@ public class MPDPlayer {
             repeat = "0";
         }
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPREPEAT), new String[]{repeat}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPREPEAT), new String[]{repeat}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -560,12 +598,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public boolean isSingleMode() throws MPDConnectionException, MPDPlayerException {
-        try {
-            String single = mpd.getStatus(MPD.StatusList.SINGLE);
-            return "1".equals(single);
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
+        return (getMPDStatus().isSingle());
     }
 
     /**
@@ -589,7 +622,7 @@ public class MPDPlayer {
         }
 
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPSINGLE), new String[]{param}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPSINGLE), new String[]{param}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -608,12 +641,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public boolean isConsuming() throws MPDConnectionException, MPDPlayerException {
-        try {
-            String consuming = mpd.getStatus(MPD.StatusList.CONSUME);
-            return "1".equals(consuming);
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
+        return (getMPDStatus().isConsume());
     }
 
     /**
@@ -638,7 +666,7 @@ public class MPDPlayer {
         }
 
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPCONSUME), new String[]{param}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPCONSUME), new String[]{param}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -657,14 +685,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public boolean isRandom() throws MPDConnectionException, MPDPlayerException {
-        String random;
-        try {
-            random = mpd.getStatus(MPD.StatusList.RANDOM);
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
-
-        return "1".equals(random);
+        return (getMPDStatus().isRandom());
     }
 
     /**
@@ -688,7 +709,7 @@ public class MPDPlayer {
             random = "0";
         }
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPRANDOM), new String[]{random}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPRANDOM), new String[]{random}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -735,11 +756,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public int getXFade() throws MPDConnectionException, MPDPlayerException {
-        try {
-            return (Integer.parseInt(mpd.getStatus(MPD.StatusList.XFADE)));
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
+        return (getMPDStatus().getXFade());
     }
 
     /**
@@ -756,7 +773,7 @@ public class MPDPlayer {
      */
     public void setXFade(int xFade) throws MPDConnectionException, MPDPlayerException {
         try {
-            mpd.sendMPDCommand(makeCommand(prop.getProperty(MPDPROPXFADE), new String[]{Integer.toString(xFade)}));
+            sendCommand(makeCommand(prop.getProperty(MPDPROPXFADE), new String[]{Integer.toString(xFade)}));
         } catch (MPDResponseException re) {
             throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
@@ -775,20 +792,7 @@ public class MPDPlayer {
      *                                                          the command
      */
     public long getElapsedTime() throws MPDConnectionException, MPDPlayerException {
-        String time;
-
-        try {
-            time = mpd.getStatus(MPD.StatusList.TIME);
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
-        }
-
-        try {
-            return (Integer.parseInt(time.trim().split(":")[0]));
-        } catch (NullPointerException npe) {
-            return (0);
-        }
-
+        return (getMPDStatus().getElapsedTime());
     }
 
     /**
@@ -807,29 +811,25 @@ public class MPDPlayer {
      */
     public MPDAudioInfo getAudioDetails() throws MPDConnectionException, MPDPlayerException {
         MPDAudioInfo info = null;
-        try {
-            String response = mpd.getStatus(MPD.StatusList.AUDIO);
-            if (response != null) {
-                info = new MPDAudioInfo();
-                String[] split = response.split(":");
-                try {
-                    info.setSampleRate(Integer.parseInt(split[0]));
-                } catch (NumberFormatException nfe) {
-                    info.setSampleRate(-1);
-                }
-                try {
-                    info.setBits(Integer.parseInt(split[1]));
-                } catch (NumberFormatException nfe) {
-                    info.setBits(-1);
-                }
-                try {
-                    info.setChannels(Integer.parseInt(split[2]));
-                } catch (NumberFormatException nfe) {
-                    info.setChannels(-1);
-                }
+        String response = getMPDStatus().getAudio();
+        if (response != null) {
+            info = new MPDAudioInfo();
+            String[] split = response.split(":");
+            try {
+                info.setSampleRate(Integer.parseInt(split[0]));
+            } catch (NumberFormatException nfe) {
+                info.setSampleRate(-1);
+            }
+            try {
+                info.setBits(Integer.parseInt(split[1]));
+            } catch (NumberFormatException nfe) {
+                info.setBits(-1);
+            }
+            try {
+                info.setChannels(Integer.parseInt(split[2]));
+            } catch (NumberFormatException nfe) {
+                info.setChannels(-1);
             }
-        } catch (MPDResponseException re) {
-            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
 
         return info;
@@ -860,13 +860,14 @@ public class MPDPlayer {
      *                                                          the command
      */
     public PlayerStatus getStatus() throws MPDResponseException, MPDConnectionException {
-        String status = mpd.getStatus(MPD.StatusList.STATE);
-        if (status.equalsIgnoreCase(MPD.STATUS_PLAYING)) {
-            return (PlayerStatus.STATUS_PLAYING);
-        } else if (status.equalsIgnoreCase(MPD.STATUS_PAUSED)) {
-            return (PlayerStatus.STATUS_PAUSED);
-        } else {
-            return (PlayerStatus.STATUS_STOPPED);
+        return (mpd.getMPDStatus().getState());
+    }
+
+    private MPDStatus getMPDStatus() throws MPDConnectionException, MPDPlayerException {
+        try {
+            return (mpd.getMPDStatus());
+        } catch (MPDResponseException re) {
+            throw new MPDPlayerException(re.getMessage(), re.getCommand(), re);
         }
     }
 }
@@ -17,8 +17,11 @@ import org.bff.javampd.exception.MPDResponseException;
 import org.bff.javampd.objects.*;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 /**
  * MPDPlaylist represents a playlist controller to a MPD server.  To obtain
@@ -37,11 +40,17 @@ public class MPDPlaylist {
     private int version = -1;
     private MPDDatabase database;
     private List<PlaylistChangeListener> listeners;
+    private final Object mirrorLock = new Object();
+    private List<MPDSong> mirror;
+    private int mirrorVersion = -1;
     private static final String MPDPROPADD = "MPD_PLAYLIST_ADD";
     private static final String MPDPROPCLEAR = "MPD_PLAYLIST_CLEAR";
     private static final String MPDPROPCURRSONG = "MPD_PLAYLIST_CURRSONG";
     private static final String MPDPROPDELETE = "MPD_PLAYLIST_DELETE";
     private static final String MPDPROPCHANGES = "MPD_PLAYLIST_CHANGES";
+    private static final String MPDPROPCHANGESPOSID = "MPD_PLAYLIST_CHANGES_POSID";
+    private static final String RESPONSE_POS = "cpos:";
+    private static final String RESPONSE_ID = "Id:";
     private static final String MPDPROPID = "MPD_PLAYLIST_LIST_ID";
     private static final String MPDPROPINFO = "MPD_PLAYLIST_LIST";
     private static final String MPDPROPLOAD = "MPD_PLAYLIST_LOAD";
@@ -489,23 +498,26 @@ public class MPDPlaylist {
     }
 
     private void updatePlaylist() throws MPDConnectionException, MPDPlaylistException {
-        setVersion(getPlaylistVersion());
+        updatePlaylist(getPlaylistVersion());
+    }
 
-        if (getPlaylistVersion() != oldVersion) {
+    /**
+     * Records the playlist version reported by the server and fires a
+     * {@link PlaylistChangeEvent} if it changed.
+     *
+     * @param playlistVersion the playlist version from the status
+     */
+    void updatePlaylist(int playlistVersion) {
+        setVersion(playlistVersion);
+
+        if (playlistVersion != oldVersion) {
             oldVersion = getVersion();
             firePlaylistChangeEvent(PlaylistChangeEvent.PLAYLIST_CHANGED);
         }
     }
 
     private int getPlaylistVersion() throws MPDConnectionException, MPDPlaylistException {
-        //TODO playlist returning null
-        try {
-            return (Integer.parseInt(mpd.getStatus(MPD.StatusList.PLAYLIST)));
-        } catch (MPDResponseException re) {
-            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDPlaylistException(e);
-        }
+        return (getPlaylistStatus().getPlaylistVersion());
     }
 
     /**
@@ -518,18 +530,8 @@ public class MPDPlaylist {
      *          if there is a problem sending the command
      */
     private List<MPDSong> listSongs() throws MPDConnectionException, MPDPlaylistException {
-        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPINFO));
-        List<String> response;
-
-        try {
-            response = new ArrayList<String>(mpd.sendMPDCommand(command));
-        } catch (MPDResponseException re) {
-            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
-        } catch (Exception e) {
-            throw new MPDPlaylistException(e);
-        }
-
-        List<MPDSong> list = new ArrayList<MPDSong>(mpd.convertResponseToSong(response));
+        List<MPDSong> list = new ArrayList<MPDSong>();
+        streamSongList(list::add);
         return (list);
     }
 
@@ -717,8 +719,14 @@ public class MPDPlaylist {
     }
 
     /**
-     * Returns the list of songs in the playlist.  This does query the MPD server for the list so
-     * care should be taken not to call it excessively.
+     * Returns the list of songs in the playlist.  The playlist is mirrored
+     * locally: the first call reads the whole playlist, later calls only ask
+     * for the entries changed since the mirrored playlist version, so a
+     * one-song change costs one song instead of the whole playlist.  Songs
+     * that only moved are placed by id without reading their tags again.
+     * <p>
+     * The songs are shared with the mirror and their positions are updated
+     * when they move.
      *
      * @return the song list
      * @throws org.bff.javampd.exception.MPDPlaylistException
@@ -727,7 +735,182 @@ public class MPDPlaylist {
      *          if there is a problem sending the command
      */
     public List<MPDSong> getSongList() throws MPDPlaylistException, MPDConnectionException {
-        return listSongs();
+        MPDStatus status = getPlaylistStatus();
+        int current = status.getPlaylistVersion();
+
+        synchronized (mirrorLock) {
+            if (current < 0) {
+                mirror = null;
+                mirrorVersion = -1;
+                return (listSongs());
+            }
+
+            if (mirror == null || current < mirrorVersion) {
+                //a restarted server counts its versions from the start again
+                mirror = listSongs();
+            } else if (current != mirrorVersion) {
+                applyChanges(mirrorVersion);
+            }
+            truncate(status.getPlaylistLength());
+            if (mirror.contains(null)) {
+                mirror = listSongs();
+            }
+            mirrorVersion = current;
+            return (new ArrayList<MPDSong>(mirror));
+        }
+    }
+
+    /**
+     * Brings the mirror up to date with the changes since
+     * <code>since</code>.  If every changed entry is a song already in the
+     * mirror only the positions and ids are read.
+     */
+    private void applyChanges(int since) throws MPDConnectionException, MPDPlaylistException {
+        Map<Integer, MPDSong> songs = new HashMap<Integer, MPDSong>();
+        for (MPDSong song : mirror) {
+            if (song != null) {
+                songs.put(song.getId(), song);
+            }
+        }
+
+        List<int[]> changes = listChangedPositions(since);
+        for (int[] change : changes) {
+            if (!songs.containsKey(change[1])) {
+                MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPCHANGES), Integer.toString(since));
+                try {
+                    mpd.sendMPDSongCommand(command, song -> place(song.getPosition(), song));
+                } catch (MPDResponseException re) {
+                    throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
+                } catch (Exception e) {
+                    throw new MPDPlaylistException(e);
+                }
+                return;
+            }
+        }
+
+        for (int[] change : changes) {
+            MPDSong song = songs.get(change[1]);
+            song.setPosition(change[0]);
+            place(change[0], song);
+        }
+    }
+
+    /**
+     * Returns the position and id of each entry changed since
+     * <code>since</code>.
+     */
+    private List<int[]> listChangedPositions(int since) throws MPDConnectionException, MPDPlaylistException {
+        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPCHANGESPOSID), Integer.toString(since));
+        List<String> response;
+        try {
+            response = mpd.sendMPDCommand(command);
+        } catch (MPDResponseException re) {
+            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDPlaylistException(e);
+        }
+
+        List<int[]> changes = new ArrayList<int[]>();
+        int pos = -1;
+        for (String line : response) {
+            if (line.startsWith(RESPONSE_POS)) {
+                pos = Integer.parseInt(line.substring(RESPONSE_POS.length()).trim());
+            } else if (line.startsWith(RESPONSE_ID) && pos > -1) {
+                changes.add(new int[]{pos, Integer.parseInt(line.substring(RESPONSE_ID.length()).trim())});
+                pos = -1;
+            }
+        }
+        return (changes);
+    }
+
+    private void place(int position, MPDSong song) {
+        while (mirror.size() <= position) {
+            mirror.add(null);
+        }
+        mirror.set(position, song);
+    }
+
+    private void truncate(int length) {
+        if (length > -1 && mirror.size() > length) {
+            mirror.subList(length, mirror.size()).clear();
+        }
+    }
+
+    private MPDStatus getPlaylistStatus() throws MPDConnectionException, MPDPlaylistException {
+        try {
+            return (mpd.getMPDStatus());
+        } catch (MPDResponseException re) {
+            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDPlaylistException(e);
+        }
+    }
+
+    /**
+     * Returns the songs of the playlist from position <code>start</code> up
+     * to but not including <code>end</code>.  The server only sends the songs
+     * of the window and the mirror of {@link #getSongList()} is not used.
+     *
+     * @param start the position of the first song
+     * @param end   the position after the last song
+     * @return the songs of the window
+     * @throws org.bff.javampd.exception.MPDPlaylistException
+     *          if the MPD responded with an error
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public List<MPDSong> getSongList(int start, int end) throws MPDPlaylistException, MPDConnectionException {
+        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPINFO), MPDSongPager.range(start, end));
+        List<MPDSong> list = new ArrayList<MPDSong>();
+
+        try {
+            mpd.sendMPDSongCommand(command, list::add);
+        } catch (MPDResponseException re) {
+            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDPlaylistException(e);
+        }
+        return (list);
+    }
+
+    /**
+     * Returns a {@link MPDSongPager} reading the songs of the playlist a page
+     * at a time, see {@link #getSongList(int, int)}.
+     *
+     * @param pageSize the number of songs per page
+     * @return the pager, already reading the first page
+     */
+    public MPDSongPager getSongPages(int pageSize) {
+        return (new MPDSongPager(pageSize, (start, end) -> {
+            MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPINFO), MPDSongPager.range(start, end));
+            final List<MPDSong> list = new ArrayList<MPDSong>();
+            return (MPDAsync.adapt(mpd.sendMPDSongCommandAsync(command, list::add), done -> list,
+                    MPDAsyncPlaylist::translate));
+        }, MPDAsyncPlaylist::translate));
+    }
+
+    /**
+     * Passes each song of the playlist to <code>songHandler</code> as soon as
+     * it is read instead of building the whole list first.  If the connection
+     * uses a {@link MPDEventLoop} the handler is called on its I/O thread and
+     * must not block.
+     *
+     * @param songHandler receives the songs in playlist order
+     * @throws org.bff.javampd.exception.MPDPlaylistException
+     *          if the MPD responded with an error or the handler fails
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command
+     */
+    public void streamSongList(Consumer<MPDSong> songHandler) throws MPDPlaylistException, MPDConnectionException {
+        MPDCommand command = new MPDCommand(prop.getProperty(MPDPROPINFO));
+
+        try {
+            mpd.sendMPDSongCommand(command, songHandler);
+        } catch (MPDResponseException re) {
+            throw new MPDPlaylistException(re.getMessage(), re.getCommand(), re);
+        } catch (Exception e) {
+            throw new MPDPlaylistException(e);
+        }
     }
 
     /**
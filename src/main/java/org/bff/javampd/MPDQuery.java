@@ -0,0 +1,186 @@
+/*
+ * MPDQuery.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.MPDDatabase.ScopeType;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * MPDQuery combines several tag clauses into one <code>find</code> or
+ * <code>search</code> command, so the server only returns the songs matching
+ * all of them:
+ * <pre>
+ * database.find(new MPDQuery()
+ *         .where(ScopeType.ARTIST, "Queen")
+ *         .where(ScopeType.ALBUM, "Greatest Hits"));
+ * </pre>
+ * sends <code>find artist Queen album "Greatest Hits"</code> instead of
+ * reading every album of that name and filtering it on the client.
+ * <p>
+ * The protocol cannot compare dates, so a {@link #yearBetween(int, int) year
+ * range} is checked as the songs matching the clauses are read; songs
+ * outside the range are dropped without being collected.
+ */
+public class MPDQuery {
+
+    private final List<ScopeType> scopes = new ArrayList<ScopeType>();
+    private final List<String> values = new ArrayList<String>();
+    private int startYear = -1;
+    private int endYear = -1;
+
+    /**
+     * Adds a clause the songs must match.
+     *
+     * @param scope the tag to match
+     * @param value the value of the tag, matched exactly by <code>find</code>
+     *              and in part by <code>search</code>
+     * @return this query
+     */
+    public MPDQuery where(ScopeType scope, String value) {
+        if (scope == null || value == null) {
+            throw new IllegalArgumentException("Scope and value must not be null");
+        }
+
+        scopes.add(scope);
+        values.add(value);
+        return (this);
+    }
+
+    /**
+     * Restricts the songs to those dated within the years, both included.
+     * The year is read from the start of the date tag, so
+     * <code>1977-10-07</code> counts as 1977; songs without a date never
+     * match.
+     *
+     * @param startYear the first year
+     * @param endYear   the last year
+     * @return this query
+     */
+    public MPDQuery yearBetween(int startYear, int endYear) {
+        if (startYear < 0 || endYear < startYear) {
+            throw new IllegalArgumentException("Invalid year range " + startYear + "-" + endYear);
+        }
+
+        this.startYear = startYear;
+        this.endYear = endYear;
+        return (this);
+    }
+
+    /**
+     * Returns true if the query restricts the years.
+     *
+     * @return true if a year range is set
+     */
+    public boolean hasYearRange() {
+        return (startYear > -1);
+    }
+
+    /**
+     * Returns true if the song lies within the year range, or if no range
+     * is set.
+     *
+     * @param song the song to check
+     * @return true if the song matches the range
+     */
+    public boolean matchesYear(MPDSong song) {
+        if (!hasYearRange()) {
+            return (true);
+        }
+
+        int year = parseYear(song.getYear());
+        return (year >= startYear && year <= endYear);
+    }
+
+    /**
+     * Passes on only the songs within the year range.
+     *
+     * @param songHandler receives the matching songs
+     * @return the handler to read the songs with
+     */
+    Consumer<MPDSong> filter(final Consumer<MPDSong> songHandler) {
+        if (!hasYearRange()) {
+            return (songHandler);
+        }
+        return (song -> {
+            if (matchesYear(song)) {
+                songHandler.accept(song);
+            }
+        });
+    }
+
+    /**
+     * Reads the year from the leading digits of a date without creating
+     * strings.
+     *
+     * @param date the date tag
+     * @return the year or -1 if the date does not start with a digit
+     */
+    static int parseYear(String date) {
+        if (date == null) {
+            return (-1);
+        }
+
+        int year = -1;
+        for (int i = 0; i < date.length(); i++) {
+            int digit = date.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            year = (year < 0 ? 0 : year * 10) + digit;
+        }
+        return (year);
+    }
+
+    /**
+     * Returns the tags of the clauses in the order they were added.
+     *
+     * @return the tags
+     */
+    public List<ScopeType> getScopes() {
+        return (Collections.unmodifiableList(scopes));
+    }
+
+    /**
+     * Returns the values of the clauses in the order they were added.
+     *
+     * @return the values
+     */
+    public List<String> getValues() {
+        return (Collections.unmodifiableList(values));
+    }
+
+    /**
+     * Returns true if neither a clause nor a year range was added.
+     *
+     * @return true if the query is empty
+     */
+    public boolean isEmpty() {
+        return (scopes.isEmpty() && !hasYearRange());
+    }
+
+    /**
+     * Returns the parameters of the command: each tag followed by its value.
+     *
+     * @return the command parameters
+     */
+    String[] toParams() {
+        String[] params = new String[scopes.size() * 2];
+        for (int i = 0; i < scopes.size(); i++) {
+            params[i * 2] = scopes.get(i).getType();
+            params[i * 2 + 1] = values.get(i);
+        }
+        return (params);
+    }
+
+    @Override
+    public String toString() {
+        String clauses = String.join(" ", toParams());
+        return (hasYearRange() ? clauses + " years " + startYear + "-" + endYear : clauses);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * MPDSongPager.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDSong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * MPDSongPager reads the answer to a query one page at a time using the
+ * <code>start:end</code> window of the protocol, so showing the first rows
+ * does not wait for the whole result to be read and parsed.  Obtain one from
+ * {@link MPDDatabase#findPages(MPDQuery, int)},
+ * {@link MPDDatabase#searchPages(MPDQuery, int)},
+ * {@link MPDDatabase#listPlaylistSongPages(String, int)} or
+ * {@link MPDPlaylist#getSongPages(int)}:
+ * <pre>
+ * MPDSongPager pager = database.searchPages(query, 50);
+ * while (pager.hasNext()) {
+ *     show(pager.next());
+ * }
+ * </pre>
+ * The first page is requested when the pager is created.  Whenever a full
+ * page is returned the following one is requested in the background, so
+ * it is usually read by the time it is asked for.  A page shorter than the
+ * page size ends the paging; if the number of songs is a multiple of the
+ * page size the last page is empty.
+ * <p>
+ * Results the server cannot window, such as queries with a year range, are
+ * read with a single streamed command; each page completes as soon as its
+ * songs have arrived.
+ */
+public class MPDSongPager {
+
+    private final int pageSize;
+    private final PageLoader loader;
+    private final Function<Throwable, ? extends MPDResponseException> translate;
+    private CompletableFuture<List<MPDSong>> page;
+    private int position;
+    private boolean done;
+
+    /**
+     * Requests a window of songs.
+     */
+    interface PageLoader {
+
+        /**
+         * Starts reading the songs from <code>start</code> up to but not
+         * including <code>end</code>.
+         *
+         * @param start the position of the first song
+         * @param end   the position after the last song
+         * @return the future songs
+         */
+        CompletableFuture<List<MPDSong>> load(int start, int end) throws MPDConnectionException, MPDResponseException;
+    }
+
+    /**
+     * Starts a command streaming all songs of a result.
+     */
+    interface SongStream {
+
+        /**
+         * Sends the command without waiting for its response.
+         *
+         * @param songHandler receives the songs in response order
+         * @return the future completed after the last song
+         */
+        CompletableFuture<Void> start(Consumer<MPDSong> songHandler) throws MPDConnectionException, MPDResponseException;
+    }
+
+    /**
+     * Serves the pages from one streamed result, reading it only once.  The
+     * songs of pages already served are dropped.
+     */
+    static final class StreamedLoader implements PageLoader {
+
+        private final SongStream stream;
+        private final List<MPDSong> songs = new ArrayList<MPDSong>();
+        private int first;
+        private boolean started;
+        private boolean finished;
+        private Throwable error;
+        private int pendingStart;
+        private int pendingEnd;
+        private CompletableFuture<List<MPDSong>> pending;
+
+        StreamedLoader(SongStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public CompletableFuture<List<MPDSong>> load(int start, int end) throws MPDConnectionException, MPDResponseException {
+            CompletableFuture<List<MPDSong>> page = new CompletableFuture<List<MPDSong>>();
+            boolean send;
+            synchronized (this) {
+                int drop = Math.min(start, first + songs.size()) - first;
+                if (drop > 0) {
+                    songs.subList(0, drop).clear();
+                    first += drop;
+                }
+                pendingStart = start;
+                pendingEnd = end;
+                pending = page;
+                send = !started;
+                started = true;
+                serve();
+            }
+            if (send) {
+                try {
+                    stream.start(this::add).whenComplete((done, failure) -> finish(failure));
+                } catch (MPDConnectionException | MPDResponseException e) {
+                    finish(e);
+                }
+            }
+            return (page);
+        }
+
+        private synchronized void add(MPDSong song) {
+            songs.add(song);
+            serve();
+        }
+
+        private synchronized void finish(Throwable failure) {
+            finished = true;
+            error = failure;
+            serve();
+        }
+
+        /**
+         * Completes the pending page once all of its songs were read or the
+         * result ended.
+         */
+        private void serve() {
+            if (pending == null || (!finished && first + songs.size() < pendingEnd)) {
+                return;
+            }
+
+            CompletableFuture<List<MPDSong>> page = pending;
+            pending = null;
+            if (error != null) {
+                page.completeExceptionally(error);
+            } else {
+                page.complete(slice(songs, pendingStart - first, pendingEnd - first));
+            }
+        }
+    }
+
+    /**
+     * Creates a pager and requests the first page.
+     *
+     * @param pageSize  the number of songs per page
+     * @param loader    requests the pages
+     * @param translate turns failures into the exception of the caller
+     */
+    MPDSongPager(int pageSize, PageLoader loader, Function<Throwable, ? extends MPDResponseException> translate) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+
+        this.pageSize = pageSize;
+        this.loader = loader;
+        this.translate = translate;
+        this.page = request(0);
+    }
+
+    /**
+     * Returns true until a page shorter than the page size was returned.
+     *
+     * @return true if there may be more songs
+     */
+    public synchronized boolean hasNext() {
+        return (!done);
+    }
+
+    /**
+     * Returns the next page and requests the one after it.
+     *
+     * @return the songs of the page, at most the page size
+     * @throws MPDConnectionException if there is a problem with the connection
+     * @throws MPDResponseException   if the server rejects the query
+     * @throws NoSuchElementException if the last page was already returned
+     */
+    public synchronized List<MPDSong> next() throws MPDConnectionException, MPDResponseException {
+        if (done) {
+            throw new NoSuchElementException("No more pages");
+        }
+
+        List<MPDSong> songs = await(page);
+        position += songs.size();
+        if (songs.size() < pageSize) {
+            done = true;
+            page = null;
+        } else {
+            page = request(position);
+        }
+        return (songs);
+    }
+
+    /**
+     * Returns the number of songs per page.
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+        return (pageSize);
+    }
+
+    /**
+     * Returns the position of the first song of the next page.
+     *
+     * @return the number of songs returned so far
+     */
+    public synchronized int getPosition() {
+        return (position);
+    }
+
+    private CompletableFuture<List<MPDSong>> request(int start) {
+        try {
+            return (loader.load(start, start + pageSize));
+        } catch (MPDConnectionException | MPDResponseException e) {
+            CompletableFuture<List<MPDSong>> failed = new CompletableFuture<List<MPDSong>>();
+            failed.completeExceptionally(e);
+            return (failed);
+        }
+    }
+
+    private List<MPDSong> await(CompletableFuture<List<MPDSong>> request) throws MPDConnectionException, MPDResponseException {
+        try {
+            return (request.get());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MPDConnectionException("Interrupted while waiting for page", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause() instanceof CompletionException && ee.getCause().getCause() != null
+                    ? ee.getCause().getCause() : ee.getCause();
+            if (cause instanceof MPDConnectionException) {
+                throw (MPDConnectionException) cause;
+            }
+            throw translate.apply(cause);
+        }
+    }
+
+    /**
+     * Returns the window parameter of a command.
+     *
+     * @param start the position of the first song
+     * @param end   the position after the last song
+     * @return the window as <code>start:end</code>
+     */
+    static String range(int start, int end) {
+        if (start < 0 || end <= start) {
+            throw new IllegalArgumentException("Invalid window " + start + ":" + end);
+        }
+        return (start + ":" + end);
+    }
+
+    /**
+     * Returns a copy of the songs within the window.
+     *
+     * @param songs the songs
+     * @param start the position of the first song
+     * @param end   the position after the last song
+     * @return the songs of the window
+     */
+    static List<MPDSong> slice(List<MPDSong> songs, int start, int end) {
+        range(start, end);
+        if (start >= songs.size()) {
+            return (new ArrayList<MPDSong>());
+        }
+        return (new ArrayList<MPDSong>(songs.subList(start, Math.min(end, songs.size()))));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * MPDSongParser.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.objects.MPDAlbum;
+import org.bff.javampd.objects.MPDArtist;
+import org.bff.javampd.objects.MPDSong;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * MPDSongParser converts response lines into {@link MPDSong}s one record at a
+ * time.  A song starts with a <code>file:</code> line and ends at the next one
+ * or at the end of the response.  Each song is passed on as soon as it is
+ * complete so only the song being read is held in memory; lines before the
+ * first <code>file:</code> line are ignored.
+ * <p>
+ * Lines are parsed from the raw bytes: the key up to the colon is matched by
+ * its length and first bytes, numbers are read without creating strings and
+ * only the values of known keys are decoded.
+ */
+class MPDSongParser implements MPDByteLineHandler {
+
+    private static final int FILE = 0;
+    private static final int ARTIST = 1;
+    private static final int ALBUM = 2;
+    private static final int TRACK = 3;
+    private static final int TITLE = 4;
+    private static final int DATE = 5;
+    private static final int GENRE = 6;
+    private static final int COMMENT = 7;
+    private static final int TIME = 8;
+    private static final int POS = 9;
+    private static final int ID = 10;
+    private static final int DISC = 11;
+    private static final int NAME = 12;
+    private static final int UNKNOWN = -1;
+    /**
+     * The keys indexed by field, without the colon.
+     */
+    private static final byte[][] KEYS = {
+            key(MPD.SONGPREFIXFILE), key(MPD.SONGPREFIXARTIST), key(MPD.SONGPREFIXALBUM),
+            key(MPD.SONGPREFIXTRACK), key(MPD.SONGPREFIXTITLE), key(MPD.SONGPREFIXDATE),
+            key(MPD.SONGPREFIXGENRE), key(MPD.SONGPREFIXCOMMENT), key(MPD.SONGPREFIXTIME),
+            key(MPD.SONGPREFIXPOS), key(MPD.SONGPREFIXID), key(MPD.SONGPREFIXDISC),
+            key(MPD.SONGPREFIXNAME)
+    };
+
+    private final Consumer<MPDSong> songHandler;
+    private MPDSong song;
+
+    /**
+     * Creates a parser passing the songs to <code>songHandler</code>.
+     *
+     * @param songHandler receives the parsed songs in response order
+     */
+    MPDSongParser(Consumer<MPDSong> songHandler) {
+        this.songHandler = songHandler;
+    }
+
+    @Override
+    public void accept(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        accept(bytes, 0, bytes.length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(byte[] buffer, int offset, int length, Charset charset) {
+        int colon = indexOf(buffer, offset, offset + length, (byte) ':');
+        if (colon < 0) {
+            return;
+        }
+
+        int field = field(buffer, offset, colon - offset);
+        if (field == FILE) {
+            finish();
+            song = new MPDSong();
+        } else if (field == UNKNOWN || song == null) {
+            return;
+        }
+
+        int end = offset + length;
+        int start = colon + 1;
+        while (start < end && buffer[start] <= ' ') {
+            ++start;
+        }
+        while (end > start && buffer[end - 1] <= ' ') {
+            --end;
+        }
+        setField(field, buffer, start, end, charset);
+    }
+
+    /**
+     * Passes on the last song of the response.  Must be called once the whole
+     * response has been read.
+     */
+    void finish() {
+        if (song != null) {
+            MPDSong completed = song;
+            song = null;
+            songHandler.accept(completed);
+        }
+    }
+
+    private void setField(int field, byte[] buffer, int start, int end, Charset charset) {
+        switch (field) {
+            case FILE:
+                song.setFile(decode(buffer, start, end, charset));
+                break;
+            case ARTIST:
+                song.setArtist(new MPDArtist(decode(buffer, start, end, charset)));
+                break;
+            case ALBUM:
+                song.setAlbum(new MPDAlbum(decode(buffer, start, end, charset)));
+                break;
+            case TRACK:
+                int slash = indexOf(buffer, start, end, (byte) '/');
+                try {
+                    song.setTrack(parseInt(buffer, start, slash < 0 ? end : slash));
+                } catch (NumberFormatException nfe) {
+                    song.setTrack(0);
+                }
+                break;
+            case TITLE:
+                song.setTitle(decode(buffer, start, end, charset));
+                break;
+            case DATE:
+                song.setYear(decode(buffer, start, end, charset));
+                break;
+            case GENRE:
+                song.setGenre(decode(buffer, start, end, charset));
+                break;
+            case COMMENT:
+                song.setComment(decode(buffer, start, end, charset));
+                break;
+            case TIME:
+                song.setLength(parseInt(buffer, start, end));
+                break;
+            case POS:
+                song.setPosition(parseInt(buffer, start, end));
+                break;
+            case ID:
+                song.setId(parseInt(buffer, start, end));
+                break;
+            case DISC:
+                song.setDiscNumber(decode(buffer, start, end, charset));
+                break;
+            case NAME:
+                song.setName(decode(buffer, start, end, charset));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Maps a key to its field.  The length and first byte select the only
+     * candidate, which is then compared in full.
+     */
+    private static int field(byte[] buffer, int offset, int length) {
+        int candidate;
+        switch (length) {
+            case 2:
+                candidate = ID;
+                break;
+            case 3:
+                candidate = POS;
+                break;
+            case 4:
+                switch (buffer[offset]) {
+                    case 'f':
+                        candidate = FILE;
+                        break;
+                    case 'T':
+                        candidate = TIME;
+                        break;
+                    case 'N':
+                        candidate = NAME;
+                        break;
+                    case 'D':
+                        candidate = buffer[offset + 1] == 'a' ? DATE : DISC;
+                        break;
+                    default:
+                        return (UNKNOWN);
+                }
+                break;
+            case 5:
+                switch (buffer[offset]) {
+                    case 'A':
+                        candidate = ALBUM;
+                        break;
+                    case 'G':
+                        candidate = GENRE;
+                        break;
+                    case 'T':
+                        candidate = buffer[offset + 1] == 'r' ? TRACK : TITLE;
+                        break;
+                    default:
+                        return (UNKNOWN);
+                }
+                break;
+            case 6:
+                candidate = ARTIST;
+                break;
+            case 7:
+                candidate = COMMENT;
+                break;
+            default:
+                return (UNKNOWN);
+        }
+
+        byte[] key = KEYS[candidate];
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != key[i]) {
+                return (UNKNOWN);
+            }
+        }
+        return (candidate);
+    }
+
+    private static int parseInt(byte[] buffer, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("Empty number");
+        }
+        boolean negative = buffer[start] == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a number: " + new String(buffer, start, end - start,
+                        StandardCharsets.US_ASCII));
+            }
+            value = value * 10 + digit;
+        }
+        return (negative ? -value : value);
+    }
+
+    private static String decode(byte[] buffer, int start, int end, Charset charset) {
+        return (new String(buffer, start, end - start, charset));
+    }
+
+    private static int indexOf(byte[] buffer, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == value) {
+                return (i);
+            }
+        }
+        return (-1);
+    }
+
+    private static byte[] key(String prefix) {
+        return (prefix.substring(0, prefix.length() - 1).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * MPDStats.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.MPD.StatList;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * MPDStats is an immutable snapshot of the reply to a <code>stats</code>
+ * command.  Values the server did not report are -1.  Obtain an instance
+ * with {@link MPD#getMPDStats()}.
+ */
+public class MPDStats {
+
+    private final int artists;
+    private final int albums;
+    private final int songs;
+    private final long uptime;
+    private final long playtime;
+    private final long dbPlaytime;
+    private final long dbUpdate;
+
+    private MPDStats(Parser parser) {
+        this.artists = (int) parser.values[StatList.ARTISTS.ordinal()];
+        this.albums = (int) parser.values[StatList.ALBUMS.ordinal()];
+        this.songs = (int) parser.values[StatList.SONGS.ordinal()];
+        this.uptime = parser.values[StatList.UPTIME.ordinal()];
+        this.playtime = parser.values[StatList.PLAYTIME.ordinal()];
+        this.dbPlaytime = parser.values[StatList.DBPLAYTIME.ordinal()];
+        this.dbUpdate = parser.values[StatList.DBUPDATE.ordinal()];
+    }
+
+    /**
+     * Parses the response of the <code>stats</code> command.
+     *
+     * @param response the response from the MPD server
+     * @return the statistics
+     */
+    static MPDStats parse(List<String> response) {
+        Parser parser = new Parser();
+        for (String line : response) {
+            parser.accept(line);
+        }
+        return (parser.build());
+    }
+
+    /**
+     * Returns the number of artists in the database.
+     *
+     * @return the number of artists
+     */
+    public int getArtists() {
+        return (artists);
+    }
+
+    /**
+     * Returns the number of albums in the database.
+     *
+     * @return the number of albums
+     */
+    public int getAlbums() {
+        return (albums);
+    }
+
+    /**
+     * Returns the number of songs in the database.
+     *
+     * @return the number of songs
+     */
+    public int getSongs() {
+        return (songs);
+    }
+
+    /**
+     * Returns the daemon uptime.
+     *
+     * @return the uptime in seconds
+     */
+    public long getUptime() {
+        return (uptime);
+    }
+
+    /**
+     * Returns the time length of the music played since the server started.
+     *
+     * @return the playtime in seconds
+     */
+    public long getPlaytime() {
+        return (playtime);
+    }
+
+    /**
+     * Returns the sum of all song times in the database.
+     *
+     * @return the database playtime in seconds
+     */
+    public long getDbPlaytime() {
+        return (dbPlaytime);
+    }
+
+    /**
+     * Returns the last database update.
+     *
+     * @return the last update in UNIX time
+     */
+    public long getDbUpdate() {
+        return (dbUpdate);
+    }
+
+    /**
+     * Parses the lines of a <code>stats</code> response straight from the
+     * bytes received.  Keys are matched against the {@link StatList} without
+     * decoding them and the numbers are read in place.
+     */
+    static class Parser implements MPDByteLineHandler {
+
+        private static final StatList[] KEYS = StatList.values();
+        /**
+         * The keys indexed by ordinal, including the colon.
+         */
+        private static final byte[][] KEY_BYTES = new byte[KEYS.length][];
+
+        static {
+            for (int i = 0; i < KEYS.length; i++) {
+                KEY_BYTES[i] = KEYS[i].getStatPrefix().getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        private final long[] values = new long[KEYS.length];
+
+        Parser() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = -1;
+            }
+        }
+
+        @Override
+        public void accept(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            accept(bytes, 0, bytes.length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void accept(byte[] buffer, int offset, int length, Charset charset) {
+            int end = offset + length;
+            int colon = offset;
+            while (colon < end && buffer[colon] != ':') {
+                ++colon;
+            }
+            if (colon == end) {
+                return;
+            }
+
+            int key = key(buffer, offset, colon + 1 - offset);
+            if (key >= 0) {
+                values[key] = parseLong(buffer, colon + 1, end);
+            }
+        }
+
+        /**
+         * Returns the statistics parsed so far.
+         *
+         * @return the statistics
+         */
+        MPDStats build() {
+            return (new MPDStats(this));
+        }
+
+        private static int key(byte[] buffer, int offset, int length) {
+            for (int i = 0; i < KEY_BYTES.length; i++) {
+                byte[] key = KEY_BYTES[i];
+                if (key.length != length) {
+                    continue;
+                }
+                int j = 0;
+                while (j < length && buffer[offset + j] == key[j]) {
+                    ++j;
+                }
+                if (j == length) {
+                    return (i);
+                }
+            }
+            return (-1);
+        }
+
+        private static long parseLong(byte[] buffer, int from, int end) {
+            while (from < end && buffer[from] == ' ') {
+                ++from;
+            }
+            while (end > from && buffer[end - 1] == ' ') {
+                --end;
+            }
+            if (from == end) {
+                return (-1);
+            }
+
+            long value = 0;
+            for (int i = from; i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return (-1);
+                }
+                value = value * 10 + digit;
+            }
+            return (value);
+        }
+    }
+}
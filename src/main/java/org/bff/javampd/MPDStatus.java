@@ -0,0 +1,463 @@
+/*
+ * MPDStatus.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.MPD.StatusList;
+import org.bff.javampd.MPDPlayer.PlayerStatus;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * MPDStatus is an immutable snapshot of the reply to a <code>status</code>
+ * command.  Values the server did not report are -1 for numbers, except for
+ * the bitrate, the cross fade and the times which are 0, and
+ * <code>null</code> for strings.  Obtain an instance with
+ * {@link MPD#getMPDStatus()}.  The reply is parsed straight from the bytes
+ * received into primitive fields, without an intermediate map.
+ */
+public class MPDStatus {
+
+    private final PlayerStatus state;
+    private final int volume;
+    private final boolean repeat;
+    private final boolean random;
+    private final boolean single;
+    private final boolean consume;
+    private final int playlistVersion;
+    private final int playlistLength;
+    private final int song;
+    private final int songId;
+    private final long elapsedTime;
+    private final long elapsedMillis;
+    private final long totalTime;
+    private final int bitrate;
+    private final int xfade;
+    private final String audio;
+    private final int updatingDb;
+    private final String error;
+
+    private MPDStatus(Parser parser) {
+        this.state = parser.state;
+        this.volume = parser.volume;
+        this.repeat = parser.repeat;
+        this.random = parser.random;
+        this.single = parser.single;
+        this.consume = parser.consume;
+        this.playlistVersion = parser.playlistVersion;
+        this.playlistLength = parser.playlistLength;
+        this.song = parser.song;
+        this.songId = parser.songId;
+        this.elapsedTime = parser.elapsedTime;
+        this.elapsedMillis = parser.elapsedMillis < 0 ? parser.elapsedTime * 1000 : parser.elapsedMillis;
+        this.totalTime = parser.totalTime;
+        this.bitrate = parser.bitrate;
+        this.xfade = parser.xfade;
+        this.audio = parser.audio;
+        this.updatingDb = parser.updatingDb;
+        this.error = parser.error;
+    }
+
+    /**
+     * Parses the response of the <code>status</code> command.
+     *
+     * @param response the response from the MPD server
+     * @return the status
+     */
+    static MPDStatus parse(List<String> response) {
+        Parser parser = new Parser();
+        for (String line : response) {
+            parser.accept(line);
+        }
+        return (parser.build());
+    }
+
+    /**
+     * Returns the state of the player.
+     *
+     * @return the state of the player
+     */
+    public PlayerStatus getState() {
+        return (state);
+    }
+
+    /**
+     * Returns the volume.
+     *
+     * @return the volume (0-100), -1 if the server has no mixer
+     */
+    public int getVolume() {
+        return (volume);
+    }
+
+    /**
+     * Returns true if the player repeats the playlist.
+     *
+     * @return true if repeating
+     */
+    public boolean isRepeat() {
+        return (repeat);
+    }
+
+    /**
+     * Returns true if the player plays the playlist in random order.
+     *
+     * @return true if random
+     */
+    public boolean isRandom() {
+        return (random);
+    }
+
+    /**
+     * Returns true if the player stops after the current song.
+     *
+     * @return true in single mode
+     */
+    public boolean isSingle() {
+        return (single);
+    }
+
+    /**
+     * Returns true if songs are removed from the playlist once played.
+     *
+     * @return true if consuming
+     */
+    public boolean isConsume() {
+        return (consume);
+    }
+
+    /**
+     * Returns the version of the playlist, which changes with every
+     * modification.
+     *
+     * @return the playlist version
+     */
+    public int getPlaylistVersion() {
+        return (playlistVersion);
+    }
+
+    /**
+     * Returns the number of songs in the playlist.
+     *
+     * @return the playlist length
+     */
+    public int getPlaylistLength() {
+        return (playlistLength);
+    }
+
+    /**
+     * Returns the playlist position of the current song.
+     *
+     * @return the position, -1 if there is no current song
+     */
+    public int getSong() {
+        return (song);
+    }
+
+    /**
+     * Returns the playlist id of the current song.
+     *
+     * @return the id, -1 if there is no current song
+     */
+    public int getSongId() {
+        return (songId);
+    }
+
+    /**
+     * Returns the elapsed time of the current song.
+     *
+     * @return the elapsed time in seconds
+     */
+    public long getElapsedTime() {
+        return (elapsedTime);
+    }
+
+    /**
+     * Returns the elapsed time of the current song in milliseconds, as
+     * precise as the server reports it.
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return (elapsedMillis);
+    }
+
+    /**
+     * Returns the length of the current song.
+     *
+     * @return the length in seconds, 0 if unknown
+     */
+    public long getTotalTime() {
+        return (totalTime);
+    }
+
+    /**
+     * Returns the instantaneous bitrate.
+     *
+     * @return the bitrate in kbps, 0 if no song is playing
+     */
+    public int getBitrate() {
+        return (bitrate);
+    }
+
+    /**
+     * Returns the cross fade.
+     *
+     * @return the cross fade in seconds
+     */
+    public int getXFade() {
+        return (xfade);
+    }
+
+    /**
+     * Returns the audio format as reported by the server.
+     *
+     * @return the sample rate, bits and channels separated by colons or null
+     *         if no song is playing
+     */
+    public String getAudio() {
+        return (audio);
+    }
+
+    /**
+     * Returns the job id of a running database update.
+     *
+     * @return the job id, -1 if no update is running
+     */
+    public int getUpdatingDb() {
+        return (updatingDb);
+    }
+
+    /**
+     * Returns the error message of the server.
+     *
+     * @return the error or null if there is none
+     */
+    public String getError() {
+        return (error);
+    }
+
+    /**
+     * Parses the lines of a <code>status</code> response straight from the
+     * bytes received into the fields of a {@link MPDStatus}.  Keys are matched
+     * against the {@link StatusList} without decoding them and numbers are
+     * read in place; only the audio format and the error are decoded.
+     */
+    static class Parser implements MPDByteLineHandler {
+
+        private static final StatusList[] KEYS = StatusList.values();
+        private static final byte[][] KEY_BYTES = new byte[KEYS.length][];
+        private static final byte[] PLAY = MPD.STATUS_PLAYING.getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PAUSE = MPD.STATUS_PAUSED.getBytes(StandardCharsets.US_ASCII);
+
+        static {
+            for (int i = 0; i < KEYS.length; i++) {
+                KEY_BYTES[i] = KEYS[i].getStatusPrefix().getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        private PlayerStatus state = PlayerStatus.STATUS_STOPPED;
+        private int volume = -1;
+        private boolean repeat;
+        private boolean random;
+        private boolean single;
+        private boolean consume;
+        private int playlistVersion = -1;
+        private int playlistLength = -1;
+        private int song = -1;
+        private int songId = -1;
+        private long elapsedTime;
+        private long elapsedMillis = -1;
+        private long totalTime;
+        private int bitrate;
+        private int xfade;
+        private String audio;
+        private int updatingDb = -1;
+        private String error;
+
+        @Override
+        public void accept(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            accept(bytes, 0, bytes.length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void accept(byte[] buffer, int offset, int length, Charset charset) {
+            int end = offset + length;
+            int colon = indexOf(buffer, offset, end, (byte) ':');
+            if (colon < 0) {
+                return;
+            }
+            StatusList key = key(buffer, offset, colon - offset);
+            if (key == null) {
+                return;
+            }
+
+            int from = colon + 1;
+            while (from < end && buffer[from] == ' ') {
+                ++from;
+            }
+            while (end > from && buffer[end - 1] == ' ') {
+                --end;
+            }
+
+            switch (key) {
+                case VOLUME:
+                    volume = parseInt(buffer, from, end, -1);
+                    break;
+                case REPEAT:
+                    repeat = isOne(buffer, from, end);
+                    break;
+                case RANDOM:
+                    random = isOne(buffer, from, end);
+                    break;
+                case SINGLE:
+                    single = isOne(buffer, from, end);
+                    break;
+                case CONSUME:
+                    consume = isOne(buffer, from, end);
+                    break;
+                case PLAYLIST:
+                    playlistVersion = parseInt(buffer, from, end, -1);
+                    break;
+                case PLAYLISTLENGTH:
+                    playlistLength = parseInt(buffer, from, end, -1);
+                    break;
+                case STATE:
+                    if (matches(buffer, from, end, PLAY)) {
+                        state = PlayerStatus.STATUS_PLAYING;
+                    } else if (matches(buffer, from, end, PAUSE)) {
+                        state = PlayerStatus.STATUS_PAUSED;
+                    } else {
+                        state = PlayerStatus.STATUS_STOPPED;
+                    }
+                    break;
+                case CURRENTSONG:
+                    song = parseInt(buffer, from, end, -1);
+                    break;
+                case CURRENTSONGID:
+                    songId = parseInt(buffer, from, end, -1);
+                    break;
+                case TIME:
+                    int split = indexOf(buffer, from, end, (byte) ':');
+                    if (split < 0) {
+                        elapsedTime = parseInt(buffer, from, end, 0);
+                    } else {
+                        elapsedTime = parseInt(buffer, from, split, 0);
+                        totalTime = parseInt(buffer, split + 1, end, 0);
+                    }
+                    break;
+                case ELAPSED:
+                    elapsedMillis = parseMillis(buffer, from, end);
+                    break;
+                case BITRATE:
+                    bitrate = parseInt(buffer, from, end, 0);
+                    break;
+                case XFADE:
+                    xfade = parseInt(buffer, from, end, 0);
+                    break;
+                case AUDIO:
+                    audio = new String(buffer, from, end - from, charset);
+                    break;
+                case UPDATINGSDB:
+                    updatingDb = parseInt(buffer, from, end, -1);
+                    break;
+                case ERROR:
+                    error = new String(buffer, from, end - from, charset);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Returns the status parsed so far.
+         *
+         * @return the status
+         */
+        MPDStatus build() {
+            return (new MPDStatus(this));
+        }
+
+        private static StatusList key(byte[] buffer, int offset, int length) {
+            for (int i = 0; i < KEY_BYTES.length; i++) {
+                if (KEY_BYTES[i].length == length && matches(buffer, offset, offset + length, KEY_BYTES[i])) {
+                    return (KEYS[i]);
+                }
+            }
+            return (null);
+        }
+
+        private static boolean isOne(byte[] buffer, int from, int end) {
+            return (end - from == 1 && buffer[from] == '1');
+        }
+
+        private static long parseMillis(byte[] buffer, int from, int end) {
+            int point = indexOf(buffer, from, end, (byte) '.');
+            if (point < 0) {
+                return (parseInt(buffer, from, end, 0) * 1000L);
+            }
+
+            long millis = parseInt(buffer, from, point, 0) * 1000L;
+            int scale = 100;
+            for (int i = point + 1; i < end && scale > 0; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                millis += digit * scale;
+                scale /= 10;
+            }
+            return (millis);
+        }
+    }
+
+    private static int indexOf(byte[] buffer, int from, int end, byte b) {
+        for (int i = from; i < end; i++) {
+            if (buffer[i] == b) {
+                return (i);
+            }
+        }
+        return (-1);
+    }
+
+    private static boolean matches(byte[] buffer, int from, int end, byte[] value) {
+        if (end - from != value.length) {
+            return (false);
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer[from + i] != value[i]) {
+                return (false);
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Parses a decimal number in place.
+     *
+     * @return the number or <code>missing</code> if the range is not a number
+     */
+    private static int parseInt(byte[] buffer, int from, int end, int missing) {
+        if (from >= end) {
+            return (missing);
+        }
+
+        boolean negative = buffer[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == end) {
+            return (missing);
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return (missing);
+            }
+            value = value * 10 + digit;
+        }
+        return (negative ? -value : value);
+    }
+}
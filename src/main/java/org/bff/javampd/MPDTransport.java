@@ -0,0 +1,135 @@
+/*
+ * MPDTransport.java
+ */
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDResponseException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * MPDTransport carries {@link MPDCommand}s to a single MPD server and returns
+ * the responses.  {@link MPD} delegates all protocol traffic to one transport,
+ * either a {@link MPDConnectionPool} of blocking sockets or a
+ * {@link MPDNioConnection} driven by a shared {@link MPDEventLoop}.
+ * Implementations must be safe for use by multiple threads.
+ */
+interface MPDTransport {
+
+    /**
+     * Establishes the connection to the server and authenticates it.
+     *
+     * @return the version of MPD
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if no connection could be established
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the server rejects the password
+     */
+    String connect() throws MPDConnectionException, MPDResponseException;
+
+    /**
+     * Sends a {@link MPDCommand} and returns the response lines up to but not
+     * including the final <code>OK</code>.  Binary payloads are skipped.
+     *
+     * @param command the command to send
+     * @return the response as a <CODE>List</CODE> of <CODE>Strings</CODE>
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command to the server
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the MPD response generates an error
+     */
+    List<String> sendCommand(MPDCommand command) throws MPDConnectionException, MPDResponseException;
+
+    /**
+     * Sends a {@link MPDCommand} and passes each response line to
+     * <code>lineHandler</code> as soon as it is read instead of collecting the
+     * response, so the memory used does not grow with the size of the
+     * response.  The handler may be called from another thread than the
+     * caller's.
+     *
+     * @param command     the command to send
+     * @param lineHandler receives the response lines up to but not including
+     *                    the final <code>OK</code>
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the command to the server
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the MPD response generates an error or the handler fails
+     */
+    void sendCommand(MPDCommand command, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException;
+
+    /**
+     * Sends a {@link MPDCommand} without waiting for the response.  The
+     * returned future fails with a {@link MPDResponseException} if the server
+     * answers with an error and with a {@link MPDConnectionException} if the
+     * command could not be sent.
+     *
+     * @param command the command to send
+     * @return the future response lines
+     */
+    CompletableFuture<List<String>> submit(MPDCommand command);
+
+    /**
+     * Sends a {@link MPDCommand} without waiting for the response and passes
+     * each response line to <code>lineHandler</code> as soon as it is read.
+     * The returned future completes once the whole response was handled.
+     *
+     * @param command     the command to send
+     * @param lineHandler receives the response lines up to but not including
+     *                    the final <code>OK</code>
+     * @return the future completed after the last line
+     */
+    CompletableFuture<Void> submit(MPDCommand command, Consumer<String> lineHandler);
+
+    /**
+     * Writes the {@link MPDCommand}s back to back on one connection without
+     * waiting for the responses in between and matches the responses to the
+     * commands in order, so independent commands cost a single round trip.
+     * Unlike a command list an error only fails the future of the rejected
+     * command; the commands after it are still executed.
+     *
+     * @param commands the commands to send
+     * @return the future responses, one for each command in the same order
+     */
+    List<CompletableFuture<List<String>>> pipeline(List<MPDCommand> commands);
+
+    /**
+     * Writes the {@link MPDCommand}s back to back on one connection and passes
+     * the response lines of all of them to <code>lineHandler</code> in order,
+     * as soon as they are read.  A {@link MPDBinaryHandler} also receives the
+     * binary payloads.  After the first error the remaining responses are not
+     * passed on.
+     *
+     * @param commands    the commands to send
+     * @param lineHandler receives the response lines of all commands
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the commands to the server
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if one of the commands generates an error or the handler fails
+     */
+    void pipeline(List<MPDCommand> commands, Consumer<String> lineHandler) throws MPDConnectionException, MPDResponseException;
+
+    /**
+     * Sends a list of {@link MPDCommand}s wrapped in a command list in one
+     * round trip and returns the response of each command.  The server stops
+     * at the first failing command, which is reported by a
+     * {@link org.bff.javampd.exception.MPDCommandListException} carrying its
+     * index and the responses of the commands before it.
+     *
+     * @param commandList the list of {@link MPDCommand}s
+     * @return the response lines of each command, in the order of the list
+     * @throws org.bff.javampd.exception.MPDConnectionException
+     *          if there is a problem sending the commands to the server
+     * @throws org.bff.javampd.exception.MPDResponseException
+     *          if the MPD response generates an error
+     */
+    List<List<String>> sendCommands(List<MPDCommand> commandList) throws MPDConnectionException, MPDResponseException;
+
+    /**
+     * Closes all connections of this transport.  Errors are logged and
+     * otherwise ignored.
+     */
+    void close();
+}
@@ -18,6 +18,7 @@ package org.bff.javampd.events;
  */
 public class TrackPositionChangeEvent extends java.util.EventObject {
     private long newElapsedTime = 0;
+    private long newElapsedMillis = 0;
 
     /**
      * Creates a new instance of TrackPositionEvent.
@@ -26,8 +27,21 @@ public class TrackPositionChangeEvent extends java.util.EventObject {
      * @param newTime the new elapsed time of the song
      */
     public TrackPositionChangeEvent(Object source, long newTime) {
+        this(source, newTime, newTime * 1000);
+    }
+
+    /**
+     * Creates a new instance of TrackPositionEvent with a millisecond
+     * position.
+     *
+     * @param source     the object on which the Event initially occurred
+     * @param newTime    the new elapsed time of the song in seconds
+     * @param newMillis  the new elapsed time of the song in milliseconds
+     */
+    public TrackPositionChangeEvent(Object source, long newTime, long newMillis) {
         super(source);
         this.newElapsedTime = newTime;
+        this.newElapsedMillis = newMillis;
     }
 
     /**
@@ -38,4 +52,14 @@ public class TrackPositionChangeEvent extends java.util.EventObject {
     public long getElapsedTime() {
         return newElapsedTime;
     }
+
+    /**
+     * Returns the elapsed time of the playing song in milliseconds, which is
+     * finer than {@link #getElapsedTime()} for interpolated positions.
+     *
+     * @return the new elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return newElapsedMillis;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+/*
+ * MPDCommandListException.java
+ */
+
+package org.bff.javampd.exception;
+
+import java.util.List;
+
+/**
+ * Represents an error response to a command list.  MPD stops executing a
+ * command list at the first failing command; the exception reports the index
+ * of that command and the responses of the commands before it.
+ */
+public class MPDCommandListException extends MPDResponseException {
+    private final int index;
+    private final List<List<String>> responses;
+
+    /**
+     * Class constructor specifying the message, the failing command, its
+     * index in the command list and the responses of the commands executed
+     * before it.
+     *
+     * @param message   the exception message
+     * @param command   the command generating the exception
+     * @param index     the index of the command in the command list
+     * @param responses the responses of the commands before the failing one
+     */
+    public MPDCommandListException(String message, String command, int index, List<List<String>> responses) {
+        super(message, command);
+        this.index = index;
+        this.responses = responses;
+    }
+
+    /**
+     * Returns the index of the failing command in the command list.
+     *
+     * @return the index of the failing command
+     */
+    public int getIndex() {
+        return (index);
+    }
+
+    /**
+     * Returns the responses of the commands executed before the failing one,
+     * in the order of the command list.
+     *
+     * @return the responses of the successful commands
+     */
+    public List<List<String>> getResponses() {
+        return (responses);
+    }
+}
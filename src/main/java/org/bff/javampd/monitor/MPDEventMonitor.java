@@ -17,6 +17,7 @@ import org.bff.javampd.events.TrackPositionChangeListener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * MPDEventMonitor is the abstract base class for all event monitors.
@@ -26,6 +27,12 @@ import java.util.List;
 public abstract class MPDEventMonitor {
     private MPD mpd;
     private long oldPos;
+    private long oldMillis = -1;
+    private volatile int interpolationRate;
+    private long syncedPosition;
+    private long syncedLength;
+    private long syncedAt = System.nanoTime();
+    private boolean syncedPlaying;
     private boolean connectedState = true;
     private List<TrackPositionChangeListener> trackListeners;
     private List<ConnectionChangeListener> connectionListeners;
@@ -67,7 +74,18 @@ public abstract class MPDEventMonitor {
      * @param newTime the new elapsed time
      */
     protected synchronized void fireTrackPositionChangeEvent(long newTime) {
-        TrackPositionChangeEvent tpce = new TrackPositionChangeEvent(this, newTime);
+        fireTrackPositionChangeEvent(newTime, newTime * 1000);
+    }
+
+    /**
+     * Sends the appropriate {@link TrackPositionChangeEvent} to all registered
+     * {@link TrackPositionChangeListener}s.
+     *
+     * @param newTime   the new elapsed time in seconds
+     * @param newMillis the new elapsed time in milliseconds
+     */
+    protected synchronized void fireTrackPositionChangeEvent(long newTime, long newMillis) {
+        TrackPositionChangeEvent tpce = new TrackPositionChangeEvent(this, newTime, newMillis);
 
         for (TrackPositionChangeListener tpcl : trackListeners) {
             tpcl.trackPositionChanged(tpce);
@@ -137,10 +155,132 @@ public abstract class MPDEventMonitor {
     protected final void checkTrackPosition(long newPos) {
         if (oldPos != newPos) {
             oldPos = newPos;
+            oldMillis = newPos * 1000;
             fireTrackPositionChangeEvent(newPos);
         }
     }
 
+    /**
+     * Sets how often the track position is interpolated between two status
+     * queries while playing.  Interpolated {@link TrackPositionChangeEvent}s
+     * are computed from the last position reported by the server and the
+     * time since, without any traffic, and carry a millisecond position.
+     * Every status query resyncs the position with the server.  A rate of 0,
+     * the default, turns interpolation off so events are only fired when a
+     * status query sees a new second.
+     *
+     * @param rate the interval between interpolated events in milliseconds,
+     *             0 for none
+     */
+    public void setInterpolationRate(int rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Interpolation rate must not be negative: " + rate);
+        }
+        this.interpolationRate = rate;
+    }
+
+    /**
+     * Returns how often the track position is interpolated between two status
+     * queries while playing.
+     *
+     * @return the interval between interpolated events in milliseconds, 0 if
+     *         interpolation is off
+     */
+    public int getInterpolationRate() {
+        return (interpolationRate);
+    }
+
+    /**
+     * Records the track position reported by the server as the base for
+     * interpolation and fires a {@link TrackPositionChangeEvent} if the
+     * position changed.
+     *
+     * @param elapsedMillis the elapsed time in milliseconds
+     * @param lengthMillis  the length of the song in milliseconds, 0 if
+     *                      unknown
+     * @param playing       true if the player is playing
+     */
+    protected final synchronized void syncTrackPosition(long elapsedMillis, long lengthMillis, boolean playing) {
+        syncedPosition = elapsedMillis;
+        syncedLength = lengthMillis;
+        syncedPlaying = playing;
+        syncedAt = System.nanoTime();
+
+        if (interpolationRate > 0) {
+            checkTrackPositionMillis(elapsedMillis);
+        } else {
+            checkTrackPosition(elapsedMillis / 1000);
+        }
+    }
+
+    /**
+     * Fires a {@link TrackPositionChangeEvent} for the position interpolated
+     * from the last {@link #syncTrackPosition(long, long, boolean)}.  The
+     * position stops at the end of the song until the next sync.
+     */
+    protected final synchronized void interpolateTrackPosition() {
+        if (!syncedPlaying) {
+            return;
+        }
+
+        long position = syncedPosition + getMillisSinceSync();
+        if (syncedLength > 0) {
+            position = Math.min(position, syncedLength);
+        }
+        checkTrackPositionMillis(position);
+    }
+
+    /**
+     * Returns the time passed since the last
+     * {@link #syncTrackPosition(long, long, boolean)}.
+     *
+     * @return the time since the last sync in milliseconds
+     */
+    protected final synchronized long getMillisSinceSync() {
+        return (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - syncedAt));
+    }
+
+    private void checkTrackPositionMillis(long newMillis) {
+        if (oldMillis != newMillis) {
+            oldMillis = newMillis;
+            oldPos = newMillis / 1000;
+            fireTrackPositionChangeEvent(oldPos, newMillis);
+        }
+    }
+
+    /**
+     * Performs one round of monitoring and fires the events for what changed.
+     * Called by a {@link MonitorScheduler} at the interval the monitor was
+     * scheduled with, never by two threads at once.  Errors are handled
+     * within.  Does nothing by default, so monitors written before the
+     * scheduler existed keep working; override it to take part in
+     * scheduling.
+     */
+    protected void poll() {
+    }
+
+    /**
+     * Returns the delay before the next {@link #poll()}.  The default is the
+     * interval the monitor was scheduled with; monitors that adapt their pace
+     * to what is going on override this.
+     *
+     * @param interval the interval the monitor was scheduled with in
+     *                 milliseconds
+     * @return the delay in milliseconds
+     */
+    protected long getPollDelay(long interval) {
+        return (interval);
+    }
+
+    /**
+     * Returns true if any {@link TrackPositionChangeListener} is registered.
+     *
+     * @return true if track position events are wanted
+     */
+    protected synchronized boolean hasTrackPositionListeners() {
+        return (!trackListeners.isEmpty());
+    }
+
     /**
      * Returns the connected state of the connection to the MPD server.
      *
@@ -17,6 +17,8 @@ import org.bff.javampd.events.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * MPDEventRelayer is a convenience class for relaying events from
@@ -42,7 +44,8 @@ public class MPDEventRelayer
     private final MPDPlayer mpdPlayer;
     private final MPDPlaylist mpdPlaylist;
     private final MPDAdmin mpdAdmin;
-    private boolean stopped;
+    private volatile boolean stopped;
+    private MonitorScheduler scheduler;
     private static final int DEFAULT_DELAY = 1000;
     private List<PlayerChangeListener> playerListeners;
     private List<PlaylistChangeListener> playlistListeners;
@@ -65,7 +68,7 @@ public class MPDEventRelayer
      * for {@link TrackPositionChangeEvent}s
      *
      * @param mpd   the MPD Connection
-     * @param delay the amount of delay in seconds
+     * @param delay the amount of delay in milliseconds
      */
     public MPDEventRelayer(MPD mpd, int delay) {
         super(mpd);
@@ -268,34 +271,62 @@ public class MPDEventRelayer
     @Override
     public void run() {
         while (!isStopped()) {
-            try {
-                checkTrackPosition(mpdPlayer.getElapsedTime());
-                checkConnection();
+            poll();
+            synchronized (this) {
                 try {
-                    this.wait(delay);
+                    if (!isStopped()) {
+                        this.wait(delay);
+                    }
                 } catch (InterruptedException ie) {
-                    ie.printStackTrace();
+                    stopped = true;
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
         }
     }
 
+    @Override
+    protected void poll() {
+        try {
+            checkTrackPosition(mpdPlayer.getElapsedTime());
+            checkConnection();
+        } catch (Exception e) {
+            Logger.getLogger(MPDEventRelayer.class.getName()).log(Level.WARNING, null, e);
+        }
+    }
+
     /**
-     * Starts the monitor by creating and starting a thread using this instance
-     * as the Runnable interface.
+     * Starts the monitor on the {@link MonitorScheduler#getDefault() default}
+     * {@link MonitorScheduler}.
      */
     public void start() {
-        Thread th = new Thread(this);
-        th.start();
+        start(MonitorScheduler.getDefault());
     }
 
     /**
-     * Stops the thread.
+     * Starts the monitor on the given {@link MonitorScheduler}.
+     *
+     * @param scheduler the scheduler polling this monitor
+     */
+    public synchronized void start(MonitorScheduler scheduler) {
+        this.stopped = false;
+        this.scheduler = scheduler;
+        scheduler.schedule(this, delay);
+    }
+
+    /**
+     * Stops the monitor.
      */
     public void stop() {
-        this.stopped = true;
+        MonitorScheduler current;
+        synchronized (this) {
+            this.stopped = true;
+            current = scheduler;
+            scheduler = null;
+            this.notifyAll();
+        }
+        if (current != null) {
+            current.cancel(this);
+        }
     }
 
     /**
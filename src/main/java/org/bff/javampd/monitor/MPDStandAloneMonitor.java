@@ -10,8 +10,11 @@
 package org.bff.javampd.monitor;
 
 import org.bff.javampd.MPD;
-import org.bff.javampd.MPD.StatusList;
+import org.bff.javampd.MPDIdle;
+import org.bff.javampd.MPDIdle.Subsystem;
 import org.bff.javampd.MPDOutput;
+import org.bff.javampd.MPDPlayer;
+import org.bff.javampd.MPDStatus;
 import org.bff.javampd.events.*;
 import org.bff.javampd.exception.MPDConnectionException;
 import org.bff.javampd.exception.MPDException;
@@ -19,13 +22,11 @@ import org.bff.javampd.exception.MPDResponseException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.Executors;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Set;
 
 /**
  * MPDStandAloneMonitor monitors a MPD connection by querying the status and
@@ -34,6 +35,28 @@ import java.util.logging.Logger;
  * events are desired attach listeners to the different controllers of a
  * connection or use the {@link MPDEventRelayer} class.
  * <p>
+ * In {@link Mode#IDLE} the monitor instead waits for the server to report
+ * changes on a dedicated connection (see {@link MPD#openIdle()}) and only
+ * queries what changed, so events arrive right away and an idle server is not
+ * queried at all.
+ * <p>
+ * {@link #start()} hands the monitor to a shared {@link MonitorScheduler} so
+ * any number of monitors need only a few threads.  Running the instance on a
+ * thread of its own reports idle changes without the polling delay.
+ * <p>
+ * In {@link Mode#POLL} the delay adapts to what is going on: the status is
+ * queried every delay interval while playing with
+ * {@link TrackPositionChangeListener}s registered or while changes are seen,
+ * otherwise the delay doubles with each quiet poll up to
+ * {@link #getMaxDelay()}.  A command sent through the {@link MPDPlayer} of the
+ * connection returns to the short delay right away.
+ * <p>
+ * With an {@link #setInterpolationRate(int) interpolation rate} set, track
+ * positions are interpolated locally between the status queries while
+ * playing, which resync the position with the server.  In
+ * {@link Mode#IDLE} the position is resynced on player changes; a monitor
+ * running on a thread of its own does not interpolate there.
+ * <p>
  * @author Bill Findeisen
  * @version 1.0
  */
@@ -43,6 +66,15 @@ public class MPDStandAloneMonitor
 
     private final MPD mpd;
     private final int delay;
+    private final Mode mode;
+    private volatile MPDIdle idle;
+    private volatile boolean connectionLost;
+    private volatile MonitorScheduler scheduler;
+    private volatile int maxDelay = MAX_DELAY;
+    private volatile long pollDelay;
+    private int eventCount;
+    private final Object pauseLock = new Object();
+    private final Runnable commandListener = this::speedUp;
     private int newVolume;
     private int oldVolume;
     private int newPlaylistVersion;
@@ -56,9 +88,11 @@ public class MPDStandAloneMonitor
     private int oldBitrate;
     private int newBitrate;
     private long elapsedTime;
-    private String state;
+    private long elapsedMillis;
+    private long trackLength;
+    private MPDPlayer.PlayerStatus state = MPDPlayer.PlayerStatus.STATUS_STOPPED;
     private String error;
-    private boolean stopped;
+    private volatile boolean stopped;
     private int oldRepeat;
     private int oldRandom;
     private int oldSingleMode;
@@ -84,16 +118,39 @@ public class MPDStandAloneMonitor
         STATUS_PAUSED,
     }
 
-    private PlayerStatus status = PlayerStatus.STATUS_STOPPED;
+    /**
+     * How the monitor learns about changes.
+     */
+    public enum Mode {
+
+        /**
+         * query the status every delay interval
+         */
+        POLL,
+        /**
+         * wait for the server to report changes with idle
+         */
+        IDLE,
+    }
+
+    private volatile PlayerStatus status = PlayerStatus.STATUS_STOPPED;
     private static final int DEFAULT_DELAY = 1000;
-    private static final String RESPONSE_PLAY = "play";
-    private static final String RESPONSE_STOP = "stop";
-    private static final String RESPONSE_PAUSE = "pause";
+    private static final long RECONNECT_DELAY = 5000;
+    private static final int IDLE_DELAY = 100;
+    private static final int MAX_DELAY = 8000;
+    private static final Subsystem[] IDLE_SUBSYSTEMS = {Subsystem.PLAYER, Subsystem.PLAYLIST, Subsystem.MIXER,
+            Subsystem.OPTIONS, Subsystem.OUTPUT, Subsystem.DATABASE};
+    /**
+     * The subsystems whose changes show in the status.
+     */
+    private static final Set<Subsystem> STATUS_SUBSYSTEMS = EnumSet.of(Subsystem.PLAYER, Subsystem.PLAYLIST,
+            Subsystem.MIXER, Subsystem.OPTIONS);
     private List<PlayerBasicChangeListener> playerListeners;
     private List<PlaylistBasicChangeListener> playlistListeners;
     private List<VolumeChangeListener> volListeners;
     private List<MPDErrorListener> errorListeners;
     private List<OutputChangeListener> outputListeners;
+    private List<MPDChangeListener> mpdListeners;
 
     /**
      * Creates a new instance of MPDStandAloneMonitor using the default delay of
@@ -113,18 +170,47 @@ public class MPDStandAloneMonitor
      * @param delay the delay interval
      */
     public MPDStandAloneMonitor(MPD mpd, int delay) {
+        this(mpd, delay, Mode.POLL);
+    }
+
+    /**
+     * Creates a new instance of MPDStandAloneMonitor in the given mode using
+     * the default delay of 1 second, or 100 milliseconds in
+     * {@link Mode#IDLE}.
+     * <p>
+     * @param mpd  a connection to a MPD server
+     * @param mode how to learn about changes
+     */
+    public MPDStandAloneMonitor(MPD mpd, Mode mode) {
+        this(mpd, mode == Mode.IDLE ? IDLE_DELAY : DEFAULT_DELAY, mode);
+    }
+
+    /**
+     * Creates a new instance of MPDStandAloneMonitor in the given mode.  In
+     * {@link Mode#IDLE} the delay is how often a monitor started on a
+     * {@link MonitorScheduler} checks whether the server reported a change,
+     * which costs no traffic.
+     * <p>
+     * @param mpd   a connection to a MPD server
+     * @param delay the delay interval
+     * @param mode  how to learn about changes
+     */
+    public MPDStandAloneMonitor(MPD mpd, int delay, Mode mode) {
         super(mpd);
         this.mpd = mpd;
         this.delay = delay;
+        this.mode = mode;
+        this.pollDelay = delay;
         this.playerListeners = new ArrayList<PlayerBasicChangeListener>();
         this.playlistListeners = new ArrayList<PlaylistBasicChangeListener>();
         this.volListeners = new ArrayList<VolumeChangeListener>();
         this.errorListeners = new ArrayList<MPDErrorListener>();
         this.outputListeners = new ArrayList<OutputChangeListener>();
+        this.mpdListeners = new ArrayList<MPDChangeListener>();
         this.outputMap = new HashMap<Integer, MPDOutput>();
         try {
             //initial load so no events fired
-            processResponse(mpd.getStatus());
+            processStatus(mpd.getMPDStatus(0));
             loadOutputs(mpd.getMPDAdmin().getOutputs());
         } catch (MPDException ex) {
             ex.printStackTrace();
@@ -157,6 +243,7 @@ public class MPDStandAloneMonitor
      * @param id the event id to send
      */
     protected synchronized void firePlayerChangeEvent(int id) {
+        ++eventCount;
         PlayerBasicChangeEvent pce = new PlayerBasicChangeEvent(this, id);
 
         for (PlayerBasicChangeListener pcl : playerListeners) {
@@ -190,6 +277,7 @@ public class MPDStandAloneMonitor
      * @param volume the new volume
      */
     protected synchronized void fireVolumeChangeEvent(int volume) {
+        ++eventCount;
         VolumeChangeEvent vce = new VolumeChangeEvent(this, volume);
 
         for (VolumeChangeListener vcl : volListeners) {
@@ -223,11 +311,48 @@ public class MPDStandAloneMonitor
      * @param event the event id to send
      */
     protected synchronized void fireOutputChangeEvent(OutputChangeEvent event) {
+        ++eventCount;
         for (OutputChangeListener ocl : outputListeners) {
             ocl.outputChanged(event);
         }
     }
 
+    /**
+     * Adds a {@link MPDChangeListener} to this object to receive
+     * {@link MPDChangeEvent}s.  A {@link MPDChangeEvent#MPD_REFRESHED} event
+     * is fired when the database changed, which is only detected in
+     * {@link Mode#IDLE}.
+     * <p>
+     * @param mcl the MPDChangeListener to add
+     */
+    public synchronized void addMPDChangeListener(MPDChangeListener mcl) {
+        mpdListeners.add(mcl);
+    }
+
+    /**
+     * Removes a {@link MPDChangeListener} from this object.
+     * <p>
+     * @param mcl the MPDChangeListener to remove
+     */
+    public synchronized void removeMPDChangeListener(MPDChangeListener mcl) {
+        mpdListeners.remove(mcl);
+    }
+
+    /**
+     * Sends the appropriate {@link MPDChangeEvent} to all registered
+     * {@link MPDChangeListener}s.
+     * <p>
+     * @param id the event id to send
+     */
+    protected synchronized void fireMPDChangeEvent(int id) {
+        ++eventCount;
+        MPDChangeEvent mce = new MPDChangeEvent(this, id);
+
+        for (MPDChangeListener mcl : mpdListeners) {
+            mcl.mpdChanged(mce);
+        }
+    }
+
     /**
      * Adds a {@link PlaylistBasicChangeListener} to this object to receive
      * {@link PlaylistChangeEvent}s.
@@ -254,6 +379,7 @@ public class MPDStandAloneMonitor
      * @param id the event id to send
      */
     protected synchronized void firePlaylistChangeEvent(int id) {
+        ++eventCount;
         PlaylistBasicChangeEvent pce = new PlaylistBasicChangeEvent(this, id);
 
         for (PlaylistBasicChangeListener pcl : playlistListeners) {
@@ -295,67 +421,259 @@ public class MPDStandAloneMonitor
     }
 
     /**
-     * Implements the Runnable run method to monitor the MPD connection.
+     * Implements the Runnable run method to monitor the MPD connection.  In
+     * {@link Mode#IDLE} the thread blocks until the server reports a change.
      */
     @Override
     public void run() {
-        Map<String, String> response;
+        addCommandListener();
         while (!isStopped()) {
-
-            try {
+            MPDIdle current = idle;
+            if (current != null && !connectionLost) {
                 try {
-                    synchronized (this) {
-                        response = mpd.getStatus();
-                        processResponse(response);
-
-                        checkError();
-                        checkPlayer();
-                        checkPlaylist();
-                        checkTrackPosition(elapsedTime);
-                        checkVolume();
-                        checkBitrate();
-                        checkConnection();
-                        checkOutputs();
-                        this.wait(delay);
-                    }
-                } catch (InterruptedException ie) {
-                    setStopped(true);
+                    refresh(current.waitForChanges(IDLE_SUBSYSTEMS));
+                } catch (MPDException e) {
+                    failed(e);
                 }
-            } catch (MPDException mce) {
-                if (mce instanceof MPDConnectionException) {
-                    fireConnectionChangeEvent(false, mce.getMessage());
-                    boolean retry = true;
-
-                    while (retry) {
-                        try {
-                            Thread.sleep(5000);
-                        } catch (InterruptedException ex) {
-                            Logger.getLogger(MPDStandAloneMonitor.class.getName()).log(Level.SEVERE, null, ex);
-                        }
-
-                        checkConnection();
-                        if (isConnectedState()) {
-                            retry = false;
-                        }
-                    }
+            } else {
+                poll();
+                if (idle == null || connectionLost) {
+                    pause();
+                }
+            }
+        }
+        removeCommandListener();
+        closeIdle();
+    }
+
+    @Override
+    protected synchronized void poll() {
+        if (isStopped()) {
+            return;
+        }
+
+        try {
+            if (mode == Mode.IDLE) {
+                pollIdle();
+            } else if (isInterpolating() && getMillisSinceSync() < pollDelay) {
+                interpolateTrackPosition();
+            } else {
+                int events = eventCount;
+                pollStatus();
+                adapt(eventCount != events);
+            }
+            if (connectionLost) {
+                connectionLost = false;
+                fireConnectionChangeEvent(true, "Connection Changed");
+            }
+        } catch (MPDException e) {
+            failed(e);
+        }
+    }
+
+    private void pollStatus() throws MPDConnectionException, MPDResponseException {
+        processStatus(mpd.getMPDStatus(0));
+
+        checkError();
+        checkPlayer();
+        checkPlaylist();
+        syncTrackPosition(elapsedMillis, trackLength, status == PlayerStatus.STATUS_PLAYING);
+        checkVolume();
+        checkBitrate();
+        checkConnection();
+        checkOutputs();
+    }
+
+    private void pollIdle() throws MPDConnectionException, MPDResponseException {
+        MPDIdle current = idle;
+        if (current == null) {
+            current = mpd.openIdle();
+            idle = current;
+            //changes before the connection was opened are not reported
+            refresh(EnumSet.allOf(Subsystem.class));
+        }
+
+        Set<Subsystem> changed = current.poll();
+        if (changed != null) {
+            refresh(changed);
+        }
+        current.begin(IDLE_SUBSYSTEMS);
+        if (isInterpolating()) {
+            interpolateTrackPosition();
+        }
+    }
+
+    /**
+     * Queries what belongs to the changed subsystems and fires the events.
+     */
+    private synchronized void refresh(Set<Subsystem> changed) throws MPDConnectionException, MPDResponseException {
+        if (isStopped()) {
+            return;
+        }
+
+        if (!Collections.disjoint(changed, STATUS_SUBSYSTEMS)) {
+            processStatus(mpd.getMPDStatus(0));
+            checkError();
+            checkPlayer();
+            checkPlaylist();
+            syncTrackPosition(elapsedMillis, trackLength, status == PlayerStatus.STATUS_PLAYING);
+            checkVolume();
+            checkBitrate();
+        }
+        if (changed.contains(Subsystem.OUTPUT)) {
+            checkOutputs();
+        }
+        if (changed.contains(Subsystem.DATABASE)) {
+            mpd.getMPDDatabase().invalidateCache();
+            fireMPDChangeEvent(MPDChangeEvent.MPD_REFRESHED);
+        }
+    }
+
+    private void failed(MPDException e) {
+        closeIdle();
+        if (e instanceof MPDConnectionException && !connectionLost && !isStopped()) {
+            connectionLost = true;
+            fireConnectionChangeEvent(false, e.getMessage());
+        }
+    }
+
+    private void pause() {
+        synchronized (pauseLock) {
+            try {
+                if (!isStopped()) {
+                    pauseLock.wait(connectionLost ? RECONNECT_DELAY : getPollDelay(delay));
                 }
+            } catch (InterruptedException ie) {
+                setStopped(true);
             }
         }
     }
 
+    @Override
+    protected long getPollDelay(long interval) {
+        long pollInterval = mode == Mode.POLL ? pollDelay : interval;
+        return (isInterpolating() ? Math.min(pollInterval, getInterpolationRate()) : pollInterval);
+    }
+
+    private boolean isInterpolating() {
+        return (getInterpolationRate() > 0 && status == PlayerStatus.STATUS_PLAYING && hasTrackPositionListeners());
+    }
+
+    /**
+     * Polls at the short delay while something is going on and backs off
+     * exponentially otherwise.
+     */
+    private void adapt(boolean changed) {
+        if (changed || (status == PlayerStatus.STATUS_PLAYING && hasTrackPositionListeners())) {
+            pollDelay = delay;
+        } else {
+            pollDelay = Math.min(pollDelay * 2, Math.max(delay, maxDelay));
+        }
+    }
+
+    /**
+     * Returns to the short delay after a command, polling soon so its effects
+     * are reported quickly.
+     */
+    private void speedUp() {
+        if (pollDelay == delay) {
+            return;
+        }
+
+        pollDelay = delay;
+        MonitorScheduler current = scheduler;
+        if (current != null) {
+            current.reschedule(this);
+        }
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets the longest delay between two status queries in {@link Mode#POLL}
+     * once nothing is going on.  A maximum no longer than the delay turns
+     * the adaptive delay off.
+     * <p>
+     * @param maxDelay the maximum delay in milliseconds
+     */
+    public void setMaxDelay(int maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns the longest delay between two status queries in
+     * {@link Mode#POLL}, 8 seconds by default.
+     * <p>
+     * @return the maximum delay in milliseconds
+     */
+    public int getMaxDelay() {
+        return maxDelay;
+    }
+
+    private void closeIdle() {
+        MPDIdle current = idle;
+        idle = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
     /**
-     * Starts the monitor by creating and starting a thread using this instance
-     * as the Runnable interface.
+     * Starts the monitor on the {@link MonitorScheduler#getDefault() default}
+     * {@link MonitorScheduler}.
      */
     public void start() {
-        Executors.newSingleThreadExecutor().execute(this);
+        start(MonitorScheduler.getDefault());
     }
 
     /**
-     * Stops the thread.
+     * Starts the monitor on the given {@link MonitorScheduler}, which polls it
+     * every delay interval.
+     * <p>
+     * @param scheduler the scheduler polling this monitor
+     */
+    public synchronized void start(MonitorScheduler scheduler) {
+        setStopped(false);
+        this.scheduler = scheduler;
+        addCommandListener();
+        scheduler.schedule(this, delay);
+    }
+
+    /**
+     * Stops the monitor.
      */
     public void stop() {
+        MonitorScheduler current;
         setStopped(true);
+        synchronized (this) {
+            current = scheduler;
+            scheduler = null;
+        }
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        if (current != null) {
+            current.cancel(this);
+        }
+        removeCommandListener();
+        closeIdle();
+    }
+
+    /**
+     * Polls soon after each command sent through the player.
+     */
+    private void addCommandListener() {
+        removeCommandListener();
+        mpd.getMPDPlayer().addCommandListener(commandListener);
+    }
+
+    /**
+     * Stops polling faster after player commands, so a stopped monitor is no
+     * longer reachable from the player.
+     */
+    private void removeCommandListener() {
+        mpd.getMPDPlayer().removeCommandListener(commandListener);
     }
 
     /**
@@ -389,12 +707,10 @@ public class MPDStandAloneMonitor
 
     private void checkPlayer() {
         PlayerStatus newStatus = PlayerStatus.STATUS_STOPPED;
-        if (state.startsWith(RESPONSE_PLAY)) {
+        if (state == MPDPlayer.PlayerStatus.STATUS_PLAYING) {
             newStatus = PlayerStatus.STATUS_PLAYING;
-        } else if (state.startsWith(RESPONSE_PAUSE)) {
+        } else if (state == MPDPlayer.PlayerStatus.STATUS_PAUSED) {
             newStatus = PlayerStatus.STATUS_PAUSED;
-        } else if (state.startsWith(RESPONSE_STOP)) {
-            newStatus = PlayerStatus.STATUS_STOPPED;
         }
 
         if (status != newStatus) {
@@ -411,6 +727,7 @@ public class MPDStandAloneMonitor
                     break;
                 case STATUS_STOPPED:
                     elapsedTime = 0; //when stopped no time in response reading 0
+                    elapsedMillis = 0;
                     firePlayerChangeEvent(PlayerBasicChangeEvent.PLAYER_STOPPED);
                     if (newSongId == -1) {
                         firePlaylistChangeEvent(PlaylistBasicChangeEvent.PLAYLIST_ENDED);
@@ -576,54 +893,21 @@ public class MPDStandAloneMonitor
         }
     }
 
-    private void processResponse(Map<String, String> response) {
-        newSongId = -1;
-        newSong = -1;
-        error = null;
-
-        for (Entry<String, String> pair : response.entrySet()) {
-            String key = pair.getKey();
-            String value = pair.getValue();
-
-            if (StatusList.VOLUME.getStatusPrefix().equals(key)) {
-                newVolume = Integer.parseInt(value);
-            }
-            if (StatusList.REPEAT.getStatusPrefix().equals(key)) {
-                checkRepeat(Integer.parseInt(value));
-            }
-            if (StatusList.RANDOM.getStatusPrefix().equals(key)) {
-                checkRandom(Integer.parseInt(value));
-            }
-            if (StatusList.CONSUME.getStatusPrefix().equals(key)) {
-                checkConsume(Integer.parseInt(value));
-            }
-            if (StatusList.SINGLE.getStatusPrefix().equals(key)) {
-                checkSingleMode(Integer.parseInt(value));
-            }
-            if (StatusList.PLAYLIST.getStatusPrefix().equals(key)) {
-                newPlaylistVersion = Integer.parseInt(value);
-            }
-            if (StatusList.PLAYLISTLENGTH.getStatusPrefix().equals(key)) {
-                newPlaylistLength = Integer.parseInt(value);
-            }
-            if (StatusList.STATE.getStatusPrefix().equals(key)) {
-                state = value;
-            }
-            if (StatusList.CURRENTSONG.getStatusPrefix().equals(key)) {
-                newSong = Integer.parseInt(value);
-            }
-            if (StatusList.CURRENTSONGID.getStatusPrefix().equals(key)) {
-                newSongId = Integer.parseInt(value);
-            }
-            if (StatusList.TIME.getStatusPrefix().equals(key)) {
-                elapsedTime = Long.parseLong(value.split(":")[0]);
-            }
-            if (StatusList.BITRATE.getStatusPrefix().equals(key)) {
-                newBitrate = Integer.parseInt(value);
-            }
-            if (StatusList.ERROR.getStatusPrefix().equals(key)) {
-                error = value;
-            }
-        }
+    private void processStatus(MPDStatus response) {
+        newVolume = response.getVolume();
+        checkRepeat(response.isRepeat() ? 1 : 0);
+        checkRandom(response.isRandom() ? 1 : 0);
+        checkConsume(response.isConsume() ? 1 : 0);
+        checkSingleMode(response.isSingle() ? 1 : 0);
+        newPlaylistVersion = response.getPlaylistVersion();
+        newPlaylistLength = response.getPlaylistLength();
+        state = response.getState();
+        newSong = response.getSong();
+        newSongId = response.getSongId();
+        elapsedTime = response.getElapsedTime();
+        elapsedMillis = response.getElapsedMillis();
+        trackLength = response.getTotalTime() * 1000;
+        newBitrate = response.getBitrate();
+        error = response.getError();
     }
 }
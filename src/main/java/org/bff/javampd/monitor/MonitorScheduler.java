@@ -0,0 +1,286 @@
+/*
+ * MonitorScheduler.java
+ */
+package org.bff.javampd.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * MonitorScheduler drives any number of monitors, for any number of MPD
+ * servers, from a small shared pool of threads instead of a thread per
+ * monitor.  Each monitor is polled at its own interval plus a random jitter,
+ * which spreads monitors started together so they do not all query their
+ * servers at the same moment:
+ * <pre>
+ * MonitorScheduler scheduler = new MonitorScheduler(2);
+ * new MPDStandAloneMonitor(kitchen).start(scheduler);
+ * new MPDStandAloneMonitor(livingRoom, 500).start(scheduler);
+ * ...
+ * scheduler.shutdown();
+ * </pre>
+ * A monitor is never polled by two threads at once and the next poll is only
+ * scheduled once the previous one finished, so a slow server delays only its
+ * own monitors.  A monitor may stretch or shorten the delay before its next
+ * poll through {@link MPDEventMonitor#getPollDelay(long)}.  Monitors started
+ * without a scheduler use {@link #getDefault()}.
+ */
+public class MonitorScheduler {
+
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_JITTER_DIVISOR = 10;
+    private static MonitorScheduler defaultScheduler;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Map<MPDEventMonitor, Task> tasks = new ConcurrentHashMap<MPDEventMonitor, Task>();
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a scheduler with two threads.
+     */
+    public MonitorScheduler() {
+        this(DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a scheduler with the given number of threads.  The threads are
+     * daemon threads and are stopped by {@link #shutdown()}.
+     *
+     * @param threads the number of threads
+     */
+    public MonitorScheduler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+
+        this.executor = Executors.newScheduledThreadPool(threads, new DaemonThreadFactory());
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * Creates a scheduler running the monitors on the given executor, which
+     * may be shared with other work.  {@link #shutdown()} stops the monitors
+     * but leaves the executor running.
+     *
+     * @param executor the executor to run the monitors on
+     */
+    public MonitorScheduler(ScheduledExecutorService executor) {
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Returns the scheduler shared by all monitors started without one.  It
+     * is created with two daemon threads on first use.
+     *
+     * @return the default scheduler
+     */
+    public static synchronized MonitorScheduler getDefault() {
+        if (defaultScheduler == null || defaultScheduler.isShutdown()) {
+            defaultScheduler = new MonitorScheduler();
+        }
+        return (defaultScheduler);
+    }
+
+    /**
+     * Polls the monitor every <code>interval</code> milliseconds plus a
+     * jitter of up to a tenth of the interval.
+     *
+     * @param monitor  the monitor to poll
+     * @param interval the delay between the end of a poll and the next one in
+     *                 milliseconds
+     */
+    public void schedule(MPDEventMonitor monitor, long interval) {
+        schedule(monitor, interval, interval / DEFAULT_JITTER_DIVISOR);
+    }
+
+    /**
+     * Polls the monitor every <code>interval</code> milliseconds plus a
+     * random jitter between 0 and <code>jitter</code> milliseconds.  The first
+     * poll runs after the jitter alone.  A monitor that is already scheduled
+     * keeps running at its new interval.
+     *
+     * @param monitor  the monitor to poll
+     * @param interval the delay between the end of a poll and the next one in
+     *                 milliseconds
+     * @param jitter   the maximum random delay added in milliseconds
+     */
+    public void schedule(MPDEventMonitor monitor, long interval, long jitter) {
+        if (interval < 1 || jitter < 0) {
+            throw new IllegalArgumentException("Invalid interval " + interval + " or jitter " + jitter);
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler is shut down");
+        }
+
+        Task task = new Task(monitor, interval, jitter);
+        Task previous = tasks.put(monitor, task);
+        if (previous != null) {
+            previous.cancel();
+        }
+        task.schedule(task.jitter());
+    }
+
+    /**
+     * Stops polling the monitor.  A poll already running is finished.
+     *
+     * @param monitor the monitor to stop polling
+     * @return true if the monitor was scheduled
+     */
+    public boolean cancel(MPDEventMonitor monitor) {
+        Task task = tasks.remove(monitor);
+        if (task == null) {
+            return (false);
+        }
+        task.cancel();
+        return (true);
+    }
+
+    /**
+     * Moves the next poll of the monitor forward if it is due later than the
+     * delay the monitor now asks for, for instance after a command made
+     * faster polling worthwhile.  Does nothing while the monitor is polled.
+     *
+     * @param monitor the monitor to reschedule
+     */
+    public void reschedule(MPDEventMonitor monitor) {
+        Task task = tasks.get(monitor);
+        if (task != null) {
+            task.reschedule();
+        }
+    }
+
+    /**
+     * Returns true if the monitor is polled by this scheduler.
+     *
+     * @param monitor the monitor to check
+     * @return true if the monitor is scheduled
+     */
+    public boolean isScheduled(MPDEventMonitor monitor) {
+        return (tasks.containsKey(monitor));
+    }
+
+    /**
+     * Stops polling all monitors and, unless the executor was passed in,
+     * stops the threads once the running polls finished.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (MPDEventMonitor monitor : tasks.keySet()) {
+            cancel(monitor);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns true if {@link #shutdown()} was called.
+     *
+     * @return true if the scheduler is shut down
+     */
+    public boolean isShutdown() {
+        return (shutdown);
+    }
+
+    /**
+     * Waits for the threads to stop after {@link #shutdown()}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if the threads stopped, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return (!ownsExecutor || executor.awaitTermination(timeout, unit));
+    }
+
+    private final class Task implements Runnable {
+
+        private final MPDEventMonitor monitor;
+        private final long interval;
+        private final long jitter;
+        private ScheduledFuture<?> future;
+        private boolean cancelled;
+
+        private Task(MPDEventMonitor monitor, long interval, long jitter) {
+            this.monitor = monitor;
+            this.interval = interval;
+            this.jitter = jitter;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+            }
+
+            try {
+                monitor.poll();
+            } catch (RuntimeException e) {
+                Logger.getLogger(MonitorScheduler.class.getName()).log(Level.WARNING, "Monitor failed", e);
+            }
+            schedule(monitor.getPollDelay(interval) + jitter());
+        }
+
+        private long jitter() {
+            return (jitter == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitter + 1));
+        }
+
+        private synchronized void schedule(long delay) {
+            if (cancelled) {
+                return;
+            }
+
+            try {
+                future = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //the executor is shutting down
+                cancelled = true;
+                tasks.remove(monitor, this);
+            }
+        }
+
+        private synchronized void reschedule() {
+            long delay = monitor.getPollDelay(interval);
+            if (!cancelled && future != null && future.getDelay(TimeUnit.MILLISECONDS) > delay
+                    && future.cancel(false)) {
+                future = null;
+                schedule(delay);
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL = new AtomicInteger();
+        private final int pool = POOL.incrementAndGet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MonitorScheduler-" + pool + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return (thread);
+        }
+    }
+}
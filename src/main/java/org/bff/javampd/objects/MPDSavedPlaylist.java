@@ -5,15 +5,36 @@
 
 package org.bff.javampd.objects;
 
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDDatabaseException;
+
 import java.util.Collection;
 
 /**
- * MPDSavedPlaylist represents a saved playlist.
+ * MPDSavedPlaylist represents a saved playlist.  A playlist listed without
+ * its songs reads them through its {@link SongLoader} the first time they
+ * are asked for.
  *
  * @author Bill Findeisen
  */
 public class MPDSavedPlaylist extends MPDItem {
     private Collection<MPDSong> songs;
+    private SongLoader songLoader;
+
+    /**
+     * Reads the songs of a saved playlist.
+     */
+    public interface SongLoader {
+
+        /**
+         * Reads the songs of the playlist.
+         *
+         * @return the songs
+         * @throws MPDConnectionException if there is a problem sending the command
+         * @throws MPDDatabaseException   if the MPD responded with an error
+         */
+        Collection<MPDSong> load() throws MPDConnectionException, MPDDatabaseException;
+    }
 
     /**
      * Creates a MPDSavedPlaylist object
@@ -25,11 +46,36 @@ public class MPDSavedPlaylist extends MPDItem {
     }
 
     /**
-     * Returns the list of {@link MPDSong}s for the playlist
+     * Returns the list of {@link MPDSong}s for the playlist, reading them
+     * with {@link #loadSongs()} if they were not set yet.  Use
+     * {@link #loadSongs()} directly to handle failures as checked exceptions.
      *
      * @return a {@link Collection} of {@link MPDSong}s
+     * @throws IllegalStateException if the songs could not be read; the
+     *                               cause is the exception of the loader
+     */
+    public synchronized Collection<MPDSong> getSongs() {
+        try {
+            return loadSongs();
+        } catch (MPDConnectionException | MPDDatabaseException e) {
+            throw new IllegalStateException("Cannot read the songs of playlist " + getName(), e);
+        }
+    }
+
+    /**
+     * Returns the list of {@link MPDSong}s for the playlist.  If the songs
+     * were not set yet they are read with the song loader and kept; after a
+     * failure the next call tries again.
+     *
+     * @return a {@link Collection} of {@link MPDSong}s, null if neither songs
+     *         nor a loader were set
+     * @throws MPDConnectionException if there is a problem sending the command
+     * @throws MPDDatabaseException   if the MPD responded with an error
      */
-    public Collection<MPDSong> getSongs() {
+    public synchronized Collection<MPDSong> loadSongs() throws MPDConnectionException, MPDDatabaseException {
+        if (songs == null && songLoader != null) {
+            songs = songLoader.load();
+        }
         return songs;
     }
 
@@ -38,7 +84,25 @@ public class MPDSavedPlaylist extends MPDItem {
      *
      * @param songs the {@link Collection} of {@link MPDSong}s
      */
-    public void setSongs(Collection<MPDSong> songs) {
+    public synchronized void setSongs(Collection<MPDSong> songs) {
         this.songs = songs;
     }
+
+    /**
+     * Sets how the songs are read when they are first asked for.
+     *
+     * @param songLoader reads the songs of the playlist
+     */
+    public synchronized void setSongLoader(SongLoader songLoader) {
+        this.songLoader = songLoader;
+    }
+
+    /**
+     * Returns true if the songs were set or already read.
+     *
+     * @return true if {@link #getSongs()} does not need to read the songs
+     */
+    public synchronized boolean isLoaded() {
+        return songs != null;
+    }
 }
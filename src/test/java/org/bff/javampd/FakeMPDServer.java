@@ -0,0 +1,208 @@
+package org.bff.javampd;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A minimal scripted MPD server for unit tests that do not need a real MPD.
+ * Every command line is answered with the registered response followed by
+ * <code>OK</code>, or with just <code>OK</code> if nothing is registered.
+ * An <code>idle</code> without a registered response waits for the next line.
+ */
+public class FakeMPDServer {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, String> responses = new ConcurrentHashMap<String, String>();
+    private final Map<String, Long> delays = new ConcurrentHashMap<String, Long>();
+    private final Map<String, byte[]> artwork = new ConcurrentHashMap<String, byte[]>();
+    private final List<String> received = new CopyOnWriteArrayList<String>();
+    private final List<Socket> clients = new CopyOnWriteArrayList<Socket>();
+    private volatile int connectionCount;
+    private volatile boolean stopped;
+
+    public FakeMPDServer() throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "FakeMPDServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Registers the response lines, without the final OK, for a command line.
+     */
+    public void respond(String command, String response) {
+        responses.put(command, response);
+    }
+
+    /**
+     * Registers the cover served by <code>albumart</code> for a file.  The
+     * chunks are 8192 bytes unless the client sends <code>binarylimit</code>.
+     */
+    public void albumArt(String file, byte[] data) {
+        artwork.put(file, data);
+    }
+
+    /**
+     * Makes the server sleep before answering the given command line.
+     */
+    public void delay(String command, long millis) {
+        delays.put(command, millis);
+    }
+
+    public List<String> getReceived() {
+        return received;
+    }
+
+    /**
+     * Returns how often the given command line was received.
+     */
+    public int count(String command) {
+        int count = 0;
+        for (String line : received) {
+            if (command.equals(line)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public void stop() throws IOException {
+        stopped = true;
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+    }
+
+    private void accept() {
+        while (!stopped) {
+            try {
+                final Socket client = serverSocket.accept();
+                clients.add(client);
+                ++connectionCount;
+                Thread handler = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(client);
+                    }
+                });
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+            OutputStream out = client.getOutputStream();
+            out.write("OK MPD 0.19.0\n".getBytes("UTF-8"));
+            out.flush();
+
+            List<String> commandList = null;
+            int binaryLimit = 8192;
+            String line;
+            while ((line = in.readLine()) != null) {
+                received.add(line);
+                if ("close".equals(line)) {
+                    break;
+                } else if (line.startsWith("command_list")) {
+                    if (line.endsWith("begin")) {
+                        commandList = new ArrayList<String>();
+                    } else {
+                        out.write(answerList(commandList).getBytes("UTF-8"));
+                        commandList = null;
+                    }
+                } else if (commandList != null) {
+                    commandList.add(line);
+                } else if (line.startsWith("binarylimit ")) {
+                    binaryLimit = Integer.parseInt(line.substring("binarylimit ".length()));
+                    out.write("OK\n".getBytes("UTF-8"));
+                } else if (line.startsWith("albumart ")) {
+                    writeArtwork(out, line, binaryLimit);
+                } else if (line.startsWith("idle") && !responses.containsKey(line)) {
+                    //nothing changes until the client sends noidle
+                    String next = in.readLine();
+                    if (next == null) {
+                        break;
+                    }
+                    received.add(next);
+                    out.write("OK\n".getBytes("UTF-8"));
+                } else {
+                    pause(line);
+                    String response = response(line);
+                    out.write((response.startsWith("ACK") ? response : response + "OK\n").getBytes("UTF-8"));
+                }
+                out.flush();
+            }
+            client.close();
+        } catch (IOException e) {
+            //client went away
+        }
+    }
+
+    private void writeArtwork(OutputStream out, String line, int binaryLimit) throws IOException {
+        int split = line.lastIndexOf(' ');
+        byte[] data = artwork.get(line.substring("albumart ".length(), split).replace("\"", ""));
+        if (data == null) {
+            out.write("ACK [50@0] {albumart} No file exists\n".getBytes("UTF-8"));
+            return;
+        }
+        int offset = Integer.parseInt(line.substring(split + 1));
+        int length = Math.max(0, Math.min(binaryLimit, data.length - offset));
+        out.write(("size: " + data.length + "\nbinary: " + length + "\n").getBytes("UTF-8"));
+        out.write(data, offset, length);
+        out.write("\nOK\n".getBytes("UTF-8"));
+    }
+
+    private String answerList(List<String> commandList) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < commandList.size(); i++) {
+            String command = commandList.get(i);
+            String response = response(command);
+            if (response.startsWith("ACK")) {
+                return sb.append(response.replace("@0]", "@" + i + "]")).toString();
+            }
+            sb.append(response).append("list_OK\n");
+        }
+        return sb.append("OK\n").toString();
+    }
+
+    private String response(String command) {
+        String response = responses.get(command);
+        if (response == null) {
+            return "";
+        }
+        return response.endsWith("\n") || response.isEmpty() ? response : response + "\n";
+    }
+
+    private void pause(String command) {
+        Long delay = delays.get(command);
+        if (delay != null) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
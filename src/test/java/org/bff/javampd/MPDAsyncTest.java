@@ -0,0 +1,140 @@
+package org.bff.javampd;
+
+import org.bff.javampd.events.PlayerChangeEvent;
+import org.bff.javampd.events.PlayerChangeListener;
+import org.bff.javampd.exception.MPDDatabaseException;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MPDAsyncTest {
+
+    private FakeMPDServer server;
+    private MPDEventLoop eventLoop;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        eventLoop = new MPDEventLoop(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventLoop.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testSearchOnEventLoop() throws Exception {
+        server.respond("search artist Miles", "file: a.mp3\nTitle: So What\nfile: b.mp3\nTitle: Blue in Green");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+
+        List<MPDSong> songs = mpd.async().database().search(MPDDatabase.ScopeType.ARTIST, "Miles").get();
+
+        Assert.assertEquals(2, songs.size());
+        Assert.assertEquals("So What", songs.get(0).getTitle());
+        Assert.assertEquals("b.mp3", songs.get(1).getFile());
+        mpd.close();
+    }
+
+    @Test
+    public void testErrorsMapToControllerException() throws Exception {
+        server.respond("find album Nope", "ACK [50@0] {find} No such album");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 1);
+
+        try {
+            mpd.async().database().find(MPDDatabase.ScopeType.ALBUM, "Nope").get();
+            Assert.fail("expected an error response");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MPDDatabaseException);
+            Assert.assertEquals("find", ((MPDDatabaseException) e.getCause()).getCommand());
+        }
+        mpd.close();
+    }
+
+    @Test
+    public void testCommandsFireListeners() throws Exception {
+        server.respond("status", "playlist: 7\nstate: stop");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+        final AtomicInteger stopped = new AtomicInteger();
+        mpd.getMPDPlayer().addPlayerChangeListener(new PlayerChangeListener() {
+            @Override
+            public void playerChanged(PlayerChangeEvent event) {
+                if (event.getId() == PlayerChangeEvent.PLAYER_STOPPED) {
+                    stopped.incrementAndGet();
+                }
+            }
+        });
+
+        mpd.async().player().stop().get();
+        mpd.async().playlist().clearPlaylist().get();
+
+        Assert.assertEquals(1, stopped.get());
+        Assert.assertEquals(MPDPlayer.PlayerStatus.STATUS_STOPPED, mpd.async().player().getStatus().get());
+        Assert.assertEquals(7, mpd.getMPDPlaylist().getVersion());
+        mpd.close();
+    }
+
+    @Test
+    public void testPipelinedCalls() throws Exception {
+        server.respond("status", "state: pause");
+        server.respond("currentsong", "file: a.mp3\nTitle: So What");
+        server.respond("outputs", "outputid: 0\noutputname: ALSA\noutputenabled: 1");
+        server.respond("listallinfo", "file: jazz/a.mp3\nfile: jazz/b.mp3");
+        final MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+        final List<CompletableFuture<?>> results = new ArrayList<CompletableFuture<?>>();
+        final List<MPDSong> streamed = new ArrayList<MPDSong>();
+
+        mpd.async().pipelined(new Runnable() {
+            @Override
+            public void run() {
+                results.add(mpd.async().player().getStatus());
+                results.add(mpd.async().database().streamAllSongs(streamed::add));
+                results.add(mpd.async().player().getCurrentSong());
+                results.add(mpd.async().admin().getOutputs());
+                Assert.assertTrue(server.getReceived().isEmpty());
+            }
+        });
+
+        Assert.assertEquals(MPDPlayer.PlayerStatus.STATUS_PAUSED, results.get(0).get());
+        results.get(1).get();
+        Assert.assertEquals(2, streamed.size());
+        Assert.assertEquals("So What", ((MPDSong) results.get(2).get()).getTitle());
+        Assert.assertEquals(1, ((Collection<?>) results.get(3).get()).size());
+        //the streamed command keeps its place in the pipeline
+        List<String> received = server.getReceived();
+        Assert.assertTrue(received.indexOf("status") < received.indexOf("listallinfo"));
+        Assert.assertTrue(received.indexOf("listallinfo") < received.indexOf("currentsong"));
+        mpd.close();
+    }
+
+    @Test
+    public void testStreamAllSongs() throws Exception {
+        server.respond("listallinfo", "directory: jazz\nfile: jazz/a.mp3\nTitle: So What\nfile: jazz/b.mp3\nTime: 337");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 1);
+        final List<MPDSong> blocking = new ArrayList<MPDSong>();
+        final List<MPDSong> streamed = new ArrayList<MPDSong>();
+
+        mpd.getMPDDatabase().streamAllSongs(blocking::add);
+        mpd.close();
+        mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+        mpd.async().database().streamAllSongs(streamed::add).get();
+
+        for (List<MPDSong> songs : Arrays.asList(blocking, streamed)) {
+            Assert.assertEquals(2, songs.size());
+            Assert.assertEquals("So What", songs.get(0).getTitle());
+            Assert.assertEquals(337, songs.get(1).getLength());
+        }
+        mpd.close();
+    }
+}
@@ -0,0 +1,307 @@
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDConnectionException;
+import org.bff.javampd.exception.MPDDatabaseException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDSavedPlaylist;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class MPDConnectionPoolTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testSlowCommandDoesNotBlockOtherCallers() throws Exception {
+        server.delay("listallinfo", 2000);
+        server.respond("status", "state: play");
+
+        final MPD mpd = new MPD("localhost", server.getPort(), null, 0, 2);
+
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mpd.sendMPDCommand(new MPDCommand("listallinfo"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        slow.start();
+        Thread.sleep(200);
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals("state: play", mpd.sendMPDCommand(new MPDCommand("status")).get(0));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+
+        slow.join();
+        mpd.close();
+    }
+
+    @Test
+    public void testEveryConnectionAuthenticates() throws Exception {
+        server.delay("listallinfo", 500);
+        final MPD mpd = new MPD("localhost", server.getPort(), "secret", 0, 2);
+
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mpd.sendMPDCommand(new MPDCommand("listallinfo"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        slow.start();
+        Thread.sleep(100);
+        mpd.sendMPDCommand(new MPDCommand("status"));
+        slow.join();
+
+        int passwords = 0;
+        for (String line : server.getReceived()) {
+            if ("password secret".equals(line)) {
+                ++passwords;
+            }
+        }
+        Assert.assertEquals(2, server.getConnectionCount());
+        Assert.assertEquals(2, passwords);
+        mpd.close();
+    }
+
+    @Test
+    public void testWaitingLeaseFailsOnceClosed() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        final MPDConnectionPool pool = new MPDConnectionPool(InetAddress.getByName("localhost"),
+                server.getPort(), null, 0, 1, mpd.getMPDProperties());
+        MPDConnection leased = pool.lease();
+        int connections = server.getConnectionCount();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.release(pool.lease());
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        });
+        waiting.start();
+        Thread.sleep(200);
+
+        pool.close();
+        pool.release(leased);
+        waiting.join();
+        Assert.assertTrue(failure.get() instanceof MPDConnectionException);
+        Assert.assertEquals(connections, server.getConnectionCount());
+        mpd.close();
+    }
+
+    @Test
+    public void testSingleConnectionByDefault() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        mpd.sendMPDCommand(new MPDCommand("status"));
+        mpd.sendMPDCommand(new MPDCommand("stats"));
+
+        Assert.assertEquals(1, server.getConnectionCount());
+        Assert.assertEquals("OK MPD 0.19.0".substring(3), mpd.getVersion());
+        mpd.close();
+    }
+
+    @Test
+    public void testPipelineErrorFailsOnlyItsCommand() throws Exception {
+        server.respond("status", "state: play");
+        server.respond("currentsong", "ACK [50@0] {currentsong} No current song");
+        server.respond("outputs", "outputid: 0");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 2);
+
+        List<CompletableFuture<List<String>>> responses = mpd.sendMPDCommandsPipelined(Arrays.asList(
+                new MPDCommand("status"), new MPDCommand("currentsong"), new MPDCommand("outputs")));
+
+        Assert.assertEquals("state: play", responses.get(0).get().get(0));
+        try {
+            responses.get(1).get();
+            Assert.fail("expected an error response");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("currentsong", ((MPDResponseException) e.getCause()).getCommand());
+        }
+        Assert.assertEquals("outputid: 0", responses.get(2).get().get(0));
+        Assert.assertEquals(1, server.getConnectionCount());
+        mpd.close();
+    }
+
+    @Test
+    public void testCommandListReturnsEachResponse() throws Exception {
+        server.respond("listplaylist jazz", "file: a.mp3\nfile: b.mp3");
+        server.respond("listplaylist rock", "file: c.mp3");
+        MPD mpd = new MPD("localhost", server.getPort());
+
+        List<List<String>> responses = mpd.sendMPDCommandList(Arrays.asList(
+                new MPDCommand("listplaylist", "jazz"), new MPDCommand("ping"), new MPDCommand("listplaylist", "rock")));
+
+        Assert.assertEquals(3, responses.size());
+        Assert.assertEquals(Arrays.asList("file: a.mp3", "file: b.mp3"), responses.get(0));
+        Assert.assertTrue(responses.get(1).isEmpty());
+        Assert.assertEquals(Arrays.asList("file: c.mp3"), responses.get(2));
+        mpd.close();
+    }
+
+    @Test
+    public void testSavedPlaylistSongsArePipelined() throws Exception {
+        server.respond("lsinfo", "directory: music\nplaylist: jazz\nplaylist: rock\nplaylist: pop");
+        server.respond("listplaylist jazz", "file: a.mp3\nfile: b.mp3");
+        server.respond("listplaylist rock", "file: c.mp3");
+        server.respond("listplaylist pop", "");
+        server.delay("listplaylist jazz", 200);
+        server.delay("listplaylist pop", 200);
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 2);
+
+        List<MPDSavedPlaylist> names = mpd.getMPDDatabase().listSavedPlaylistNames();
+        Assert.assertEquals(3, names.size());
+        Assert.assertFalse(names.get(0).isLoaded());
+        Assert.assertFalse(server.getReceived().contains("listplaylist rock"));
+
+        long start = System.currentTimeMillis();
+        List<MPDSavedPlaylist> playlists = mpd.getMPDDatabase().listSavedPlaylists();
+        Assert.assertTrue(System.currentTimeMillis() - start < 400);
+        Assert.assertEquals("jazz", playlists.get(0).getName());
+        Assert.assertEquals(2, playlists.get(0).getSongs().size());
+        Assert.assertEquals("c.mp3", playlists.get(1).getSongs().iterator().next().getFile());
+        Assert.assertTrue(playlists.get(2).getSongs().isEmpty());
+        Assert.assertEquals(2, server.getConnectionCount());
+        mpd.close();
+    }
+
+    @Test
+    public void testAlbumArtIsFetchedInPipelinedChunks() throws Exception {
+        byte[] cover = new byte[20000];
+        new Random(7).nextBytes(cover);
+        System.arraycopy("\nOK\nbinary: 3\n".getBytes("UTF-8"), 0, cover, 999, 14);
+        server.albumArt("cover.mp3", cover);
+
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 1);
+        MPDDatabase database = mpd.getMPDDatabase();
+        MPDSong song = new MPDSong();
+        song.setFile("cover.mp3");
+
+        database.setArtworkChunkSize(1000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(20000, database.streamAlbumArt(song, out));
+        Assert.assertArrayEquals(cover, out.toByteArray());
+        int requests = 0;
+        for (String line : server.getReceived()) {
+            if (line.startsWith("albumart")) {
+                ++requests;
+            }
+        }
+        Assert.assertEquals(20, requests);
+
+        try {
+            database.readAlbumArt(song, ByteBuffer.allocate(100));
+            Assert.fail("the cover does not fit");
+        } catch (MPDDatabaseException e) {
+            //expected
+        }
+
+        database.setArtworkChunkSize(0);
+        ByteBuffer buffer = ByteBuffer.allocate(30000);
+        Assert.assertEquals(20000, database.readAlbumArt(song, buffer));
+        Assert.assertArrayEquals(cover, Arrays.copyOf(buffer.array(), buffer.position()));
+        //the connections are reset to the default limit
+        Assert.assertTrue(server.getReceived().contains("binarylimit 8192"));
+
+        MPDSong missing = new MPDSong();
+        missing.setFile("missing.mp3");
+        try {
+            database.streamAlbumArt(missing, new ByteArrayOutputStream());
+            Assert.fail("there is no cover");
+        } catch (MPDDatabaseException e) {
+            Assert.assertTrue(e.getMessage().contains("No file exists"));
+        }
+        mpd.close();
+    }
+
+    @Test
+    public void testMisalignedArtworkChunksAreDropped() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MPDArtworkReader reader = new MPDArtworkReader(out);
+        reader.expect(new long[]{0, 4});
+        reader.accept("size: 10");
+        reader.accept("binary: 4");
+        reader.binary(new byte[]{1, 2, 3, 4}, 0, 4);
+        reader.accept("binary: 2");
+        reader.binary(new byte[]{5, 6}, 0, 2);
+        Assert.assertFalse(reader.isMisaligned());
+
+        //a chunk shorter than requested leaves the next one out of place
+        reader.expect(new long[]{6, 10});
+        reader.accept("binary: 2");
+        reader.binary(new byte[]{7, 8}, 0, 2);
+        reader.accept("binary: 2");
+        reader.binary(new byte[]{9, 10}, 0, 2);
+        Assert.assertTrue(reader.isMisaligned());
+        Assert.assertEquals(8, reader.getReceived());
+        Assert.assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, out.toByteArray());
+    }
+
+    @Test
+    public void testIdleReportsChangesAndCanBeCancelled() throws Exception {
+        server.respond("idle player mixer", "changed: player\nchanged: mixer");
+        MPD mpd = new MPD("localhost", server.getPort());
+        final MPDIdle idle = mpd.openIdle();
+        Assert.assertEquals(2, server.getConnectionCount());
+
+        Assert.assertEquals(EnumSet.of(MPDIdle.Subsystem.PLAYER, MPDIdle.Subsystem.MIXER),
+                idle.waitForChanges(MPDIdle.Subsystem.PLAYER, MPDIdle.Subsystem.MIXER));
+
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!server.getReceived().contains("idle")) {
+                        Thread.sleep(10);
+                    }
+                    idle.cancel();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        canceller.start();
+        Assert.assertTrue(idle.waitForChanges().isEmpty());
+        canceller.join();
+        Assert.assertTrue(server.getReceived().contains("noidle"));
+
+        //the idle connection does not disturb the others
+        mpd.sendMPDCommand(new MPDCommand("status"));
+        idle.close();
+        Assert.assertFalse(idle.isConnected());
+        mpd.close();
+    }
+}
@@ -0,0 +1,111 @@
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDDatabaseException;
+import org.bff.javampd.objects.MPDSavedPlaylist;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MPDFileTreeTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("lsinfo music", "directory: music/jazz\nfile: music/intro.mp3");
+        server.respond("lsinfo music/jazz", "file: music/jazz/so-what.mp3");
+        server.respond("listall music", "directory: music/jazz\nfile: music/jazz/so-what.mp3\n"
+                + "directory: music/jazz/live\nfile: music/intro.mp3");
+        server.respond("lsinfo", "playlist: jazz\nplaylist: gone");
+        server.respond("listplaylist gone", "ACK [50@0] {listplaylist} No such playlist");
+        server.respond("listplaylist jazz", "file: music/jazz/so-what.mp3");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testChildrenAreListedOnceWhenExpanded() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDFile music = directory(mpd.getMPDDatabase());
+
+        Assert.assertFalse(music.isLoaded());
+        List<MPDFile> children = music.getChildren();
+        Assert.assertEquals(2, children.size());
+        MPDFile jazz = children.get(0);
+        Assert.assertEquals("jazz", jazz.getName());
+        Assert.assertFalse(jazz.isLoaded());
+        Assert.assertEquals("so-what.mp3", jazz.getChildren().get(0).getName());
+
+        music.getChildren();
+        jazz.getChildren();
+        Assert.assertEquals(1, server.count("lsinfo music"));
+        Assert.assertEquals(1, server.count("lsinfo music/jazz"));
+        mpd.close();
+    }
+
+    @Test
+    public void testPrefetchReadsTreeInOneCommand() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDFile music = directory(mpd.getMPDDatabase());
+
+        mpd.getMPDDatabase().prefetchTree(music);
+        List<MPDFile> children = music.getChildren();
+        Assert.assertEquals(2, children.size());
+        MPDFile jazz = children.get(0);
+        Assert.assertEquals(2, jazz.getChildren().size());
+        Assert.assertEquals("music/jazz/so-what.mp3", jazz.getChildren().get(0).getPath());
+        Assert.assertTrue(jazz.getChildren().get(1).getChildren().isEmpty());
+        Assert.assertEquals(1, server.count("listall music"));
+        Assert.assertEquals(0, server.count("lsinfo music"));
+        Assert.assertEquals(0, server.count("lsinfo music/jazz"));
+        mpd.close();
+    }
+
+    @Test
+    public void testSavedPlaylistSongsAreReadWhenFirstNeeded() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDSavedPlaylist playlist = mpd.getMPDDatabase().listSavedPlaylistNames().get(0);
+
+        Assert.assertEquals(0, server.count("listplaylist jazz"));
+        Assert.assertEquals(1, playlist.getSongs().size());
+        Assert.assertTrue(playlist.isLoaded());
+        playlist.getSongs();
+        Assert.assertEquals(1, server.count("listplaylist jazz"));
+        mpd.close();
+    }
+
+    @Test
+    public void testSavedPlaylistLoadFailureIsReported() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDSavedPlaylist playlist = mpd.getMPDDatabase().listSavedPlaylistNames().get(1);
+
+        try {
+            playlist.loadSongs();
+            Assert.fail("the playlist does not exist");
+        } catch (MPDDatabaseException e) {
+            Assert.assertEquals("listplaylist", e.getCommand());
+        }
+        try {
+            playlist.getSongs();
+            Assert.fail("the playlist does not exist");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof MPDDatabaseException);
+        }
+        Assert.assertFalse(playlist.isLoaded());
+        mpd.close();
+    }
+
+    private static MPDFile directory(MPDDatabase database) {
+        MPDFile music = database.getRootDirectory();
+        music.setName("music");
+        music.setPath("music");
+        return music;
+    }
+}
@@ -0,0 +1,110 @@
+package org.bff.javampd;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MPDLibraryCacheTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("stats", "db_update: 100");
+        server.respond("list artist", "Artist: Miles Davis\nArtist: Nina Simone");
+        server.respond("list genre", "Genre: Jazz");
+        server.respond("find album Kind", "file: a.mp3\nAlbum: Kind");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testBrowseQueriesAreServedFromMemory() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        database.setCacheCapacity(100);
+        database.setCacheValidationInterval(0);
+
+        Assert.assertEquals(2, database.listAllArtists().size());
+        database.listAllArtists().clear();
+        Assert.assertEquals(2, database.listAllArtists().size());
+        Assert.assertEquals(1, database.findAlbum("Kind").size());
+        Assert.assertEquals(1, database.findAlbum("Kind").size());
+        Assert.assertEquals(1, server.count("list artist"));
+        Assert.assertEquals(1, server.count("find album Kind"));
+
+        //an updated database drops the cache
+        server.respond("stats", "db_update: 200");
+        database.listAllArtists();
+        Assert.assertEquals(2, server.count("list artist"));
+
+        database.invalidateCache();
+        database.listAllArtists();
+        Assert.assertEquals(3, server.count("list artist"));
+        mpd.close();
+    }
+
+    @Test
+    public void testAsyncQueriesShareTheCache() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        database.setCacheCapacity(100);
+        database.setCacheValidationInterval(10000);
+
+        Assert.assertEquals(2, database.listAllArtists().size());
+        Assert.assertEquals(2, mpd.async().database().listAllArtists().get().size());
+        Assert.assertEquals(1, mpd.async().database().find(MPDDatabase.ScopeType.ALBUM, "Kind").get().size());
+        Assert.assertEquals(1, database.findAlbum("Kind").size());
+        Assert.assertEquals(1, server.count("list artist"));
+        Assert.assertEquals(1, server.count("find album Kind"));
+        mpd.close();
+    }
+
+    @Test
+    public void testSavedPlaylistsAreNotCached() throws Exception {
+        server.respond("listplaylist mix", "file: a.mp3");
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        database.setCacheCapacity(100);
+        database.setCacheValidationInterval(0);
+
+        Assert.assertEquals(1, database.listPlaylistSongs("mix").size());
+
+        //saving a playlist does not update the database
+        server.respond("listplaylist mix", "file: a.mp3\nfile: b.mp3");
+        Assert.assertEquals(2, database.listPlaylistSongs("mix").size());
+        Assert.assertEquals(2, server.count("listplaylist mix"));
+        mpd.close();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAnswersAreEvicted() throws Exception {
+        MPDLibraryCache cache = new MPDLibraryCache(3);
+        cache.put("a", Arrays.asList("1", "2"), 0);
+        cache.put("b", Arrays.asList("3"), 0);
+        cache.get("a");
+        cache.put("c", Arrays.asList("4"), 0);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertEquals(3, cache.size());
+
+        //too large to cache at all
+        cache.put("d", Arrays.asList("5", "6", "7", "8"), 0);
+        Assert.assertNull(cache.get("d"));
+
+        //an answer read before the cache was dropped is not kept
+        int generation = cache.getGeneration();
+        cache.invalidate();
+        cache.put("e", Arrays.asList("9"), generation);
+        Assert.assertNull(cache.get("e"));
+        Assert.assertEquals(0, cache.size());
+    }
+}
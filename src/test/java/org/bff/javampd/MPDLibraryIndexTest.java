@@ -0,0 +1,92 @@
+package org.bff.javampd;
+
+import org.bff.javampd.MPDDatabase.ScopeType;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MPDLibraryIndexTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("stats", "db_update: 100");
+        server.respond("listallinfo", "file: jazz/a.mp3\nArtist: Miles Davis\nAlbum: Kind of Blue\nTitle: So What\n"
+                + "Genre: Jazz\nfile: jazz/b.mp3\nArtist: Nina Simone\nAlbum: Pastel Blues\nTitle: Sinnerman\n"
+                + "Genre: Jazz\nfile: rock/c.mp3\nArtist: Miles Kane\nTitle: Come Closer");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testQueriesAreAnsweredWithoutServer() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        MPDLibraryIndex index = database.buildIndex();
+        Assert.assertEquals(3, index.size());
+        database.setLibraryIndex(index);
+        database.setCacheValidationInterval(10000);
+        int received = server.getReceived().size();
+
+        List<MPDSong> songs = database.searchArtist("miles");
+        Assert.assertEquals(2, songs.size());
+        Assert.assertEquals("jazz/a.mp3", songs.get(0).getFile());
+        Assert.assertEquals("rock/c.mp3", songs.get(1).getFile());
+        Assert.assertEquals(1, database.searchArtist("si").size());
+        Assert.assertEquals(0, database.searchArtist("miles davies").size());
+        Assert.assertEquals(2, database.findGenre("Jazz").size());
+        Assert.assertEquals(0, database.findGenre("jazz").size());
+        Assert.assertEquals(2, database.searchAny("blue").size());
+        Assert.assertEquals(0, database.searchAny("rock/").size());
+        Assert.assertEquals(1, database.searchFileName("rock/").size());
+        Assert.assertEquals(1, database.findAlbum("Kind of Blue").size());
+        Assert.assertEquals(0, database.searchAny("No Genre").size());
+        //one stats query to check the index is current
+        Assert.assertEquals(received + 1, server.getReceived().size());
+        mpd.close();
+    }
+
+    @Test
+    public void testAsyncQueriesUseTheIndex() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        database.setLibraryIndex(database.buildIndex());
+        database.setCacheValidationInterval(10000);
+        MPDAsyncDatabase async = mpd.async().database();
+
+        Assert.assertEquals(2, async.search(ScopeType.ARTIST, "miles").get().size());
+        Assert.assertEquals(2, async.find(ScopeType.GENRE, "Jazz").get().size());
+        List<MPDSong> streamed = new ArrayList<MPDSong>();
+        async.streamSearch(ScopeType.ARTIST, "si", streamed::add).get();
+        Assert.assertEquals(1, streamed.size());
+        Assert.assertEquals(0, server.count("search artist miles"));
+        //one to build the index, one to check it is current
+        Assert.assertEquals(2, server.count("stats"));
+        mpd.close();
+    }
+
+    @Test
+    public void testIndexIsDroppedAfterDatabaseUpdate() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        database.setLibraryIndex(database.buildIndex());
+        database.setCacheValidationInterval(0);
+        server.respond("search artist miles", "file: new.mp3\nArtist: Miles");
+
+        Assert.assertEquals(2, database.searchArtist("miles").size());
+        server.respond("stats", "db_update: 200");
+        Assert.assertEquals(1, database.searchArtist("miles").size());
+        Assert.assertNull(database.getLibraryIndex());
+        mpd.close();
+    }
+}
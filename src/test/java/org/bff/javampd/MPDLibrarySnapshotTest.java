@@ -0,0 +1,88 @@
+package org.bff.javampd;
+
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class MPDLibrarySnapshotTest {
+
+    private FakeMPDServer server;
+    private Path snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("stats", "db_update: 100");
+        server.respond("listallinfo", "file: a.mp3\nArtist: Miles Davis\nAlbum: Kind of Blue\nTitle: So What\n"
+                + "Time: 562\nTrack: 1/5\nfile: b.mp3\nArtist: Miles Davis\nAlbum: Kind of Blue\nTitle: Freddie Freeloader");
+        snapshot = Files.createTempFile("library", ".snapshot");
+        Files.delete(snapshot);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Test
+    public void testSnapshotIsReusedUntilDatabaseUpdate() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDDatabase database = mpd.getMPDDatabase();
+        Assert.assertEquals(2, database.loadAllSongs(snapshot).size());
+        Assert.assertTrue(Files.exists(snapshot));
+
+        List<MPDSong> songs = database.loadAllSongs(snapshot);
+        Assert.assertEquals(1, server.count("listallinfo"));
+        Assert.assertEquals(2, songs.size());
+        MPDSong song = songs.get(0);
+        Assert.assertEquals("a.mp3", song.getFile());
+        Assert.assertEquals("Miles Davis", song.getArtist().getName());
+        Assert.assertEquals("Kind of Blue", song.getAlbum().getName());
+        Assert.assertEquals("So What", song.getTitle());
+        Assert.assertEquals(562, song.getLength());
+        Assert.assertEquals(1, song.getTrack());
+        Assert.assertEquals("No Genre", song.getGenre());
+
+        server.respond("stats", "db_update: 200");
+        database.loadAllSongs(snapshot);
+        Assert.assertEquals(2, server.count("listallinfo"));
+        mpd.close();
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        Files.write(snapshot, new byte[]{0x4A, 0x4D, 0x50});
+        Assert.assertNull(MPDLibrarySnapshot.read(snapshot, "localhost:6600", 100));
+
+        //counts larger than the file are not allocated
+        Assert.assertNull(MPDLibrarySnapshot.read(write(Integer.MAX_VALUE, 0, 0), "localhost:6600", 100));
+        Assert.assertNull(MPDLibrarySnapshot.read(write(1, Integer.MAX_VALUE, 0), "localhost:6600", 100));
+        Assert.assertNull(MPDLibrarySnapshot.read(write(0, 0, Integer.MAX_VALUE), "localhost:6600", 100));
+    }
+
+    private Path write(int stringCount, int stringLength, int songCount) throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))) {
+            out.writeInt(0x4A4D5044);
+            out.writeInt(1);
+            byte[] serverId = "localhost:6600".getBytes(StandardCharsets.UTF_8);
+            out.writeInt(serverId.length);
+            out.write(serverId);
+            out.writeLong(100);
+            out.writeInt(stringCount);
+            if (stringCount == 1) {
+                out.writeInt(stringLength);
+            }
+            out.writeInt(songCount);
+        }
+        return (snapshot);
+    }
+}
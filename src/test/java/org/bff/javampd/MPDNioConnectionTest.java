@@ -0,0 +1,153 @@
+package org.bff.javampd;
+
+import org.bff.javampd.exception.MPDCommandListException;
+import org.bff.javampd.exception.MPDDatabaseException;
+import org.bff.javampd.exception.MPDResponseException;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+public class MPDNioConnectionTest {
+
+    private FakeMPDServer server;
+    private FakeMPDServer otherServer;
+    private MPDEventLoop eventLoop;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        otherServer = new FakeMPDServer();
+        eventLoop = new MPDEventLoop(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventLoop.shutdown();
+        server.stop();
+        otherServer.stop();
+    }
+
+    @Test
+    public void testServersShareOneThread() throws Exception {
+        server.respond("status", "state: play");
+        otherServer.respond("status", "state: stop");
+
+        MPD mpd = new MPD("localhost", server.getPort(), "secret", 0, eventLoop);
+        MPD otherMpd = new MPD("localhost", otherServer.getPort(), null, 0, eventLoop);
+
+        Assert.assertEquals("MPD 0.19.0", mpd.getVersion());
+        Assert.assertEquals("state: play", mpd.sendMPDCommand(new MPDCommand("status")).get(0));
+        Assert.assertEquals("state: stop", otherMpd.sendMPDCommand(new MPDCommand("status")).get(0));
+        Assert.assertTrue(server.getReceived().contains("password secret"));
+
+        mpd.close();
+        otherMpd.close();
+    }
+
+    @Test
+    public void testResponsesMatchQueuedCommands() throws Exception {
+        MPD otherMpd = new MPD("localhost", otherServer.getPort(), null, 0, eventLoop);
+        MPDNioConnection connection = new MPDNioConnection(eventLoop, InetAddress.getByName("localhost"),
+                server.getPort(), null, 0, otherMpd.getMPDProperties());
+        connection.connect();
+
+        List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>();
+        for (int i = 0; i < 50; i++) {
+            server.respond("find title " + i, "file: " + i + ".mp3");
+            futures.add(connection.submit(new MPDCommand("find", new String[]{"title", String.valueOf(i)})));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals("file: " + i + ".mp3", futures.get(i).get().get(0));
+        }
+        Assert.assertEquals(1, server.getConnectionCount());
+        connection.close();
+        otherMpd.close();
+    }
+
+    @Test
+    public void testErrorFailsOnlyItsCommand() throws Exception {
+        server.respond("play 99", "ACK [2@0] {play} Bad song index");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+
+        try {
+            mpd.sendMPDCommand(new MPDCommand("play", "99"));
+            Assert.fail("expected an error response");
+        } catch (MPDResponseException re) {
+            Assert.assertEquals("play", re.getCommand());
+            Assert.assertEquals(re.getMessage(), mpd.getLastError());
+        }
+        mpd.sendMPDCommand(new MPDCommand("status"));
+        mpd.close();
+    }
+
+    @Test
+    public void testCommandListReportsFailingIndex() throws Exception {
+        server.respond("listplaylist jazz", "file: a.mp3");
+        server.respond("listplaylist gone", "ACK [50@0] {listplaylist} No such playlist");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+
+        try {
+            mpd.sendMPDCommandList(Arrays.asList(new MPDCommand("listplaylist", "jazz"),
+                    new MPDCommand("listplaylist", "gone"), new MPDCommand("ping")));
+            Assert.fail("expected an error response");
+        } catch (MPDCommandListException e) {
+            Assert.assertEquals(1, e.getIndex());
+            Assert.assertEquals("listplaylist", e.getCommand());
+            Assert.assertEquals(Arrays.asList(Arrays.asList("file: a.mp3")), e.getResponses());
+        }
+        Assert.assertTrue(mpd.sendMPDCommand(new MPDCommand("ping")).isEmpty());
+        mpd.close();
+    }
+
+    @Test
+    public void testStreamedResponse() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("file: song").append(i).append(".mp3\nTitle: Song ").append(i).append('\n');
+        }
+        server.respond("listallinfo", sb.toString());
+        server.respond("listplaylist broken", "file: a.mp3\nTime: abc\nfile: b.mp3");
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+
+        List<MPDSong> songs = mpd.getMPDDatabase().listAllSongs();
+        Assert.assertEquals(1000, songs.size());
+        Assert.assertEquals("Song 999", songs.get(999).getTitle());
+
+        try {
+            mpd.getMPDDatabase().listPlaylistSongs("broken");
+            Assert.fail("expected a parse error");
+        } catch (MPDDatabaseException e) {
+            Assert.assertTrue(e.getCause() instanceof MPDResponseException);
+        }
+        Assert.assertEquals(1000, mpd.getMPDDatabase().listAllSongs().size());
+        mpd.close();
+    }
+
+    @Test
+    public void testAlbumArt() throws Exception {
+        byte[] cover = new byte[20000];
+        new Random(7).nextBytes(cover);
+        System.arraycopy("\nOK\n".getBytes("UTF-8"), 0, cover, 8190, 4);
+        server.albumArt("cover.mp3", cover);
+
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, eventLoop);
+        MPDSong song = new MPDSong();
+        song.setFile("cover.mp3");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(20000, mpd.getMPDDatabase().streamAlbumArt(song, out));
+        Assert.assertArrayEquals(cover, out.toByteArray());
+        Assert.assertTrue(mpd.sendMPDCommand(new MPDCommand("ping")).isEmpty());
+        mpd.close();
+    }
+}
@@ -0,0 +1,60 @@
+package org.bff.javampd;
+
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MPDPlaylistSyncTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("status", "playlist: 3\nplaylistlength: 3");
+        server.respond("playlistinfo", "file: a.mp3\nPos: 0\nId: 10\nfile: b.mp3\nPos: 1\nId: 11\n"
+                + "file: c.mp3\nPos: 2\nId: 12");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testOnlyChangesAreFetched() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        mpd.setStatusTtl(0);
+        MPDPlaylist playlist = mpd.getMPDPlaylist();
+        Assert.assertEquals(3, playlist.getSongList().size());
+
+        //unchanged version, nothing but the status is read
+        playlist.getSongList();
+        Assert.assertEquals(1, server.count("playlistinfo"));
+        Assert.assertEquals(0, server.count("plchangesposid 3"));
+
+        //a new song replaces the last one
+        server.respond("status", "playlist: 4\nplaylistlength: 3");
+        server.respond("plchangesposid 3", "cpos: 2\nId: 13");
+        server.respond("plchanges 3", "file: d.mp3\nPos: 2\nId: 13");
+        List<MPDSong> songs = playlist.getSongList();
+        Assert.assertEquals("d.mp3", songs.get(2).getFile());
+        Assert.assertEquals(1, server.count("plchanges 3"));
+
+        //the first two songs swap places and the last is removed
+        server.respond("status", "playlist: 5\nplaylistlength: 2");
+        server.respond("plchangesposid 4", "cpos: 0\nId: 11\ncpos: 1\nId: 10");
+        songs = playlist.getSongList();
+        Assert.assertEquals(2, songs.size());
+        Assert.assertEquals("b.mp3", songs.get(0).getFile());
+        Assert.assertEquals(0, songs.get(0).getPosition());
+        Assert.assertEquals("a.mp3", songs.get(1).getFile());
+        Assert.assertEquals(0, server.count("plchanges 4"));
+        Assert.assertEquals(1, server.count("playlistinfo"));
+        mpd.close();
+    }
+}
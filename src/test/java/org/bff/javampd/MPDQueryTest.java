@@ -0,0 +1,85 @@
+package org.bff.javampd;
+
+import org.bff.javampd.MPDDatabase.ScopeType;
+import org.bff.javampd.objects.MPDAlbum;
+import org.bff.javampd.objects.MPDArtist;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class MPDQueryTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testClausesAreSentInOneCommand() throws Exception {
+        server.respond("find album \"Greatest Hits\" artist Queen", "file: a.mp3\nArtist: Queen\nAlbum: Greatest Hits");
+        MPD mpd = new MPD("localhost", server.getPort());
+
+        List<MPDSong> songs = mpd.getMPDDatabase().findAlbumByArtist(new MPDArtist("Queen"), new MPDAlbum("Greatest Hits"));
+        Assert.assertEquals(1, songs.size());
+        Assert.assertTrue(server.getReceived().contains("find album \"Greatest Hits\" artist Queen"));
+        mpd.close();
+    }
+
+    @Test
+    public void testIndexAnswersAllClauses() throws Exception {
+        MPDSong a = song("a.mp3", "Queen", "Greatest Hits");
+        MPDSong b = song("b.mp3", "ABBA", "Greatest Hits");
+        MPDSong c = song("c.mp3", "Queen", "Innuendo");
+        MPDLibraryIndex index = new MPDLibraryIndex(Arrays.asList(a, b, c));
+
+        MPDQuery query = new MPDQuery().where(ScopeType.ALBUM, "Greatest Hits").where(ScopeType.ARTIST, "Queen");
+        Assert.assertEquals(Arrays.asList(a), index.find(query));
+        Assert.assertEquals(Arrays.asList(a, c), index.search(new MPDQuery().where(ScopeType.ARTIST, "quee")));
+        Assert.assertTrue(index.find(new MPDQuery().where(ScopeType.ALBUM, "Innuendo").where(ScopeType.ARTIST, "ABBA")).isEmpty());
+    }
+
+    @Test
+    public void testYearRangeFiltersWhileReading() throws Exception {
+        server.respond("search title Blue", "file: a.mp3\nTitle: Blue\nDate: 1959-08-17\n"
+                + "file: b.mp3\nTitle: Blue\nDate: 1971\n"
+                + "file: c.mp3\nTitle: Blue\nDate: unknown\n"
+                + "file: d.mp3\nTitle: Blue");
+        MPD mpd = new MPD("localhost", server.getPort());
+
+        List<MPDSong> songs = mpd.getMPDDatabase().searchTitle("Blue", 1950, 1960);
+        Assert.assertEquals(1, songs.size());
+        Assert.assertEquals("a.mp3", songs.get(0).getFile());
+        mpd.close();
+
+        Assert.assertEquals(1977, MPDQuery.parseYear("1977-10-07"));
+        Assert.assertEquals(-1, MPDQuery.parseYear("No Year"));
+
+        MPDSong a = song("a.mp3", "Queen", "Jazz");
+        a.setYear("1978");
+        MPDSong b = song("b.mp3", "Queen", "Innuendo");
+        b.setYear("1991-02-04");
+        MPDLibraryIndex index = new MPDLibraryIndex(Arrays.asList(a, b));
+        Assert.assertEquals(Arrays.asList(b), index.find(new MPDQuery().where(ScopeType.ARTIST, "Queen").yearBetween(1990, 1999)));
+        Assert.assertEquals(Arrays.asList(a), index.search(new MPDQuery().yearBetween(1970, 1979)));
+    }
+
+    private static MPDSong song(String file, String artist, String album) {
+        MPDSong song = new MPDSong();
+        song.setFile(file);
+        song.setArtist(new MPDArtist(artist));
+        song.setAlbum(new MPDAlbum(album));
+        return song;
+    }
+}
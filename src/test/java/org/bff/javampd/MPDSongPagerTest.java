@@ -0,0 +1,93 @@
+package org.bff.javampd;
+
+import org.bff.javampd.MPDDatabase.ScopeType;
+import org.bff.javampd.objects.MPDSong;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MPDSongPagerTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("search artist Queen window 0:2", "file: a.mp3\nfile: b.mp3");
+        server.respond("search artist Queen window 2:4", "file: c.mp3");
+        server.respond("playlistinfo 0:2", "file: a.mp3\nPos: 0\nId: 1\nfile: b.mp3\nPos: 1\nId: 2");
+        server.respond("playlistinfo 2:4", "");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testPagesAreReadThroughWindows() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDSongPager pager = mpd.getMPDDatabase().searchPages(new MPDQuery().where(ScopeType.ARTIST, "Queen"), 2);
+
+        Assert.assertTrue(pager.hasNext());
+        List<MPDSong> first = pager.next();
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals("a.mp3", first.get(0).getFile());
+        List<MPDSong> second = pager.next();
+        Assert.assertEquals(1, second.size());
+        Assert.assertEquals("c.mp3", second.get(0).getFile());
+        Assert.assertFalse(pager.hasNext());
+        Assert.assertEquals(3, pager.getPosition());
+        Assert.assertEquals(0, server.count("search artist Queen"));
+
+        List<MPDSong> window = mpd.getMPDDatabase().search(new MPDQuery().where(ScopeType.ARTIST, "Queen"), 2, 4);
+        Assert.assertEquals(1, window.size());
+        mpd.close();
+    }
+
+    @Test
+    public void testPlaylistPagesEndWithEmptyPage() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDSongPager pager = mpd.getMPDPlaylist().getSongPages(2);
+
+        Assert.assertEquals(2, pager.next().size());
+        //a full page requests the next one before it is asked for
+        Assert.assertTrue(pager.next().isEmpty());
+        Assert.assertFalse(pager.hasNext());
+        Assert.assertEquals(1, server.count("playlistinfo 2:4"));
+        Assert.assertEquals(2, mpd.getMPDPlaylist().getSongList(0, 2).size());
+        mpd.close();
+    }
+
+    @Test
+    public void testYearRangePagesReadTheResultOnce() throws Exception {
+        server.respond("search artist Queen", "file: a.mp3\nDate: 1975\nfile: b.mp3\nDate: 1991\n"
+                + "file: c.mp3\nDate: 1977\nfile: d.mp3\nDate: 1978\nfile: e.mp3\nDate: 1980");
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDQuery query = new MPDQuery().where(ScopeType.ARTIST, "Queen").yearBetween(1970, 1979);
+        MPDSongPager pager = mpd.getMPDDatabase().searchPages(query, 2);
+
+        List<MPDSong> first = pager.next();
+        Assert.assertEquals("a.mp3", first.get(0).getFile());
+        Assert.assertEquals("c.mp3", first.get(1).getFile());
+        List<MPDSong> second = pager.next();
+        Assert.assertEquals(1, second.size());
+        Assert.assertEquals("d.mp3", second.get(0).getFile());
+        Assert.assertFalse(pager.hasNext());
+        Assert.assertEquals(1, server.count("search artist Queen"));
+        mpd.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyQueryCannotBeWindowed() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        try {
+            mpd.getMPDDatabase().find(new MPDQuery(), 0, 50);
+        } finally {
+            mpd.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.bff.javampd;
+
+import org.bff.javampd.objects.MPDSong;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MPDSongParserTest {
+    @Test
+    public void testParseBytes() throws Exception {
+        String response = "directory: ignored\n"
+                + "file: a/b.mp3\r\n"
+                + "Artist: Sigur Rós\n"
+                + "Album: ()\n"
+                + "Track: 3/9\n"
+                + "Title: Untitled\n"
+                + "Time: 412\n"
+                + "Pos: 7\n"
+                + "Id: 42\n"
+                + "Performer: skipped\n"
+                + "file: c.ogg\n"
+                + "Track: x\n";
+        InputStream in = new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+        //a tiny buffer forces lines to be split across reads
+        MPDLineReader reader = new MPDLineReader(4);
+        List<MPDSong> songs = new ArrayList<MPDSong>();
+        MPDSongParser parser = new MPDSongParser(songs::add);
+        while (reader.readLine(in)) {
+            parser.accept(reader.buffer(), reader.lineStart(), reader.lineLength(), StandardCharsets.UTF_8);
+        }
+        parser.finish();
+
+        Assert.assertEquals(2, songs.size());
+        MPDSong song = songs.get(0);
+        Assert.assertEquals("a/b.mp3", song.getFile());
+        Assert.assertEquals("Sigur Rós", song.getArtist().getName());
+        Assert.assertEquals("()", song.getAlbum().getName());
+        Assert.assertEquals(3, song.getTrack());
+        Assert.assertEquals("Untitled", song.getTitle());
+        Assert.assertEquals(412, song.getLength());
+        Assert.assertEquals(7, song.getPosition());
+        Assert.assertEquals(42, song.getId());
+        Assert.assertEquals("c.ogg", songs.get(1).getFile());
+        Assert.assertEquals(0, songs.get(1).getTrack());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testInvalidNumber() throws Exception {
+        MPDSongParser parser = new MPDSongParser(song -> {
+        });
+        parser.accept("file: a.mp3");
+        parser.accept("Time: abc");
+    }
+}
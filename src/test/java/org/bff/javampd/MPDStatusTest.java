@@ -0,0 +1,191 @@
+package org.bff.javampd;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class MPDStatusTest {
+
+    private FakeMPDServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeMPDServer();
+        server.respond("status", "volume: 65\nrepeat: 1\nrandom: 0\nsingle: 1\nconsume: 0\nplaylist: 7\n"
+                + "playlistlength: 12\nxfade: 5\nstate: play\nsong: 3\nsongid: 14\ntime: 81:245\n"
+                + "elapsed: 81.462\nbitrate: 320\naudio: 44100:24:2");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testPlayerGettersShareOneStatus() throws Exception {
+        MPD mpd = new MPD("localhost", server.getPort());
+        mpd.setStatusTtl(10000);
+        MPDPlayer player = mpd.getMPDPlayer();
+
+        Assert.assertEquals(65, player.getVolume());
+        Assert.assertTrue(player.isRepeat());
+        Assert.assertFalse(player.isRandom());
+        Assert.assertTrue(player.isSingleMode());
+        Assert.assertFalse(player.isConsuming());
+        Assert.assertEquals(5, player.getXFade());
+        Assert.assertEquals(320, player.getBitrate());
+        Assert.assertEquals(81, player.getElapsedTime());
+        Assert.assertEquals(24, player.getAudioDetails().getBits());
+        Assert.assertEquals(MPDPlayer.PlayerStatus.STATUS_PLAYING, player.getStatus());
+        Assert.assertEquals(1, server.count("status"));
+
+        MPDStatus status = mpd.getMPDStatus();
+        Assert.assertEquals(81462, status.getElapsedMillis());
+        Assert.assertEquals(245, status.getTotalTime());
+        Assert.assertEquals(14, status.getSongId());
+        Assert.assertEquals(-1, status.getUpdatingDb());
+        Assert.assertNull(status.getError());
+
+        //reads keep the snapshot
+        mpd.getMPDAdmin().getOutputs();
+        mpd.getMPDDatabase().listAllFiles();
+        player.getVolume();
+        Assert.assertEquals(1, server.count("status"));
+
+        //a command may change the status so the snapshot is discarded
+        player.setVolume(40);
+        player.getVolume();
+        Assert.assertEquals(2, server.count("status"));
+        mpd.close();
+    }
+
+    @Test
+    public void testStatusReadDuringCommandIsNotKept() throws Exception {
+        server.delay("setvol 40", 300);
+        final MPD mpd = new MPD("localhost", server.getPort(), null, 0, 4);
+        mpd.setStatusTtl(10000);
+        Thread command = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mpd.getMPDPlayer().setVolume(40);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        command.start();
+
+        //read on another connection before the server applied the command
+        Thread.sleep(100);
+        Assert.assertEquals(65, mpd.getMPDStatus().getVolume());
+        command.join();
+
+        server.respond("status", "volume: 40\nstate: play");
+        Assert.assertEquals(40, mpd.getMPDStatus().getVolume());
+        Assert.assertEquals(2, server.count("status"));
+        mpd.close();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRequest() throws Exception {
+        server.delay("status", 300);
+        final MPD mpd = new MPD("localhost", server.getPort(), null, 0, 4);
+        mpd.setStatusTtl(0);
+        final List<MPDStatus> results = new CopyOnWriteArrayList<MPDStatus>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(mpd.getMPDStatus());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(1, server.count("status"));
+        Assert.assertSame(results.get(0), results.get(3));
+
+        //without a TTL the next call queries again
+        mpd.getMPDStatus();
+        Assert.assertEquals(2, server.count("status"));
+        mpd.close();
+    }
+
+    @Test
+    public void testAsyncGettersShareTheStatus() throws Exception {
+        server.delay("status", 300);
+        MPD mpd = new MPD("localhost", server.getPort(), null, 0, 4);
+        mpd.setStatusTtl(10000);
+        MPDAsyncPlayer player = mpd.async().player();
+
+        CompletableFuture<Integer> volume = player.getVolume();
+        CompletableFuture<MPDPlayer.PlayerStatus> state = player.getStatus();
+        Assert.assertEquals(65, mpd.getMPDPlayer().getVolume());
+        Assert.assertEquals(65, (int) volume.get());
+        Assert.assertEquals(MPDPlayer.PlayerStatus.STATUS_PLAYING, state.get());
+        Assert.assertTrue(player.getVolume().isDone());
+        Assert.assertEquals(1, server.count("status"));
+        mpd.close();
+    }
+
+    @Test
+    public void testStatusIsParsedFromBytes() throws Exception {
+        MPDStatus.Parser parser = new MPDStatus.Parser();
+        byte[] line = "xxstate: pause\r\n".getBytes(StandardCharsets.UTF_8);
+        parser.accept(line, 2, line.length - 4, StandardCharsets.UTF_8);
+        parser.accept("time: 12:300");
+        parser.accept("volume: n/a");
+        parser.accept("nextsong: 4");
+        parser.accept("elapsed: 12.3");
+        parser.accept("error: Failed to open \"out\"");
+        parser.accept("updating_db: 3");
+        MPDStatus status = parser.build();
+
+        Assert.assertEquals(MPDPlayer.PlayerStatus.STATUS_PAUSED, status.getState());
+        Assert.assertEquals(12, status.getElapsedTime());
+        Assert.assertEquals(12300, status.getElapsedMillis());
+        Assert.assertEquals(300, status.getTotalTime());
+        Assert.assertEquals(-1, status.getVolume());
+        Assert.assertEquals(-1, status.getSong());
+        Assert.assertEquals("Failed to open \"out\"", status.getError());
+        Assert.assertEquals(3, status.getUpdatingDb());
+    }
+
+    @Test
+    public void testStatsAreParsedIntoFields() throws Exception {
+        server.respond("stats", "artists: 120\nalbums: 310\nsongs: 4321\nuptime: 86400\nplaytime: 3600\n"
+                + "db_playtime: 1234567\ndb_update: 1500000000");
+        MPD mpd = new MPD("localhost", server.getPort());
+        MPDStats stats = mpd.getMPDStats();
+
+        Assert.assertEquals(120, stats.getArtists());
+        Assert.assertEquals(310, stats.getAlbums());
+        Assert.assertEquals(4321, stats.getSongs());
+        Assert.assertEquals(86400, stats.getUptime());
+        Assert.assertEquals(3600, stats.getPlaytime());
+        Assert.assertEquals(1234567, stats.getDbPlaytime());
+        Assert.assertEquals(1500000000L, stats.getDbUpdate());
+        Assert.assertEquals(4321, mpd.getMPDDatabase().getSongCount());
+        Assert.assertEquals(1500000000L, mpd.getMPDDatabase().getLastUpdateTime());
+        Assert.assertEquals(3, server.count("stats"));
+        mpd.close();
+    }
+}
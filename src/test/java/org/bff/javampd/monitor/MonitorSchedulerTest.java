@@ -0,0 +1,165 @@
+package org.bff.javampd.monitor;
+
+import org.bff.javampd.FakeMPDServer;
+import org.bff.javampd.MPD;
+import org.bff.javampd.events.TrackPositionChangeEvent;
+import org.bff.javampd.events.TrackPositionChangeListener;
+import org.bff.javampd.events.VolumeChangeEvent;
+import org.bff.javampd.events.VolumeChangeListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MonitorSchedulerTest {
+
+    private FakeMPDServer kitchen;
+    private FakeMPDServer livingRoom;
+    private MonitorScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        kitchen = new FakeMPDServer();
+        livingRoom = new FakeMPDServer();
+        kitchen.respond("status", "state: stop\nvolume: 50");
+        livingRoom.respond("status", "state: stop\nvolume: 50");
+        scheduler = new MonitorScheduler(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+        kitchen.stop();
+        livingRoom.stop();
+    }
+
+    @Test
+    public void testManyMonitorsShareOneThread() throws Exception {
+        MPD kitchenMPD = new MPD("localhost", kitchen.getPort());
+        MPD livingRoomMPD = new MPD("localhost", livingRoom.getPort());
+        final CountDownLatch changed = new CountDownLatch(10);
+        List<MPDStandAloneMonitor> monitors = new ArrayList<MPDStandAloneMonitor>();
+        for (int i = 0; i < 10; i++) {
+            MPDStandAloneMonitor monitor = new MPDStandAloneMonitor(i % 2 == 0 ? kitchenMPD : livingRoomMPD, 20);
+            monitor.addVolumeChangeListener(new VolumeChangeListener() {
+                @Override
+                public void volumeChanged(VolumeChangeEvent event) {
+                    changed.countDown();
+                }
+            });
+            monitor.start(scheduler);
+            monitors.add(monitor);
+        }
+
+        kitchen.respond("status", "state: stop\nvolume: 80");
+        livingRoom.respond("status", "state: stop\nvolume: 80");
+        Assert.assertTrue(changed.await(5, TimeUnit.SECONDS));
+
+        monitors.get(0).stop();
+        Assert.assertFalse(scheduler.isScheduled(monitors.get(0)));
+        Assert.assertTrue(scheduler.isScheduled(monitors.get(1)));
+
+        scheduler.shutdown();
+        Assert.assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertFalse(scheduler.isScheduled(monitors.get(1)));
+        int polls = kitchen.getReceived().size();
+        Thread.sleep(100);
+        Assert.assertEquals(polls, kitchen.getReceived().size());
+
+        kitchenMPD.close();
+        livingRoomMPD.close();
+    }
+
+    @Test
+    public void testIdleMonitorDoesNotQueryUnchangedServer() throws Exception {
+        MPD mpd = new MPD("localhost", kitchen.getPort());
+        MPDStandAloneMonitor monitor = new MPDStandAloneMonitor(mpd, 20, MPDStandAloneMonitor.Mode.IDLE);
+        monitor.start(scheduler);
+
+        while (!kitchen.getReceived().contains("idle player playlist mixer options output database")) {
+            Thread.sleep(10);
+        }
+        int statusCount = kitchen.count("status");
+        Thread.sleep(200);
+        Assert.assertEquals(statusCount, kitchen.count("status"));
+        Assert.assertEquals(1, kitchen.count("idle player playlist mixer options output database"));
+
+        monitor.stop();
+        Assert.assertFalse(scheduler.isScheduled(monitor));
+        mpd.close();
+    }
+
+    @Test
+    public void testQuietMonitorBacksOffUntilPlayerCommand() throws Exception {
+        MPD mpd = new MPD("localhost", kitchen.getPort());
+        MPDStandAloneMonitor monitor = new MPDStandAloneMonitor(mpd, 20);
+        monitor.setMaxDelay(5000);
+        monitor.start(scheduler);
+
+        Thread.sleep(1000);
+        //20 + 40 + 80 + 160 + 320 ms instead of 50 polls at 20 ms
+        int quietPolls = kitchen.count("status");
+        Assert.assertTrue("polled " + quietPolls + " times", quietPolls < 10);
+
+        mpd.getMPDPlayer().play();
+        Thread.sleep(200);
+        Assert.assertTrue(kitchen.count("status") > quietPolls);
+
+        monitor.stop();
+        mpd.close();
+    }
+
+    @Test
+    public void testMonitorOnOwnThreadSpeedsUpAfterAnyPlayerCommand() throws Exception {
+        MPD mpd = new MPD("localhost", kitchen.getPort());
+        MPDStandAloneMonitor monitor = new MPDStandAloneMonitor(mpd, 20);
+        monitor.setMaxDelay(5000);
+        Thread thread = new Thread(monitor);
+        thread.start();
+
+        Thread.sleep(1000);
+        int quietPolls = kitchen.count("status");
+
+        //fires no player or volume event
+        mpd.getMPDPlayer().setRepeat(true);
+        Thread.sleep(200);
+        Assert.assertTrue(kitchen.count("status") > quietPolls);
+
+        monitor.stop();
+        thread.join();
+        mpd.close();
+    }
+
+    @Test
+    public void testTrackPositionIsInterpolatedBetweenStatusQueries() throws Exception {
+        kitchen.respond("status", "state: play\ntime: 10:200\nelapsed: 10.000");
+        MPD mpd = new MPD("localhost", kitchen.getPort());
+        MPDStandAloneMonitor monitor = new MPDStandAloneMonitor(mpd, 1000);
+        final List<Long> positions = new CopyOnWriteArrayList<Long>();
+        monitor.addTrackPositionChangeListener(new TrackPositionChangeListener() {
+            @Override
+            public void trackPositionChanged(TrackPositionChangeEvent event) {
+                positions.add(event.getElapsedMillis());
+            }
+        });
+        monitor.setInterpolationRate(50);
+        monitor.start(scheduler);
+
+        Thread.sleep(700);
+        monitor.stop();
+        int statusCount = kitchen.count("status");
+        Assert.assertTrue("queried status " + statusCount + " times", statusCount <= 3);
+        Assert.assertTrue("fired " + positions.size() + " events", positions.size() >= 5);
+        for (int i = 1; i < positions.size(); i++) {
+            Assert.assertTrue(positions.get(i) > positions.get(i - 1));
+        }
+        Assert.assertTrue(positions.get(positions.size() - 1) >= 10500);
+        mpd.close();
+    }
+}